@@ -0,0 +1,47 @@
+package com.honours.bench;
+
+import com.google.api.services.youtube.model.Video;
+import com.honours.backend.apiActions.AdviceCorpus;
+import com.honours.backend.apiActions.RetentionCurve;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating the advice of an analysed video, and building the retention curve it scans from the API's rows.
+ * <br>The advice files come from this module's resources, so the advice is picked the way it is on the server.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AdviceBenchmark {
+
+    private Video video;
+    private List<Object> overallMetrics;
+    private List<List<Object>> retentionRows;
+    private RetentionCurve retention;
+
+    @Setup
+    public void setUp() {
+        AdviceCorpus.reload();
+        video = Fixtures.analysedVideo();
+        overallMetrics = Fixtures.overallMetrics();
+        retentionRows = Fixtures.retentionRows();
+        retention = RetentionCurve.fromRows(retentionRows);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<Object> getVideoAdvice() throws Throwable {
+        return (List<Object>) (List<?>) Privates.GET_VIDEO_ADVICE.invokeExact(video, overallMetrics, retention);
+    }
+
+    @Benchmark
+    public RetentionCurve retentionCurveFromRows() {
+        return RetentionCurve.fromRows(retentionRows);
+    }
+}
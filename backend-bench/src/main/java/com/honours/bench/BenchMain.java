@@ -0,0 +1,50 @@
+package com.honours.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, named after the benchmarked backend version
+ * (bench-results/backend-VERSION.json), so the results of two releases can be compared side by side.
+ * <br>Any JMH option can still be given on the command line, e.g. a benchmark name pattern or "-rff other.json".
+ */
+public class BenchMain {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+                || cli.shouldListResultFormats()) {
+            // Nothing is run, JMH's own launcher prints what was asked for.
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        ChainedOptionsBuilder options = new OptionsBuilder().parent(cli);
+
+        if (cli.getResult().hasValue()) {
+            options.resultFormat(cli.getResultFormat().orElse(ResultFormatType.JSON));
+        }
+        else {
+            Path results = Path.of("bench-results", "backend-" + backendVersion() + ".json");
+            Files.createDirectories(results.getParent());
+            options.resultFormat(ResultFormatType.JSON).result(results.toString());
+        }
+        new Runner(options.build()).run();
+    }
+
+    static String backendVersion() throws IOException {
+        Properties properties = new Properties();
+        try (InputStream stream = BenchMain.class.getResourceAsStream("/bench.properties")) {
+            if (stream != null) properties.load(stream);
+        }
+        return properties.getProperty("backend.version", "unknown");
+    }
+}
@@ -0,0 +1,66 @@
+package com.honours.bench;
+
+import com.google.api.client.auth.oauth2.BearerToken;
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
+import com.honours.backend.apiActions.YtClients;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the two YouTube API objects of a request, from several threads at once like Tomcat's request threads:
+ * <br>- perRequest is what the back-end does now (Actions.makeYtObjects(), returning a YtClients per request),
+ * <br>- sharedStatic is how it used to be done, building the same objects into static fields that every request
+ * read from (which let one user's request run with another user's credential).
+ * <br>Both share the transport and JSON factory, so the difference is what the per-request record costs on top.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+@State(Scope.Benchmark)
+public class ClientBuildBenchmark {
+    private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+    private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+    private static YouTube yt;
+    private static YouTubeAnalytics ytAnalytics;
+
+    @State(Scope.Thread)
+    public static class User {
+        private TokenResponse token;
+
+        @Setup
+        public void setUp() {
+            token = new TokenResponse().setAccessToken("token-of-" + Thread.currentThread().getName());
+        }
+    }
+
+    @Benchmark
+    public YtClients perRequest(User user) throws Throwable {
+        return (YtClients) Privates.MAKE_YT_OBJECTS.invokeExact(user.token);
+    }
+
+    // The old Actions.makeYtObjects(), as it was before the clients were built per request.
+    @Benchmark
+    public YouTubeAnalytics sharedStatic(User user) {
+        Credential credential = new Credential(BearerToken.authorizationHeaderAccessMethod());
+        credential.setFromTokenResponse(user.token);
+
+        yt = new YouTube.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
+                .setApplicationName("youtube-analyser")
+                .build();
+        ytAnalytics = new YouTubeAnalytics.Builder(HTTP_TRANSPORT, JSON_FACTORY, credential)
+                .setApplicationName("youtube-analyser")
+                .build();
+        return ytAnalytics;
+    }
+}
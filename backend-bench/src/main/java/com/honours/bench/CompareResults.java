@@ -0,0 +1,76 @@
+package com.honours.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares two JSON result files written by BenchMain, e.g. of the last release and of the current code.
+ * <br>Prints the change of every benchmark and exits with 1 if any of them got slower by more than the allowed
+ * percentage (10% if not given), so it can be used as a release check:
+ * <br>java -cp target/benchmarks.jar com.honours.bench.CompareResults OLD.json NEW.json [ALLOWED_PERCENT]
+ */
+public class CompareResults {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareResults BASELINE.json CURRENT.json [ALLOWED_PERCENT]");
+            System.exit(2);
+        }
+        Map<String, Score> baseline = read(Path.of(args[0]));
+        Map<String, Score> current = read(Path.of(args[1]));
+        double allowed = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+
+        boolean regressed = false;
+        for (Map.Entry<String, Score> entry : current.entrySet()) {
+            Score before = baseline.get(entry.getKey());
+            Score now = entry.getValue();
+            if (before == null) {
+                System.out.printf("%-70s %12.3f %s (new)%n", entry.getKey(), now.value(), now.unit());
+                continue;
+            }
+            double change = now.worseBy(before);
+            boolean tooSlow = change > allowed;
+            regressed |= tooSlow;
+            System.out.printf("%-70s %12.3f -> %12.3f %-8s %+7.1f%%%s%n", entry.getKey(), before.value(), now.value(),
+                    now.unit(), change, tooSlow ? "  REGRESSION" : "");
+        }
+        System.exit(regressed ? 1 : 0);
+    }
+
+    /**
+     * One benchmark's primary result. For time per operation lower is better, for throughput higher is better.
+     */
+    private record Score(double value, String unit, boolean lowerIsBetter) {
+
+        // How much worse this score is than the other one, in percent (negative when it improved).
+        double worseBy(Score other) {
+            double change = (value - other.value) / other.value * 100;
+            return lowerIsBetter ? change : -change;
+        }
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        Map<String, Score> scores = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file.toFile())) {
+            // Benchmarks with parameters are told apart by their parameter values.
+            StringBuilder name = new StringBuilder(run.get("benchmark").asText().replace("com.honours.bench.", ""));
+            JsonNode params = run.get("params");
+            if (params != null) {
+                for (Iterator<Map.Entry<String, JsonNode>> it = params.fields(); it.hasNext(); ) {
+                    Map.Entry<String, JsonNode> param = it.next();
+                    name.append(' ').append(param.getKey()).append('=').append(param.getValue().asText());
+                }
+            }
+            JsonNode metric = run.get("primaryMetric");
+            scores.put(name.toString(), new Score(metric.get("score").asDouble(), metric.get("scoreUnit").asText(),
+                    !run.get("mode").asText().equals("thrpt")));
+        }
+        return scores;
+    }
+}
@@ -0,0 +1,118 @@
+package com.honours.bench;
+
+import com.honours.backend.BackendApplication;
+import com.honours.backend.YouTubeStub;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole requests to the backend's endpoints, from the HTTP request to the JSON response, with the backend
+ * running on an embedded server and talking to a local YouTube stub (see YouTubeStub in the backend's tests)
+ * instead of Google.
+ * <br>These measure everything the backend adds on top of the YouTube APIs: the controller, building the API
+ * clients, parsing the API responses, the processing and serialising the result.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ControllerBenchmark {
+    private static final String TOKEN = "{\"access_token\":\"bench-token\",\"token_type\":\"Bearer\",\"expires_in\":3599}";
+
+    private YouTubeStub stub;
+    private ConfigurableApplicationContext backend;
+    private HttpClient client;
+    private String root;
+
+    @Setup
+    public void setUp() throws Exception {
+        stub = new YouTubeStub(250);
+        // Given as arguments, since default properties would be overridden by application.properties.
+        backend = new SpringApplicationBuilder(BackendApplication.class).run(
+                "--server.port=0",
+                "--youtube.api.root-url=" + stub.rootUrl(),
+                "--youtube.metrics-store.dir=" + LoadTest.temporaryMetricsStore(),
+                // A measurement sends far more queries than a user's daily quota (or the rate limit) allows.
+                "--youtube.quota.daily-units=1000000000",
+                "--youtube.quota.user-daily-units=1000000000",
+                "--youtube.resilience.rate-per-second=1000000",
+                "--youtube.resilience.burst=1000000",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN");
+        root = "http://127.0.0.1:" + ((ServletWebServerApplicationContext) backend).getWebServer().getPort();
+        client = HttpClient.newHttpClient();
+
+        // A benchmark of a failing endpoint would only measure how fast it fails.
+        for (String[] call : new String[][]{
+                {"/api/channelBasics", TOKEN},
+                {"/api/vidAnalysis", videoBody()},
+                {"/api/allVideos", pageBody()},
+                {"/api/get200Comments", videoBody()},
+                {"/api/top5LatestVideos", TOKEN}}) {
+            HttpResponse<String> response = post(call[0], call[1]);
+            if (response.statusCode() != 200) {
+                tearDown();
+                throw new IllegalStateException(call[0] + " returned " + response.statusCode() + " against the stub.");
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        backend.close();
+        stub.close();
+    }
+
+    // The channel is cached after the first request, so this is mostly the backend's own overhead.
+    @Benchmark
+    public int channelBasics() throws Exception {
+        return post("/api/channelBasics", TOKEN).body().length();
+    }
+
+    @Benchmark
+    public int vidAnalysis() throws Exception {
+        return post("/api/vidAnalysis", videoBody()).body().length();
+    }
+
+    @Benchmark
+    public int allVideos() throws Exception {
+        return post("/api/allVideos", pageBody()).body().length();
+    }
+
+    @Benchmark
+    public int get200Comments() throws Exception {
+        return post("/api/get200Comments", videoBody()).body().length();
+    }
+
+    @Benchmark
+    public int top5LatestVideos() throws Exception {
+        return post("/api/top5LatestVideos", TOKEN).body().length();
+    }
+
+    private static String videoBody() {
+        return "{\"token\":" + TOKEN + ",\"video_id\":\"vid3\"}";
+    }
+
+    private static String pageBody() {
+        return "{\"token\":" + TOKEN + ",\"page_token\":null}";
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(root + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+}
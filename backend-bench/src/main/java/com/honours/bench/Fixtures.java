@@ -0,0 +1,136 @@
+package com.honours.bench;
+
+import com.google.api.services.youtube.model.*;
+import com.honours.backend.apiActions.VideoMetricsTable;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Builds the API objects the benchmarks run on, shaped like the real YouTube API responses.
+ * <br>A fixed seed is used, so every run (and every release) is measured on exactly the same data.
+ */
+final class Fixtures {
+    private static final long SEED = 888;
+
+    private Fixtures() {
+    }
+
+    /**
+     * @return the metrics of one video as a "reports.query" row (without the video ID), i.e. comments, likes,
+     * dislikes, shares, subscribersGained, averageViewPercentage, views, estimatedMinutesWatched.
+     */
+    static List<Object> scoringMetrics(SplittableRandom random) {
+        long views = 1_000 + random.nextLong(1_000_000);
+        return List.of(
+                new BigDecimal(random.nextLong(views / 50 + 1)),
+                new BigDecimal(random.nextLong(views / 10 + 1)),
+                new BigDecimal(random.nextLong(views / 100 + 1)),
+                new BigDecimal(random.nextLong(views / 100 + 1)),
+                new BigDecimal(random.nextLong(views / 200 + 1)),
+                BigDecimal.valueOf(random.nextDouble(100)),
+                new BigDecimal(views),
+                new BigDecimal(views * (1 + random.nextLong(5))));
+    }
+
+    static List<Object> scoringMetrics() {
+        return scoringMetrics(new SplittableRandom(SEED));
+    }
+
+    /**
+     * @return a map of "vid0".."vidN" to a score, like the one queryTop5Vids() builds.
+     */
+    static Map<String, Double> scores(int videos) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        Map<String, Double> scores = new HashMap<>();
+        for (int i = 0; i < videos; i++) {
+            scores.put("vid" + i, random.nextDouble(200));
+        }
+        return scores;
+    }
+
+    /**
+     * @return a table of "vid0".."vidN" with the metrics of a whole catalogue, like the top videos endpoint builds.
+     */
+    static VideoMetricsTable metricsTable(int videos) {
+        SplittableRandom random = new SplittableRandom(SEED);
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < videos; i++) {
+            List<Object> row = new ArrayList<>();
+            row.add("vid" + i);
+            row.addAll(scoringMetrics(random));
+            rows.add(row);
+        }
+        VideoMetricsTable table = new VideoMetricsTable(videos);
+        table.addRows(rows);
+        return table;
+    }
+
+    /**
+     * @return a page of the uploads playlist with its page tokens, one in ten videos deleted.
+     */
+    static PlaylistItemListResponse uploadsPage(int videos) {
+        List<PlaylistItem> items = new ArrayList<>();
+        for (int i = 0; i < videos; i++) {
+            items.add(new PlaylistItem()
+                    .setSnippet(new PlaylistItemSnippet()
+                            .setTitle("Benchmark video " + i)
+                            .setThumbnails(new ThumbnailDetails().setHigh(new Thumbnail()
+                                    .setUrl("https://i.ytimg.com/vi/vid" + i + "/hqdefault.jpg")))
+                            .setResourceId(new ResourceId().setVideoId("vid" + i)))
+                    .setStatus(new PlaylistItemStatus()
+                            .setPrivacyStatus(i % 10 == 9 ? "privacyStatusUnspecified" : "public")));
+        }
+        return new PlaylistItemListResponse().setItems(items).setNextPageToken("NEXT").setPrevPageToken("PREV");
+    }
+
+    static List<CommentThread> comments(int comments) {
+        List<CommentThread> threads = new ArrayList<>();
+        for (int i = 0; i < comments; i++) {
+            threads.add(new CommentThread().setSnippet(new CommentThreadSnippet()
+                    .setTopLevelComment(new Comment().setSnippet(new CommentSnippet()
+                            .setTextDisplay("This is benchmark comment number " + i + ", great video!")
+                            .setAuthorDisplayName("Viewer " + i)
+                            .setAuthorProfileImageUrl("https://yt3.ggpht.com/viewer" + i)))));
+        }
+        return threads;
+    }
+
+    /**
+     * @return a video with under 10 thousand views and a low engagement rate, so most of the advice applies.
+     */
+    static Video analysedVideo() {
+        return new Video().setId("vid0")
+                .setStatistics(new VideoStatistics()
+                        .setViewCount(BigInteger.valueOf(8_500))
+                        .setLikeCount(BigInteger.valueOf(300))
+                        .setDislikeCount(BigInteger.valueOf(12))
+                        .setCommentCount(BigInteger.valueOf(40)));
+    }
+
+    /**
+     * @return averageViewDuration, averageViewPercentage, subscribersGained and cardClickRate of a video.
+     */
+    static List<Object> overallMetrics() {
+        return List.of(new BigDecimal(95), new BigDecimal("18.4"), new BigDecimal(7), new BigDecimal("1.2"));
+    }
+
+    /**
+     * @return the rows of a retention query: the "elapsedVideoTimeRatio", audienceWatchRatio and
+     * relativeRetentionPerformance of each of the 100 points, with a steep intro decline and a steady decline
+     * after it (no single big dip, so the whole curve is scanned).
+     */
+    static List<List<Object>> retentionRows() {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            double ratio = i < 10 ? 1.0 - i * 0.04 : 0.64 - (i - 10) * 0.005;
+            rows.add(List.of(BigDecimal.valueOf((i + 1) / 100.0), BigDecimal.valueOf(ratio), new BigDecimal("0.5")));
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,374 @@
+package com.honours.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.honours.backend.YouTubeStub;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * A load test of the pages creators open, run against a local YouTube stand-in (YouTubeStub), to find how many
+ * concurrent creators one backend can serve before its p99 latency degrades.
+ * <br>Every simulated creator has a channel of their own and goes through the same requests the front-end sends for
+ * the dashboard, the videos page and a video's analysis (see SCENARIOS), picked at random but in the same order on
+ * every run, waiting THINK_MS between two requests. For every number of creators, the requests per second, the
+ * p50, p95 and p99 latency and the error rate are printed, for every request and overall, and written to
+ * bench-results/load-VERSION.json.
+ * <br>When a baseline (an earlier results file) is given, the results are compared with it and the exit code is 1 if
+ * any of them got worse by more than the allowed percentage (10% if not given), so a regression fails the build
+ * (see the "load-test" profile in pom.xml):
+ * <br>java -cp target/benchmarks.jar com.honours.bench.LoadSuite [USERS,USERS,...] [SECONDS] [STUB_LATENCY_MS]
+ * [THINK_MS] [BASELINE.json] [ALLOWED_PERCENT]
+ */
+public class LoadSuite {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    // The name the overall results are reported under.
+    private static final String ALL = "all";
+    // A p99 this close to the baseline's is not a regression, whatever the percentage (a few ms is noise).
+    private static final double P99_SLACK_MS = 5;
+    // Neither is an error rate up by less than a percentage point.
+    private static final double ERROR_RATE_SLACK = 0.01;
+    // A p99 of fewer requests is too close to the slowest one to compare, so those are printed but not checked.
+    private static final int MIN_REQUESTS = 200;
+    // The number of creators the backend can serve is the last one whose p99 is within this factor of the first's.
+    private static final double P99_DEGRADED = 2;
+
+    /**
+     * One request of a scenario.
+     *
+     * @param name the name the request is reported under.
+     * @param path the ApiController route.
+     * @param body the request body, built from what the creator has seen so far.
+     * @param read what the creator takes from the response for the next requests (e.g. a page token), or null.
+     */
+    private record Step(String name, String path, Function<Creator, Object> body, BiConsumer<Creator, JsonNode> read) {
+    }
+
+    /**
+     * A page a creator opens, as the requests the front-end sends for it, and how often it is opened compared
+     * with the others.
+     */
+    private record Scenario(String name, int weight, List<Step> steps) {
+    }
+
+    // Every page first checks the creator is logged in (LoggedInChecker).
+    private static final Step LOGGED_IN = new Step("channelBasics", "/api/channelBasics", c -> c.token, null);
+    private static final Step FIRST_VIDEOS = new Step("videos", "/api/videos",
+            c -> Map.of("token", c.token), LoadSuite::readVideos);
+
+    private static final List<Scenario> SCENARIOS = List.of(
+            new Scenario("dashboard", 4, List.of(LOGGED_IN,
+                    new Step("dashboard", "/api/dashboard", c -> c.token, null))),
+            new Scenario("videos page", 3, List.of(LOGGED_IN, FIRST_VIDEOS,
+                    new Step("videos (next page)", "/api/videos", c -> c.nextPageToken == null
+                            ? Map.of("token", c.token)
+                            : Map.of("token", c.token, "page_token", c.nextPageToken), LoadSuite::readVideos))),
+            new Scenario("video analysis", 3, List.of(LOGGED_IN, FIRST_VIDEOS,
+                    new Step("vidAnalysis", "/api/vidAnalysis",
+                            c -> Map.of("token", c.token, "video_id", c.videoID), null))));
+
+    public static void main(String[] args) throws Exception {
+        int[] users = Arrays.stream((args.length > 0 ? args[0] : "25,50,100").split(",")).mapToInt(Integer::parseInt).toArray();
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 15);
+        Duration latency = Duration.ofMillis(args.length > 2 ? Long.parseLong(args[2]) : 50);
+        Duration think = Duration.ofMillis(args.length > 3 ? Long.parseLong(args[3]) : 100);
+        Path baseline = args.length > 4 && !args[4].isBlank() ? Path.of(args[4]) : null;
+        double allowed = args.length > 5 ? Double.parseDouble(args[5]) : 10;
+
+        ObjectNode results = MAPPER.createObjectNode();
+        results.put("backend", BenchMain.backendVersion());
+        results.put("seconds", duration.toSeconds());
+        results.put("stubLatencyMs", latency.toMillis());
+        results.put("thinkMs", think.toMillis());
+        ArrayNode runs = results.putArray("runs");
+
+        try (YouTubeStub stub = new YouTubeStub(250, latency)) {
+            ConfigurableApplicationContext backend = LoadTest.startBackend(stub, false);
+            try {
+                String root = LoadTest.rootOf(backend);
+                List<Creator> creators = new ArrayList<>();
+                for (int i = 0; i < Arrays.stream(users).max().orElse(0); i++) creators.add(new Creator(stub, i));
+
+                System.out.printf("%6s %-20s %10s %10s %10s %10s %8s%n",
+                        "users", "request", "requests/s", "p50 ms", "p95 ms", "p99 ms", "errors");
+                for (int count : users) {
+                    List<Creator> running = creators.subList(0, count);
+                    load(root, running, think, Duration.ofSeconds(2));
+                    Map<String, Tally> tallies = load(root, running, think, duration);
+
+                    ObjectNode run = runs.addObject();
+                    run.put("users", count);
+                    ObjectNode requests = run.putObject("requests");
+                    for (Map.Entry<String, Tally> tally : tallies.entrySet()) {
+                        ObjectNode summary = tally.getValue().summarise(duration);
+                        requests.set(tally.getKey(), summary);
+                        System.out.printf("%6d %-20s %10.1f %10.1f %10.1f %10.1f %7.2f%%%n", count, tally.getKey(),
+                                summary.get("throughput").asDouble(), summary.get("p50").asDouble(),
+                                summary.get("p95").asDouble(), summary.get("p99").asDouble(),
+                                summary.get("errorRate").asDouble() * 100);
+                    }
+                }
+            }
+            finally {
+                backend.close();
+            }
+        }
+        printCapacity(runs);
+
+        Path file = Path.of("bench-results", "load-" + BenchMain.backendVersion() + ".json");
+        Files.createDirectories(file.getParent());
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file.toFile(), results);
+        System.out.println("Results written to " + file);
+
+        if (baseline != null) {
+            if (!Files.exists(baseline)) {
+                System.out.println("No baseline at " + baseline + ", copy " + file + " there to compare later runs with it.");
+                return;
+            }
+            System.exit(compare(MAPPER.readTree(baseline.toFile()), results, allowed) ? 1 : 0);
+        }
+    }
+
+    /**
+     * Runs every creator through the scenarios for the given time, each one sending a request, waiting for the
+     * response and for the think time, and going on to the next.
+     *
+     * @return the latencies and errors of every request, and overall under ALL.
+     */
+    private static Map<String, Tally> load(String root, List<Creator> creators, Duration think, Duration duration)
+            throws Exception {
+        // The client's own threads are daemons, so they do not keep the JVM running once the test is over.
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "load-client");
+            thread.setDaemon(true);
+            return thread;
+        })).build();
+        long end = System.nanoTime() + duration.toNanos();
+
+        ExecutorService threads = Executors.newFixedThreadPool(creators.size());
+        try {
+            List<Future<Map<String, Tally>>> running = new ArrayList<>();
+            for (Creator creator : creators) {
+                running.add(threads.submit(() -> {
+                    Map<String, Tally> tallies = new HashMap<>();
+                    while (System.nanoTime() < end) {
+                        for (Step step : creator.nextScenario().steps()) {
+                            if (System.nanoTime() >= end) break;
+                            send(client, root, creator, step, tallies.computeIfAbsent(step.name(), name -> new Tally()));
+                            TimeUnit.NANOSECONDS.sleep(think.toNanos());
+                        }
+                    }
+                    return tallies;
+                }));
+            }
+
+            // The requests are reported in the order the scenarios list them, the overall results last.
+            Map<String, Tally> merged = new LinkedHashMap<>();
+            for (Scenario scenario : SCENARIOS) {
+                for (Step step : scenario.steps()) merged.putIfAbsent(step.name(), new Tally());
+            }
+            merged.put(ALL, new Tally());
+            for (Future<Map<String, Tally>> creator : running) {
+                for (Map.Entry<String, Tally> tally : creator.get().entrySet()) {
+                    merged.get(tally.getKey()).add(tally.getValue());
+                    merged.get(ALL).add(tally.getValue());
+                }
+            }
+            return merged;
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static void send(HttpClient client, String root, Creator creator, Step step, Tally tally) {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(root + step.path()))
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(json(step.body().apply(creator))))
+                .build();
+        long started = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            long latency = System.nanoTime() - started;
+            if (response.statusCode() != 200) {
+                tally.failed++;
+                return;
+            }
+            tally.latencies.add(latency);
+            if (step.read() != null) step.read().accept(creator, MAPPER.readTree(response.body()));
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        catch (Exception ex) {
+            tally.failed++;
+        }
+    }
+
+    // The videos page keeps the next page's token, and a video of the page for the analysis.
+    private static void readVideos(Creator creator, JsonNode page) {
+        JsonNode next = page.get("nextPageToken");
+        creator.nextPageToken = next == null || next.isNull() ? null : next.asText();
+        JsonNode videos = page.get("videos");
+        if (videos != null && videos.size() > 0) {
+            creator.videoID = videos.get(creator.random.nextInt(videos.size())).get("videoID").asText();
+        }
+    }
+
+    private static String json(Object body) {
+        try {
+            return MAPPER.writeValueAsString(body);
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * A simulated creator, with a channel of their own (between 40 and 240 videos) and what they have seen so far.
+     */
+    private static final class Creator {
+        private final Map<String, Object> token;
+        // Seeded with the creator's number, so every run opens the same pages in the same order.
+        private final Random random;
+        private String nextPageToken;
+        private String videoID = "vid0";
+
+        Creator(YouTubeStub stub, int number) {
+            String accessToken = "creator-" + number;
+            stub.addChannel(accessToken, new YouTubeStub.Channel("UCcreator" + number, 40 + number % 5 * 50, 20, 200));
+            token = Map.of("access_token", accessToken, "token_type", "Bearer", "expires_in", 3599);
+            random = new Random(number);
+        }
+
+        Scenario nextScenario() {
+            int total = SCENARIOS.stream().mapToInt(Scenario::weight).sum();
+            int pick = random.nextInt(total);
+            for (Scenario scenario : SCENARIOS) {
+                pick -= scenario.weight();
+                if (pick < 0) return scenario;
+            }
+            throw new IllegalStateException("No scenario picked");
+        }
+    }
+
+    private static final class Tally {
+        private final List<Long> latencies = new ArrayList<>();
+        private long failed;
+
+        void add(Tally other) {
+            latencies.addAll(other.latencies);
+            failed += other.failed;
+        }
+
+        ObjectNode summarise(Duration duration) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            long total = sorted.length + failed;
+            ObjectNode summary = MAPPER.createObjectNode();
+            summary.put("throughput", sorted.length / (duration.toNanos() / 1e9));
+            summary.put("p50", percentile(sorted, 0.50));
+            summary.put("p95", percentile(sorted, 0.95));
+            summary.put("p99", percentile(sorted, 0.99));
+            summary.put("errorRate", total == 0 ? 0 : (double) failed / total);
+            summary.put("requests", total);
+            return summary;
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return 0;
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+        }
+    }
+
+    // Prints the most creators served before the overall p99 degraded (grew by P99_DEGRADED times the first run's).
+    private static void printCapacity(ArrayNode runs) {
+        if (runs.isEmpty()) return;
+        double first = runs.get(0).get("requests").get(ALL).get("p99").asDouble();
+        int capacity = 0;
+        for (JsonNode run : runs) {
+            JsonNode all = run.get("requests").get(ALL);
+            if (all.get("p99").asDouble() > first * P99_DEGRADED || all.get("errorRate").asDouble() > ERROR_RATE_SLACK) break;
+            capacity = run.get("users").asInt();
+        }
+        System.out.println(capacity == 0
+                ? "The p99 degraded from the first run on, try fewer creators."
+                : "Up to " + capacity + " creators were served before the p99 degraded (of the numbers tried).");
+    }
+
+    /**
+     * Compares every request of every run with the same one in the baseline, printing the changes.
+     *
+     * @return whether the p99 or the throughput got worse by more than the allowed percentage, or the error rate grew.
+     */
+    private static boolean compare(JsonNode baseline, JsonNode current, double allowed) {
+        for (String setting : List.of("seconds", "stubLatencyMs", "thinkMs")) {
+            if (!baseline.path(setting).asText().equals(current.path(setting).asText())) {
+                System.out.println("Warning: the baseline was run with " + setting + "=" + baseline.path(setting)
+                        + ", this run with " + current.path(setting) + ".");
+            }
+        }
+        Map<Integer, JsonNode> before = new HashMap<>();
+        for (JsonNode run : baseline.get("runs")) before.put(run.get("users").asInt(), run.get("requests"));
+
+        boolean regressed = false;
+        System.out.println("Compared with the baseline (backend " + baseline.path("backend").asText() + "):");
+        for (JsonNode run : current.get("runs")) {
+            int users = run.get("users").asInt();
+            for (Map.Entry<String, JsonNode> request : iterable(run.get("requests"))) {
+                String name = users + " users " + request.getKey();
+                JsonNode now = request.getValue();
+                JsonNode was = before.containsKey(users) ? before.get(users).get(request.getKey()) : null;
+                if (was == null) {
+                    System.out.printf("%-40s (new)%n", name);
+                    continue;
+                }
+                double p99Change = change(was.get("p99").asDouble(), now.get("p99").asDouble());
+                double throughputChange = -change(was.get("throughput").asDouble(), now.get("throughput").asDouble());
+                double errorChange = now.get("errorRate").asDouble() - was.get("errorRate").asDouble();
+                boolean checked = Math.min(was.get("requests").asLong(), now.get("requests").asLong()) >= MIN_REQUESTS;
+                boolean worse = checked && (p99Change > allowed
+                        && now.get("p99").asDouble() - was.get("p99").asDouble() > P99_SLACK_MS
+                        || throughputChange > allowed || errorChange > ERROR_RATE_SLACK);
+                regressed |= worse;
+                System.out.printf("%-40s p99 %8.1f -> %8.1f ms %+7.1f%%  requests/s %+7.1f%%  errors %+6.2f%%%s%n",
+                        name, was.get("p99").asDouble(), now.get("p99").asDouble(), p99Change, -throughputChange,
+                        errorChange * 100, worse ? "  REGRESSION" : checked ? "" : "  (too few requests to check)");
+            }
+        }
+        return regressed;
+    }
+
+    // The change from one value to the other, in percent.
+    private static double change(double from, double to) {
+        return from == 0 ? 0 : (to - from) / from * 100;
+    }
+
+    private static Iterable<Map.Entry<String, JsonNode>> iterable(JsonNode object) {
+        return object::fields;
+    }
+}
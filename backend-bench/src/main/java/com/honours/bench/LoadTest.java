@@ -0,0 +1,217 @@
+package com.honours.bench;
+
+import com.honours.backend.BackendApplication;
+import com.honours.backend.YouTubeStub;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * A load test of the backend against a local YouTube stub that answers every query after a fixed latency, comparing
+ * the default thread-per-request model ("platform") with the virtual-thread mode (youtube.threads.virtual,
+ * "virtual") and the non-blocking endpoints under /api/reactive ("reactive").
+ * <br>Each simulated user sends a request, waits for the response and sends the next one straight away, for the
+ * given time. For every number of users, the throughput, the p50 and p99 latency and the failed requests are printed.
+ * Once the latency grows while the throughput does not, the backend has reached its concurrent-user capacity.
+ * <br>java -cp target/benchmarks.jar com.honours.bench.LoadTest [USERS,USERS,...] [SECONDS] [STUB_LATENCY_MS] [MODES]
+ * <br>e.g. "LoadTest 50,200,800 20 100 platform,virtual,reactive".
+ */
+public class LoadTest {
+    private static final String TOKEN = "{\"access_token\":\"load-token\",\"token_type\":\"Bearer\",\"expires_in\":3599}";
+    // Two comment pages, neither of which is cached, so every request waits on YouTube twice.
+    private static final String PATH = "/api/get200Comments";
+    private static final String REACTIVE_PATH = "/api/reactive/get200Comments";
+    private static final String BODY = "{\"token\":" + TOKEN + ",\"video_id\":\"vid3\"}";
+
+    /**
+     * The results of one run.
+     *
+     * @param mode "platform", "virtual" or "reactive".
+     * @param users the number of simulated users.
+     * @param throughput the successful requests per second.
+     * @param p50 the median latency in milliseconds.
+     * @param p99 the 99th percentile latency in milliseconds.
+     * @param failed the number of requests that failed or did not return 200.
+     */
+    public record Result(String mode, int users, double throughput, double p50, double p99, long failed) {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int[] users = Arrays.stream((args.length > 0 ? args[0] : "50,200,800").split(",")).mapToInt(Integer::parseInt).toArray();
+        Duration duration = Duration.ofSeconds(args.length > 1 ? Long.parseLong(args[1]) : 20);
+        Duration latency = Duration.ofMillis(args.length > 2 ? Long.parseLong(args[2]) : 100);
+        List<String> modes = List.of((args.length > 3 ? args[3] : "platform,virtual,reactive").split(","));
+
+        System.out.printf("%-9s %6s %12s %10s %10s %8s%n", "mode", "users", "requests/s", "p50 ms", "p99 ms", "failed");
+        try (YouTubeStub stub = new YouTubeStub(250, latency)) {
+            for (String mode : modes) {
+                for (Result result : run(stub, mode, users, duration)) {
+                    System.out.printf("%-9s %6d %12.1f %10.1f %10.1f %8d%n", result.mode(), result.users(),
+                            result.throughput(), result.p50(), result.p99(), result.failed());
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts the backend in the given mode and runs the load test for every number of users.
+     *
+     * @param stub the YouTube stub the backend queries.
+     * @param mode "platform", "virtual" (the backend in the virtual-thread mode) or "reactive" (the reactive
+     *             endpoints of the backend in the default mode).
+     * @param users the numbers of simulated users, one run each.
+     * @param duration how long every run lasts (after a short warm-up).
+     * @return the results of every run.
+     */
+    public static List<Result> run(YouTubeStub stub, String mode, int[] users, Duration duration) throws Exception {
+        ConfigurableApplicationContext backend = startBackend(stub, mode.equals("virtual"));
+        try {
+            URI uri = URI.create(rootOf(backend) + (mode.equals("reactive") ? REACTIVE_PATH : PATH));
+            List<Result> results = new ArrayList<>();
+            for (int count : users) {
+                load(uri, count, Duration.ofSeconds(2));
+                results.add(load(uri, count, duration).withMode(mode));
+            }
+            return results;
+        }
+        finally {
+            backend.close();
+        }
+    }
+
+    /**
+     * Starts the backend on a free port, querying the stub. Every mode gets the same (large) connection pool, quota
+     * and rate limit, so only the threads differ, and an empty metrics store of its own.
+     *
+     * @param stub the YouTube stub the backend queries.
+     * @param virtual whether the backend runs in the virtual-thread mode.
+     * @return the running backend, to be closed once the test is over.
+     */
+    static ConfigurableApplicationContext startBackend(YouTubeStub stub, boolean virtual) throws IOException {
+        return new SpringApplicationBuilder(BackendApplication.class).run(
+                "--server.port=0",
+                "--youtube.metrics-store.dir=" + temporaryMetricsStore(),
+                "--server.tomcat.accept-count=10000",
+                "--server.tomcat.max-connections=20000",
+                "--youtube.api.root-url=" + stub.rootUrl(),
+                "--youtube.threads.virtual=" + virtual,
+                "--youtube.transport.max-connections=5000",
+                "--youtube.transport.max-connections-per-route=5000",
+                "--youtube.quota.daily-units=1000000000",
+                "--youtube.quota.user-daily-units=1000000000",
+                "--youtube.resilience.rate-per-second=1000000",
+                "--youtube.resilience.burst=1000000",
+                "--spring.main.banner-mode=off",
+                "--logging.level.root=WARN",
+                // The backend's pools are closed after Tomcat checks for threads left running, so its warnings are noise.
+                "--logging.level.org.apache.catalina.loader=ERROR");
+    }
+
+    /**
+     * @return a new, empty folder for the backend's metrics store, deleted when the JVM exits, so a run neither reads
+     * the days stored by an earlier run nor leaves any behind.
+     */
+    static Path temporaryMetricsStore() throws IOException {
+        Path store = Files.createTempDirectory("metrics-store");
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try (Stream<Path> files = Files.walk(store)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+            catch (IOException ex) {
+                // Only a temporary folder is left behind.
+            }
+        }));
+        return store;
+    }
+
+    /**
+     * @return the root URL of a backend started with startBackend(), e.g. "http://127.0.0.1:8080".
+     */
+    static String rootOf(ConfigurableApplicationContext backend) {
+        return "http://127.0.0.1:" + ((ServletWebServerApplicationContext) backend).getWebServer().getPort();
+    }
+
+    private static Measured load(URI uri, int users, Duration duration) throws Exception {
+        // The client's own threads are daemons, so they do not keep the JVM running once the test is over.
+        HttpClient client = HttpClient.newBuilder().executor(Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "load-client");
+            thread.setDaemon(true);
+            return thread;
+        })).build();
+        HttpRequest request = HttpRequest.newBuilder(uri)
+                .header("Content-Type", "application/json")
+                .timeout(Duration.ofSeconds(60))
+                .POST(HttpRequest.BodyPublishers.ofString(BODY))
+                .build();
+        long end = System.nanoTime() + duration.toNanos();
+
+        ExecutorService threads = Executors.newFixedThreadPool(users);
+        try {
+            List<Future<User>> running = new ArrayList<>();
+            for (int i = 0; i < users; i++) {
+                running.add(threads.submit(() -> {
+                    User user = new User();
+                    while (System.nanoTime() < end) {
+                        long started = System.nanoTime();
+                        try {
+                            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                            if (response.statusCode() == 200) user.latencies.add(System.nanoTime() - started);
+                            else user.failed++;
+                        }
+                        catch (Exception ex) {
+                            user.failed++;
+                        }
+                    }
+                    return user;
+                }));
+            }
+
+            List<Long> latencies = new ArrayList<>();
+            long failed = 0;
+            for (Future<User> user : running) {
+                latencies.addAll(user.get().latencies);
+                failed += user.get().failed;
+            }
+            return new Measured(users, duration, latencies, failed);
+        }
+        finally {
+            threads.shutdownNow();
+        }
+    }
+
+    private static final class User {
+        private final List<Long> latencies = new ArrayList<>();
+        private long failed;
+    }
+
+    private record Measured(int users, Duration duration, List<Long> latencies, long failed) {
+
+        Result withMode(String mode) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            return new Result(mode, users, sorted.length / (duration.toNanos() / 1e9),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), failed);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) return Double.NaN;
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
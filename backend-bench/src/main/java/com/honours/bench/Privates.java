@@ -0,0 +1,53 @@
+package com.honours.bench;
+
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import com.google.api.services.youtube.model.Video;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.apiActions.Actions;
+import com.honours.backend.apiActions.RetentionCurve;
+import com.honours.backend.apiActions.VideoActions;
+import com.honours.backend.apiActions.YtClients;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Handles on the private helpers of VideoActions (and Actions) that are benchmarked.
+ * <br>Method handles are looked up once and stored in static final fields, so the JIT can inline the call and
+ * the benchmarks measure the helpers themselves rather than reflection.
+ */
+final class Privates {
+    static final MethodHandle CALCULATE_SCORE = find("calculateScore", double.class, List.class);
+    static final MethodHandle CALCULATE_SCORE_PRIMITIVE = find("calculateScore", double.class,
+            long.class, long.class, long.class, long.class, long.class, double.class, long.class, long.class);
+    static final MethodHandle FIND_HIGHEST_SCORES = find("findHighestScores", Map.class, Map.class, int.class);
+    static final MethodHandle SHAPE_MAP_RESULT = find("shapeMapResult", Map.class,
+            List.class, PlaylistItemListResponse.class);
+    static final MethodHandle SHAPE_COMMENT_RESULT = find("shapeCommentResult", List.class, List.class);
+    static final MethodHandle GET_VIDEO_ADVICE = find("getVideoAdvice", List.class,
+            Video.class, List.class, RetentionCurve.class);
+    static final MethodHandle MAKE_YT_OBJECTS = find(Actions.class, "makeYtObjects", YtClients.class,
+            TokenResponse.class);
+
+    private Privates() {
+    }
+
+    private static MethodHandle find(String name, Class<?> returnType, Class<?>... parameters) {
+        return find(VideoActions.class, name, returnType, parameters);
+    }
+
+    private static MethodHandle find(Class<?> owner, String name, Class<?> returnType, Class<?>... parameters) {
+        try{
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(owner, MethodHandles.lookup());
+            return lookup.findStatic(owner, name, MethodType.methodType(returnType, parameters));
+        }
+        catch(ReflectiveOperationException ex){
+            // The benchmarks can not run against a backend where one of the helpers was renamed or removed.
+            throw new IllegalStateException(owner.getSimpleName() + "." + name + " can not be benchmarked: "
+                    + ex.getMessage(), ex);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.honours.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import com.honours.backend.apiActions.RetentionCurve;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The response formats the heavy endpoints can send (JSON, CBOR and Smile, see ApiController), compared on the
+ * responses that are the largest: 200 comments, a page of 50 videos and a video's retention curves.
+ * <br>Encoding is what the back-end does for every response, decoding (into plain maps and lists, like a client
+ * without classes for the responses) is what the client does.
+ * <br>The payload sizes, also gzipped, are printed by running the class on its own:
+ * <br>java -cp target/benchmarks.jar com.honours.bench.ResponseFormatBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ResponseFormatBenchmark {
+    private static final List<String> FORMATS = List.of("json", "cbor", "smile");
+    private static final List<String> PAYLOADS = List.of("comments", "videos", "retention");
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    @Param({"comments", "videos", "retention"})
+    public String payload;
+
+    private ObjectMapper mapper;
+    private Object response;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws Throwable {
+        mapper = mapper(format);
+        response = response(payload);
+        encoded = mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(response);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return mapper.readValue(encoded, Object.class);
+    }
+
+    public static void main(String[] args) throws Throwable {
+        System.out.printf("%-10s %-6s %10s %12s%n", "response", "format", "bytes", "gzip bytes");
+        for (String payload : PAYLOADS) {
+            Object response = response(payload);
+            for (String format : FORMATS) {
+                byte[] encoded = mapper(format).writeValueAsBytes(response);
+                System.out.printf("%-10s %-6s %10d %12d%n", payload, format, encoded.length, gzip(encoded).length);
+            }
+        }
+    }
+
+    private static ObjectMapper mapper(String format) {
+        return switch (format) {
+            case "json" -> new ObjectMapper();
+            case "cbor" -> new ObjectMapper(new CBORFactory());
+            case "smile" -> new ObjectMapper(new SmileFactory());
+            default -> throw new IllegalArgumentException("Unknown format " + format);
+        };
+    }
+
+    /**
+     * @return the response the back-end sends, shaped the same way the endpoint shapes it.
+     */
+    private static Object response(String payload) throws Throwable {
+        if (payload.equals("comments")) {
+            return (List<?>) Privates.SHAPE_COMMENT_RESULT.invokeExact(Fixtures.comments(200));
+        }
+        if (payload.equals("videos")) {
+            PlaylistItemListResponse page = Fixtures.uploadsPage(50);
+            return (Map<?, ?>) Privates.SHAPE_MAP_RESULT.invokeExact(page.getItems(), page);
+        }
+        if (payload.equals("retention")) {
+            RetentionCurve retention = RetentionCurve.fromRows(Fixtures.retentionRows());
+            return Map.of("averageWatchRatio", retention.watchRatio(),
+                    "relativeRetentionPerformance", retention.relativePerformance());
+        }
+        throw new IllegalArgumentException("Unknown payload " + payload);
+    }
+
+    private static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+            zip.write(bytes);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,78 @@
+package com.honours.bench;
+
+import com.honours.backend.apiActions.VideoMetricsTable;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The video scoring used by the top videos endpoints: the score of a single video, from an analytics row and
+ * from already parsed metrics, and picking the top 5 out of channels of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScoringBenchmark {
+
+    private List<Object> metrics;
+    private long comments, likes, dislikes, shares, subsGained, views, watchtime;
+    private double avp;
+
+    @Setup
+    public void setUp() {
+        metrics = Fixtures.scoringMetrics();
+        comments = ((BigDecimal) metrics.get(0)).longValue();
+        likes = ((BigDecimal) metrics.get(1)).longValue();
+        dislikes = ((BigDecimal) metrics.get(2)).longValue();
+        shares = ((BigDecimal) metrics.get(3)).longValue();
+        subsGained = ((BigDecimal) metrics.get(4)).longValue();
+        avp = ((BigDecimal) metrics.get(5)).doubleValue();
+        views = ((BigDecimal) metrics.get(6)).longValue();
+        watchtime = ((BigDecimal) metrics.get(7)).longValue();
+    }
+
+    @State(Scope.Benchmark)
+    public static class Catalogue {
+        // 25 is what the latest videos endpoint scores, the rest are whole back catalogues.
+        @Param({"25", "1000", "10000"})
+        public int videos;
+
+        private Map<String, Double> scores;
+        private VideoMetricsTable table;
+
+        @Setup
+        public void setUp() {
+            scores = Fixtures.scores(videos);
+            table = Fixtures.metricsTable(videos);
+        }
+    }
+
+    @Benchmark
+    public double calculateScore() throws Throwable {
+        return (double) Privates.CALCULATE_SCORE.invokeExact(metrics);
+    }
+
+    @Benchmark
+    public double calculateScorePrimitive() throws Throwable {
+        return (double) Privates.CALCULATE_SCORE_PRIMITIVE.invokeExact(comments, likes, dislikes, shares, subsGained,
+                avp, views, watchtime);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Double> findHighestScores(Catalogue catalogue) throws Throwable {
+        return (Map<String, Double>) (Map<?, ?>) Privates.FIND_HIGHEST_SCORES.invokeExact(catalogue.scores, 5);
+    }
+
+    // Scoring and ranking a whole catalogue the way the top videos endpoint does it.
+    @Benchmark
+    public int[] metricsTableTopK(Catalogue catalogue) {
+        return catalogue.table.topK(5);
+    }
+}
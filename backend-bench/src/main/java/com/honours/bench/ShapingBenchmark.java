@@ -0,0 +1,48 @@
+package com.honours.bench;
+
+import com.google.api.services.youtube.model.CommentThread;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import com.honours.backend.apiActions.VideoActions;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shaping the API responses into what is returned to the front-end: a page of the videos list and a page of
+ * comments, at the sizes the endpoints actually return.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShapingBenchmark {
+
+    private PlaylistItemListResponse uploadsPage;
+    private List<PlaylistItem> uploads;
+    private List<CommentThread> comments;
+
+    @Setup
+    public void setUp() {
+        // 10 videos per page in the videos list, 100 comments per commentThreads.list page.
+        uploadsPage = Fixtures.uploadsPage(10);
+        uploads = uploadsPage.getItems();
+        comments = Fixtures.comments(100);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> shapeMapResult() throws Throwable {
+        return (Map<String, Object>) (Map<?, ?>) Privates.SHAPE_MAP_RESULT.invokeExact(uploads, uploadsPage);
+    }
+
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public List<VideoActions.CommentItem> shapeCommentResult() throws Throwable {
+        return (List<VideoActions.CommentItem>) (List<?>) Privates.SHAPE_COMMENT_RESULT.invokeExact(comments);
+    }
+}
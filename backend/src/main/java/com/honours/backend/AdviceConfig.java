@@ -0,0 +1,45 @@
+package com.honours.backend;
+
+import com.honours.backend.apiActions.AdviceCorpus;
+import com.honours.backend.properties.AdviceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class loads the video advice on startup and, if "youtube.advice.reload-interval" is set in
+ * application.properties, reloads it periodically so edited advice files are picked up without a restart.
+ */
+@Configuration
+@EnableConfigurationProperties(AdviceProperties.class)
+public class AdviceConfig {
+    private final ScheduledExecutorService reloader;
+
+    public AdviceConfig(AdviceProperties advice) {
+        Duration reloadInterval = advice.reloadInterval();
+        // Loading the advice now rather than on the first video analysis request.
+        AdviceCorpus.reload();
+
+        if(reloadInterval.isZero()){
+            reloader = null;
+            return;
+        }
+        reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "advice-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reloader.scheduleWithFixedDelay(AdviceCorpus::reload,
+                reloadInterval.toMillis(), reloadInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    void stopReloading() {
+        if(reloader != null) reloader.shutdownNow();
+    }
+}
@@ -1,25 +1,36 @@
 package com.honours.backend;
 
 import com.honours.backend.apiActions.ChannelActions;
+import com.honours.backend.apiActions.DashboardActions;
 import com.honours.backend.apiActions.VideoActions;
+import com.honours.backend.receivedRequests.CommentsTokenResponse;
 import com.honours.backend.receivedRequests.CustomTokenResponse;
+import com.honours.backend.receivedRequests.TopVideosTokenResponse;
 import com.honours.backend.receivedRequests.VidPageTokenResponse;
+import com.honours.backend.receivedRequests.VideoBatchTokenResponse;
+import com.honours.backend.receivedRequests.VideoListTokenResponse;
 import com.honours.backend.receivedRequests.VideoTokenResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * This class acts as the Controller for the REST API, connecting the front-end with the back-end of the application.
  * <br/>
  * Each of the methods is mapped to a specific URL that is then accessed by the front-end.
  * <br/>
- * Each method calls a specific action implemented in one of two classes - ChannelActions and VideoActions.
+ * Each method calls a specific action implemented in one of three classes - ChannelActions, VideoActions and
+ * DashboardActions.
  * Further documentation can be found in the specific class containing each of the methods called.
  */
 @RestController
 @CrossOrigin(origins={"https://devweb2023.cis.strath.ac.uk", "http://localhost:3000"})
 public class ApiController {
+    // The large responses can also be sent in a binary form of JSON (CBOR or Smile) to clients asking for it in
+    // their Accept header. The keys and values are the same, only the encoding is more compact and faster to parse.
+    private static final String SMILE = "application/x-jackson-smile";
 
     @GetMapping("/test")
     ResponseEntity<Object> test(){
@@ -31,6 +42,11 @@ public class ApiController {
         return ChannelActions.getChannelSubs(auth_object);
     }
 
+    @PostMapping("/api/dashboard")
+    ResponseEntity<Object> dashboard(@RequestBody CustomTokenResponse auth_object){
+        return DashboardActions.getDashboard(auth_object);
+    }
+
     @PostMapping("/api/channelBasics")
     ResponseEntity<Object> channelBasics(@RequestBody CustomTokenResponse auth_object){
         return ChannelActions.getChannelBasics(auth_object);
@@ -41,6 +57,16 @@ public class ApiController {
         return ChannelActions.getWatchTime365(auth_object);
     }
 
+    @PostMapping("/api/dailyTrends")
+    ResponseEntity<Object> dailyTrends(@RequestBody CustomTokenResponse auth_object){
+        return ChannelActions.getDailyTrends(auth_object);
+    }
+
+    @PostMapping("/api/signOut")
+    ResponseEntity<Object> signOut(@RequestBody CustomTokenResponse auth_object){
+        return ChannelActions.signOut(auth_object);
+    }
+
     @PostMapping("/api/top20Subs")
     ResponseEntity<Object> top20Subs(@RequestBody CustomTokenResponse auth_object){
         return ChannelActions.getTop20Subs(auth_object);
@@ -56,23 +82,55 @@ public class ApiController {
         return VideoActions.getLastVideoPerformance(auth_object);
     }
 
-    @PostMapping("/api/vidAnalysis")
+    @PostMapping(value = "/api/vidAnalysis",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE})
     ResponseEntity<Object> getVideoPerformance(@RequestBody VideoTokenResponse auth_object){
         return VideoActions.getVideoPerformance(auth_object.getTr(),auth_object.getVidID());
     }
 
-    @PostMapping("/api/allVideos")
+    @PostMapping(value = "/api/vidAnalysis/batch",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE})
+    ResponseEntity<Object> getVideoPerformanceBatch(@RequestBody VideoBatchTokenResponse auth_object){
+        return VideoActions.getVideoPerformanceBatch(auth_object.getToken(), auth_object.getVideo_ids());
+    }
+
+    @PostMapping(value = "/api/allVideos",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE})
     ResponseEntity<Object> getAllVideos(@RequestBody VidPageTokenResponse auth_object){
         return VideoActions.getAllVideos(auth_object.getToken(), auth_object.getPage_token());
     }
 
-    @PostMapping("/api/get200Comments")
+    @PostMapping(value = "/api/videos",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE})
+    ResponseEntity<Object> getIndexedVideos(@RequestBody VideoListTokenResponse auth_object){
+        return VideoActions.getIndexedVideos(auth_object.getToken(), auth_object.getPage_token(),
+                auth_object.getPage_size(), auth_object.getQuery(), auth_object.getPrivacy());
+    }
+
+    @PostMapping(value = "/api/get200Comments",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE})
     ResponseEntity<Object> get200Comments(@RequestBody VideoTokenResponse auth_object){
         return VideoActions.get200Comments(auth_object.getTr(), auth_object.getVidID());
     }
 
+    @PostMapping("/api/commentAnalysis")
+    ResponseEntity<Object> getCommentAnalysis(@RequestBody VideoTokenResponse auth_object){
+        return VideoActions.getCommentAnalysis(auth_object.getTr(), auth_object.getVidID());
+    }
+
+    @PostMapping(value = "/api/comments/stream", produces = "application/x-ndjson")
+    ResponseEntity<StreamingResponseBody> streamComments(@RequestBody CommentsTokenResponse auth_object){
+        return VideoActions.streamComments(auth_object.getTr(), auth_object.getVidID(), auth_object.getMaxComments());
+    }
+
     @PostMapping("/api/top5LatestVideos")
     ResponseEntity<Object> getTop5Vids(@RequestBody CustomTokenResponse auth_object){
         return VideoActions.getTop5Vids(auth_object);
     }
+
+    @PostMapping(value = "/api/topVideos",
+            produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, SMILE})
+    ResponseEntity<Object> getTopVideos(@RequestBody TopVideosTokenResponse auth_object){
+        return VideoActions.getTopVideos(auth_object.getToken(), auth_object.getK());
+    }
 }
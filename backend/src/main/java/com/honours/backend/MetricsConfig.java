@@ -0,0 +1,106 @@
+package com.honours.backend;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.honours.backend.apiActions.AnalyticsCache;
+import com.honours.backend.apiActions.ChannelCache;
+import com.honours.backend.apiActions.CommentAnalysis;
+import com.honours.backend.apiActions.MetricsStore;
+import com.honours.backend.apiActions.UpstreamPool;
+import com.honours.backend.apiActions.VideoIndex;
+import com.honours.backend.apiActions.WarmUp;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * This class publishes the back-end's own metrics next to the ones Spring records (e.g. the "http.server.requests"
+ * timer of every route): the caches, the upstream pool and the response sizes.
+ * <br>All of them (and the upstream call timers, see Actions.execute()) are exported in the Prometheus format at
+ * /actuator/prometheus.
+ */
+@Configuration
+public class MetricsConfig {
+
+    /**
+     * Publishes the size, hits, misses and evictions of every cache, with the same names as Micrometer's own
+     * cache metrics ("cache.size", "cache.gets", "cache.evictions"), tagged with the name of the cache.
+     * <br>Some caches are rebuilt when they are configured, so the current cache is looked up on every read.
+     *
+     * @return the binder registering the meters.
+     */
+    @Bean
+    MeterBinder cacheMetrics() {
+        return registry -> {
+            bindCache(registry, "channels", ChannelCache::stats, ChannelCache::size);
+            bindCache(registry, "video-index", VideoIndex::stats, VideoIndex::size);
+            bindCache(registry, "analytics", AnalyticsCache::stats, AnalyticsCache::size);
+            bindCache(registry, "metrics-store", MetricsStore::stats, MetricsStore::size);
+            bindCache(registry, "comment-analysis", CommentAnalysis::stats, CommentAnalysis::size);
+        };
+    }
+
+    /**
+     * Publishes the threads, queue and completed tasks of the upstream pool ("executor.*", tagged "upstream").
+     * <br>In the virtual-thread mode (see ThreadingConfig) there is no pool, so only the task timings are published.
+     *
+     * @return the binder registering the meters.
+     */
+    @Bean
+    @DependsOn("threadingConfig")
+    MeterBinder upstreamExecutorMetrics() {
+        return new ExecutorServiceMetrics(UpstreamPool.executor(), "upstream", Tags.empty());
+    }
+
+    /**
+     * Publishes the threads and queue of the warm-up pool ("executor.*", tagged "warm-up", see WarmUp).
+     *
+     * @return the binder registering the meters.
+     */
+    @Bean
+    @DependsOn("upstreamConfig")
+    MeterBinder warmUpExecutorMetrics() {
+        return new ExecutorServiceMetrics(WarmUp.executor(), "warm-up", Tags.empty());
+    }
+
+    /**
+     * Records the size of every response (see ResponseSizeFilter).
+     *
+     * @param registry the registry the sizes are recorded in.
+     * @return the filter, applied to every URL.
+     */
+    @Bean
+    FilterRegistrationBean<ResponseSizeFilter> responseSizeFilter(MeterRegistry registry) {
+        FilterRegistrationBean<ResponseSizeFilter> filter = new FilterRegistrationBean<>(new ResponseSizeFilter(registry));
+        filter.addUrlPatterns("/*");
+        return filter;
+    }
+
+    private static void bindCache(MeterRegistry registry, String name, Supplier<CacheStats> stats, LongSupplier size) {
+        Gauge.builder("cache.size", size, LongSupplier::getAsLong)
+                .description("The approximate number of entries in the cache")
+                .tag("cache", name)
+                .register(registry);
+        FunctionCounter.builder("cache.gets", stats, s -> s.get().hitCount())
+                .description("Lookups answered from the cache")
+                .tags("cache", name, "result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cache.gets", stats, s -> s.get().missCount())
+                .description("Lookups not answered from the cache")
+                .tags("cache", name, "result", "miss")
+                .register(registry);
+        FunctionCounter.builder("cache.evictions", stats, s -> s.get().evictionCount())
+                .description("Entries evicted from the cache")
+                .tag("cache", name)
+                .register(registry);
+    }
+}
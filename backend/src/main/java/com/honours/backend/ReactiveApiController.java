@@ -0,0 +1,48 @@
+package com.honours.backend;
+
+import com.honours.backend.apiActions.ReactiveActions;
+import com.honours.backend.receivedRequests.CommentsTokenResponse;
+import com.honours.backend.receivedRequests.CustomTokenResponse;
+import com.honours.backend.receivedRequests.VidPageTokenResponse;
+import com.honours.backend.receivedRequests.VideoTokenResponse;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * This class is the non-blocking variant of some of the ApiController's endpoints, under /api/reactive.
+ * <br>The requests and results are the same as the ones of the matching ApiController endpoints, but the
+ * YouTube APIs are queried without blocking (see ReactiveActions), so the request's thread is free again while
+ * the queries are on their way. The streamed results are sent as newline-delimited JSON.
+ */
+@RestController
+@RequestMapping("/api/reactive")
+@CrossOrigin(origins={"https://devweb2023.cis.strath.ac.uk", "http://localhost:3000"})
+public class ReactiveApiController {
+
+    @PostMapping("/channelBasics")
+    Mono<ResponseEntity<Object>> channelBasics(@RequestBody CustomTokenResponse auth_object){
+        return ReactiveActions.getChannelBasics(auth_object);
+    }
+
+    @PostMapping("/allVideos")
+    Mono<ResponseEntity<Object>> getAllVideos(@RequestBody VidPageTokenResponse auth_object){
+        return ReactiveActions.getAllVideos(auth_object.getToken(), auth_object.getPage_token());
+    }
+
+    @PostMapping(value = "/videos/stream", produces = "application/x-ndjson")
+    Flux<Object> streamVideos(@RequestBody CustomTokenResponse auth_object){
+        return ReactiveActions.streamVideoPages(auth_object);
+    }
+
+    @PostMapping("/get200Comments")
+    Mono<ResponseEntity<Object>> get200Comments(@RequestBody VideoTokenResponse auth_object){
+        return ReactiveActions.get200Comments(auth_object.getTr(), auth_object.getVidID());
+    }
+
+    @PostMapping(value = "/comments/stream", produces = "application/x-ndjson")
+    Flux<Object> streamComments(@RequestBody CommentsTokenResponse auth_object){
+        return ReactiveActions.streamComments(auth_object.getTr(), auth_object.getVidID(), auth_object.getMaxComments());
+    }
+}
@@ -0,0 +1,133 @@
+package com.honours.backend;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This filter records the size of every response body in the "http.server.response.size" summary, tagged with
+ * the route (e.g. "/api/vidAnalysis") and the status, next to the "http.server.requests" timer Spring records.
+ * <br>Streamed responses (e.g. /api/comments/stream) are recorded once the stream is finished. The size is the one
+ * before the server compresses the body (see server.compression in application.properties).
+ */
+public class ResponseSizeFilter extends OncePerRequestFilter {
+    private final MeterRegistry registry;
+
+    public ResponseSizeFilter(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        CountingResponse counting = new CountingResponse(response);
+        try{
+            chain.doFilter(request, counting);
+        }
+        finally{
+            if(request.isAsyncStarted()){
+                request.getAsyncContext().addListener(new AsyncListener() {
+                    @Override
+                    public void onComplete(AsyncEvent event) {
+                        record(request, counting);
+                    }
+
+                    @Override
+                    public void onTimeout(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onError(AsyncEvent event) {
+                    }
+
+                    @Override
+                    public void onStartAsync(AsyncEvent event) {
+                    }
+                });
+            }
+            else{
+                record(request, counting);
+            }
+        }
+    }
+
+    private void record(HttpServletRequest request, CountingResponse response) {
+        // The route pattern keeps the number of tags small, whatever the actual URL was.
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("http.server.response.size")
+                .description("Size of the response bodies sent by the back-end")
+                .baseUnit("bytes")
+                .tag("uri", route == null ? "UNKNOWN" : route.toString())
+                .tag("status", String.valueOf(response.getStatus()))
+                .publishPercentiles(0.5, 0.99)
+                .register(registry)
+                .record(response.written.get());
+    }
+
+    /**
+     * Counts the bytes written to the response body. The controllers only ever write through the output stream
+     * (the JSON and streamed bodies), so the writer is not counted.
+     */
+    private static final class CountingResponse extends HttpServletResponseWrapper {
+        private final AtomicLong written = new AtomicLong();
+        private ServletOutputStream stream;
+
+        private CountingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public synchronized ServletOutputStream getOutputStream() throws IOException {
+            if(stream == null){
+                ServletOutputStream delegate = super.getOutputStream();
+                stream = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        delegate.write(b);
+                        written.incrementAndGet();
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        delegate.write(b, off, len);
+                        written.addAndGet(len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        delegate.flush();
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        delegate.close();
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return delegate.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        delegate.setWriteListener(listener);
+                    }
+                };
+            }
+            return stream;
+        }
+    }
+}
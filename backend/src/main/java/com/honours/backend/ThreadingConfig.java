@@ -0,0 +1,82 @@
+package com.honours.backend;
+
+import com.honours.backend.apiActions.UpstreamPool;
+import com.honours.backend.properties.ThreadsProperties;
+import org.apache.coyote.ProtocolHandler;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * This class chooses the threads that requests and upstream queries run on, based on "youtube.threads.virtual"
+ * in application.properties.
+ * <br>By default every request gets a Tomcat worker thread and queries sent at the same time share the bounded
+ * UpstreamPool. With the virtual-thread mode turned on, both run on a new virtual thread each, so a request
+ * waiting on YouTube does not hold on to a platform thread.
+ * <br>When the WAR is deployed to an external Tomcat, only the upstream queries are moved to virtual threads.
+ */
+@Configuration
+@EnableConfigurationProperties(ThreadsProperties.class)
+public class ThreadingConfig {
+    private final ExecutorService virtualThreads;
+    // Handed to Tomcat, which does not shut down an executor it was given.
+    private final ExecutorService requestThreads;
+
+    public ThreadingConfig(ThreadsProperties threads) {
+        if(threads.virtual()){
+            virtualThreads = virtualThreadPerTask("upstream-vt-");
+            requestThreads = virtualThreadPerTask("request-vt-");
+            UpstreamPool.setExecutor(virtualThreads);
+        }
+        else{
+            virtualThreads = null;
+            requestThreads = null;
+        }
+    }
+
+    /**
+     * Runs the requests of the embedded Tomcat on virtual threads, when the mode is turned on.
+     *
+     * @return the customiser handing Tomcat its executor (which does nothing when the mode is off).
+     */
+    @Bean
+    TomcatProtocolHandlerCustomizer<ProtocolHandler> virtualRequestThreads() {
+        return handler -> {
+            if(requestThreads != null){
+                handler.setExecutor(requestThreads);
+            }
+        };
+    }
+
+    /**
+     * @return whether the virtual-thread mode is on.
+     */
+    public boolean isVirtual() {
+        return virtualThreads != null;
+    }
+
+    @PreDestroy
+    void close() {
+        if(virtualThreads != null){
+            UpstreamPool.setExecutor(null);
+            virtualThreads.shutdown();
+            requestThreads.shutdown();
+        }
+    }
+
+    /**
+     * Makes an executor starting a new virtual thread for every task, like Executors.newVirtualThreadPerTaskExecutor()
+     * but with the threads named, so they can be told apart in a thread dump.
+     *
+     * @param prefix the start of the thread names, followed by a counter.
+     * @return the executor.
+     */
+    static ExecutorService virtualThreadPerTask(String prefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(prefix, 1).factory());
+    }
+}
@@ -0,0 +1,93 @@
+package com.honours.backend;
+
+import com.honours.backend.apiActions.Actions;
+import com.honours.backend.apiActions.AnalyticsCache;
+import com.honours.backend.apiActions.MetricsStore;
+import com.honours.backend.apiActions.QuotaScheduler;
+import com.honours.backend.apiActions.ReactiveYouTube;
+import com.honours.backend.apiActions.UpstreamResilience;
+import com.honours.backend.apiActions.UpstreamTransport;
+import com.honours.backend.apiActions.VideoActions;
+import com.honours.backend.apiActions.WarmUp;
+import com.honours.backend.properties.AnalyticsCacheProperties;
+import com.honours.backend.properties.ApiProperties;
+import com.honours.backend.properties.CommentsProperties;
+import com.honours.backend.properties.MetricsStoreProperties;
+import com.honours.backend.properties.QuotaProperties;
+import com.honours.backend.properties.ResilienceProperties;
+import com.honours.backend.properties.TransportProperties;
+import com.honours.backend.properties.UpstreamProperties;
+import com.honours.backend.properties.WarmUpProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.annotation.PreDestroy;
+
+/**
+ * This class configures how the back-end connects to the YouTube APIs, based on the "youtube.*" values
+ * in application.properties.
+ * <br>Each component's values are bound to a properties class of its own (see the properties package), which rejects
+ * invalid values on startup. The API actions are static, so the settings are handed to them once on startup.
+ */
+@Configuration
+@EnableConfigurationProperties({TransportProperties.class, ApiProperties.class, UpstreamProperties.class,
+        CommentsProperties.class, AnalyticsCacheProperties.class, MetricsStoreProperties.class, QuotaProperties.class,
+        ResilienceProperties.class, WarmUpProperties.class})
+public class UpstreamConfig {
+    private final UpstreamTransport transport;
+
+    public UpstreamConfig(TransportProperties http, ApiProperties api, UpstreamProperties upstream,
+                          CommentsProperties comments, AnalyticsCacheProperties analyticsCache,
+                          MetricsStoreProperties metricsStore, QuotaProperties quota,
+                          ResilienceProperties resilience, WarmUpProperties warmUp) {
+        if(http.type().equals("simple")){
+            transport = UpstreamTransport.simple(http.connectTimeout(), http.readTimeout());
+        }
+        else{
+            transport = UpstreamTransport.pooled(http.maxConnections(), http.maxConnectionsPerRoute(),
+                    http.connectTimeout(), http.readTimeout(), http.idleEviction());
+        }
+
+        Actions.setTransport(transport);
+        Actions.setRootUrl(api.rootUrl());
+        ReactiveYouTube.configure(api.rootUrl(), http.connectTimeout(), http.readTimeout(), http.maxConnections());
+        Actions.setCallTimeout(upstream.callTimeout());
+        VideoActions.setMaxCommentLimit(comments.maxLimit());
+        AnalyticsCache.configure(analyticsCache.maxEntries(), analyticsCache.freshFor(), analyticsCache.staleFor());
+        MetricsStore.configure(metricsStore.path(), metricsStore.settleDays(), metricsStore.maxLoadedSeries());
+        QuotaScheduler.configure(quota.dailyUnits(), quota.userDailyUnits(), quota.backgroundReserve());
+        UpstreamResilience.configure(resilience.ratePerSecond(), resilience.burst(), resilience.maxWait(),
+                resilience.maxAttempts(), resilience.baseDelay(), resilience.maxDelay(), resilience.breakerWindow(),
+                resilience.breakerFailureRate(), resilience.breakerOpenFor());
+        WarmUp.configure(warmUp.enabled(), warmUp.threads(), warmUp.keepFor());
+    }
+
+    /**
+     * Publishes the connection pool utilisation as the "youtube.transport.connections" gauge,
+     * tagged with the state of the connections (leased, available, pending or max).
+     *
+     * @return the binder registering the gauges.
+     */
+    @Bean
+    MeterBinder upstreamPoolMetrics() {
+        return registry -> {
+            Gauge.builder("youtube.transport.connections", transport, t -> t.poolStats().getLeased())
+                    .tag("state", "leased").register(registry);
+            Gauge.builder("youtube.transport.connections", transport, t -> t.poolStats().getAvailable())
+                    .tag("state", "available").register(registry);
+            Gauge.builder("youtube.transport.connections", transport, t -> t.poolStats().getPending())
+                    .tag("state", "pending").register(registry);
+            Gauge.builder("youtube.transport.connections", transport, t -> t.poolStats().getMax())
+                    .tag("state", "max").register(registry);
+        };
+    }
+
+    @PreDestroy
+    void closeConnections() {
+        transport.shutdown();
+        ReactiveYouTube.shutdown();
+    }
+}
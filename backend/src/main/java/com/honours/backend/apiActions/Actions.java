@@ -3,40 +3,79 @@ package com.honours.backend.apiActions;
 import com.google.api.client.auth.oauth2.BearerToken;
 import com.google.api.client.auth.oauth2.Credential;
 import com.google.api.client.auth.oauth2.TokenResponse;
-import com.google.api.client.http.HttpTransport;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.googleapis.services.AbstractGoogleClientRequest;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.http.HttpRequestInitializer;
 import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.jackson2.JacksonFactory;
 import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.Channel;
 import com.google.api.services.youtube.model.ChannelListResponse;
 import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 
 import java.io.IOException;
-import java.util.ArrayList;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
 
 public class Actions {
-    private static final HttpTransport HTTP_TRANSPORT = new NetHttpTransport();
+    // Both are thread-safe and shared by every request, only the credential differs between users.
+    private static volatile UpstreamTransport transport =
+            UpstreamTransport.simple(Duration.ofSeconds(20), Duration.ofSeconds(20));
     private static final JsonFactory JSON_FACTORY = new JacksonFactory();
-    protected static YouTube yt;
-    protected static YouTubeAnalytics ytAnalytics;
+
+    // If set, both APIs are queried at this URL instead of googleapis.com (e.g. a local stand-in server).
+    private static volatile String rootUrl = null;
+
+    // The latency of each kind of query (e.g. "videos.list") by outcome, and how long a query may take when run
+    // concurrently.
+    private static final Map<String, Timer> CALL_TIMERS = new ConcurrentHashMap<>();
+    private static volatile long callTimeoutMillis = 20_000;
+
+    /**
+     * The body of an error response, of the shape {"error": "..."} (like the line ending a stream that failed).
+     * <br>Unlike a plain String, it is written in whichever format the client asked for (JSON, CBOR or Smile, see
+     * ApiController).
+     *
+     * @param error what went wrong.
+     */
+    public record ApiError(String error) {
+    }
 
     /**
      * This method gets the default channel for the logged-in user.
-     * <br><b>A YouTube Data v3 object needs to be instantiated for this to work. It should be named "yt".</b>
+     * <br>The channel is cached per user (see ChannelCache), so it is only queried once per session.
      *
+     * @param clients the API objects built for the current request by makeYtObjects().
      * @return a Channel object of the default channel for the logged-in user.
      * @throws IOException if there has been a problem with querying the channel.
      */
-    protected static Channel getDefaultChannel() throws IOException {
+    protected static Channel getDefaultChannel(YtClients clients) throws IOException {
+        return ChannelCache.get(clients.userKey(), () -> queryDefaultChannel(clients));
+    }
+
+    /**
+     * This method queries the YouTube Data v3 API for the default channel of the logged-in user,
+     * skipping the cache.
+     *
+     * @param clients the API objects built for the current request by makeYtObjects().
+     * @return a Channel object of the default channel for the logged-in user.
+     * @throws IOException if there has been a problem with querying the channel.
+     */
+    private static Channel queryDefaultChannel(YtClients clients) throws IOException {
 
         // Querying to find the channel alongside its id, snippet, statistics, and contentDetails.
-        ChannelListResponse channels = yt.channels()
-                .list(List.of("id,snippet,statistics,contentDetails"))
-                .setMine(true)
-                .setFields("items(id,snippet,statistics,contentDetails)")
-                .execute();
+        ChannelListResponse channels = execute("channels.list", clients.userKey(),
+                clients.yt().channels()
+                        .list(List.of("id,snippet,statistics,contentDetails"))
+                        .setMine(true)
+                        .setFields("items(id,snippet,statistics,contentDetails)"));
 
         // Listing all the channels associated with the user.
         List<Channel> listOfChannels = channels.getItems();
@@ -48,23 +87,200 @@ public class Actions {
     /**
      * This method creates the two YouTube api objects that this entire backend application uses.
      * <br>It forms a credential based on the secure token from the authentication and builds
-     * the API connections with YouTube.
+     * the API connections with YouTube. The objects belong to a single request and are never stored statically.
+     * <br>The first call for a user also starts warming up their caches in the background (see WarmUp).
      *
      * @param tr usually passed from the front end, used to instantiate the mentioned objects.
+     * @return the API objects for the current request.
      */
-    protected static void makeYtObjects(TokenResponse tr) {
+    protected static YtClients makeYtObjects(TokenResponse tr) {
         // Making a bearer credential from the token
         Credential credential = new Credential(BearerToken.authorizationHeaderAccessMethod());
         credential.setFromTokenResponse(tr);
 
+        // Every request is authorised with the credential and uses the configured timeouts.
+        UpstreamTransport current = transport;
+        HttpRequestInitializer initializer = request -> {
+            credential.initialize(request);
+            request.setConnectTimeout(current.getConnectTimeoutMillis());
+            request.setReadTimeout(current.getReadTimeoutMillis());
+        };
+
         // Building the YouTube Data v3 API connection.
-        yt = new YouTube.Builder(HTTP_TRANSPORT,JSON_FACTORY,credential)
-                .setApplicationName("youtube-analyser")
-                .build();
+        YouTube.Builder ytBuilder = new YouTube.Builder(current.getTransport(),JSON_FACTORY,initializer)
+                .setApplicationName("youtube-analyser");
 
         // Building the YouTube Analytics v2 API connection.
-        ytAnalytics = new YouTubeAnalytics.Builder(HTTP_TRANSPORT,JSON_FACTORY,credential)
-                .setApplicationName("youtube-analyser")
-                .build();
+        YouTubeAnalytics.Builder analyticsBuilder =
+                new YouTubeAnalytics.Builder(current.getTransport(),JSON_FACTORY,initializer)
+                .setApplicationName("youtube-analyser");
+
+        String root = rootUrl;
+        if(root != null){
+            ytBuilder.setRootUrl(root);
+            analyticsBuilder.setRootUrl(root);
+        }
+
+        YouTube yt = ytBuilder.build();
+        YouTubeAnalytics ytAnalytics = analyticsBuilder.build();
+
+        // Every query is charged to the user's quota budget (see QuotaScheduler and execute()).
+        String userKey = ChannelCache.hashToken(tr.getAccessToken());
+        // The first request of a session warms up the pages the user usually opens next (see WarmUp).
+        WarmUp.start(tr, userKey);
+
+        return new YtClients(yt, ytAnalytics, userKey);
+    }
+
+    /**
+     * Replaces the HTTP transport used by every API connection built from now on.
+     * <br>Connections built before the call keep the transport they were built with, so the old transport
+     * is only closed by the caller once it is sure no request is still using it.
+     *
+     * @param newTransport the transport to use.
+     */
+    public static void setTransport(UpstreamTransport newTransport) {
+        transport = newTransport;
+    }
+
+    /**
+     * @return the HTTP transport currently used for new API connections.
+     */
+    public static UpstreamTransport getTransport() {
+        return transport;
+    }
+
+    /**
+     * Points both APIs at a different root URL, e.g. a local stand-in server for testing.
+     *
+     * @param url the root URL ending with "/", or null to use Google's default URLs.
+     */
+    public static void setRootUrl(String url) {
+        rootUrl = url;
+    }
+
+    /**
+     * Sets how long a query started on the upstream pool may take before it is given up on (see failFast()).
+     *
+     * @param timeout the longest time a single query may take.
+     */
+    public static void setCallTimeout(Duration timeout) {
+        callTimeoutMillis = timeout.toMillis();
+    }
+
+    /**
+     * Sends a request to one of the YouTube APIs and records how long it took in the "youtube.upstream.calls"
+     * timer, tagged with the API ("data" or "analytics"), the name of the API method and the outcome (see
+     * outcomeOf(), or "cancelled" for a query stopped by failFast()). Every query in the actions goes through here, and every attempt is recorded.
+     * <br>The query's Data API units are taken from the quota first (see QuotaScheduler), and it is not sent
+     * at all if they are not available.
+     * <br>The query is rate limited, sent again after temporary failures and rejected while its API is failing
+     * (see UpstreamResilience).
+     *
+     * @param call the name of the API method, e.g. "channels.list" or "reports.query".
+     * @param userKey the user the query is charged to, the userKey() of the request's YtClients.
+     * @param request the fully set up request.
+     * @return the parsed response.
+     * @throws IOException if the request failed, or a QuotaExceededException or UpstreamUnavailableException if
+     * it was not sent.
+     */
+    protected static <T> T execute(String call, String userKey, AbstractGoogleClientRequest<T> request)
+            throws IOException {
+        return UpstreamResilience.call(call, () -> {
+            // The quota is taken before every attempt, YouTube charges for failed queries too.
+            QuotaScheduler.acquire(call, userKey);
+
+            long started = System.nanoTime();
+            String outcome = "success";
+            try{
+                return request.execute();
+            }
+            catch(IOException ex){
+                // A cancelled query failed because its request was aborted (see UpstreamPool.submit()).
+                outcome = UpstreamPool.isCancelled() ? "cancelled" : outcomeOf(ex);
+                QuotaScheduler.recordFailure(ex);
+                throw ex;
+            }
+            catch(RuntimeException ex){
+                outcome = "error";
+                throw ex;
+            }
+            finally{
+                callTimer(call, outcome).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        });
+    }
+
+    static Timer callTimer(String call, String outcome) {
+        return CALL_TIMERS.computeIfAbsent(call + '|' + outcome, key -> Timer.builder("youtube.upstream.calls")
+                .description("Latency of the queries sent to the YouTube Data and Analytics APIs")
+                .tag("api", UpstreamResilience.apiOf(call))
+                .tag("call", call)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .publishPercentileHistogram()
+                .register(Metrics.globalRegistry));
+    }
+
+    /**
+     * @return how a failed query ended: "client_error" (4xx), "throttled" (429, or a 403 about quota or rate
+     * limits), "server_error" (5xx), "timeout" or "io_error" (e.g. a dropped connection).
+     */
+    static String outcomeOf(IOException ex) {
+        if(ex instanceof GoogleJsonResponseException json && json.getStatusCode() == 403 && json.getDetails() != null
+                && json.getDetails().getErrors() != null){
+            for (GoogleJsonError.ErrorInfo error : json.getDetails().getErrors()) {
+                if(String.valueOf(error.getReason()).toLowerCase().contains("exceeded")) return "throttled";
+            }
+        }
+        if(ex instanceof HttpResponseException response){
+            if(response.getStatusCode() == 429) return "throttled";
+            return response.getStatusCode() >= 500 ? "server_error" : "client_error";
+        }
+        if(ex instanceof SocketTimeoutException) return "timeout";
+        return "io_error";
+    }
+
+    /**
+     * Links queries that were started together on the upstream pool: each of them gets the per-call timeout,
+     * and as soon as one of them fails (or times out) all the others are cancelled, since their results would be
+     * thrown away anyway.
+     * <br>Cancelling stops the queries (see UpstreamPool.submit()): the ones still queued are never sent, and the
+     * running ones are interrupted and their HTTP requests aborted, which frees their thread and connection.
+     *
+     * @param queries the queries whose results are all needed.
+     */
+    protected static void failFast(CompletableFuture<?>... queries) {
+        for (CompletableFuture<?> query : queries) {
+            query.orTimeout(callTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((result, ex) -> {
+                if(ex == null) return;
+                for (CompletableFuture<?> other : queries) {
+                    other.cancel(true);
+                }
+            });
+        }
+    }
+
+    /**
+     * Waits for a query started on the upstream pool and returns its result.
+     *
+     * @param query the started query.
+     * @return the result of the query.
+     * @throws IOException if the query failed, timed out or was cancelled because another query failed.
+     */
+    protected static <T> T await(CompletableFuture<T> query) throws IOException {
+        try{
+            return query.join();
+        }
+        catch(CancellationException ex){
+            throw new IOException("The query was cancelled because a related query failed.", ex);
+        }
+        catch(CompletionException ex){
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException io) throw io;
+            if(cause instanceof TimeoutException) throw new IOException("The query timed out.", cause);
+            if(cause instanceof RuntimeException runtime) throw runtime;
+            throw new IOException(cause);
+        }
     }
 }
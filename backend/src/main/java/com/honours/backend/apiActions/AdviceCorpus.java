@@ -0,0 +1,85 @@
+package com.honours.backend.apiActions;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class holds the pre-populated video advice, one piece of advice per line in each of the advice files
+ * on the classpath.
+ * <br>The files are read once, when the class is first used, into immutable arrays, so picking a piece of advice
+ * during a request does no I/O. reload() reads the files again and swaps in the new advice all at once.
+ */
+public class AdviceCorpus {
+    public static final String VIEW_COUNT = ".viewCountAdvice";
+    public static final String ENGAGEMENT = ".engagementAdvice";
+    public static final String VIEW_PERCENT = ".viewPercentAdvice";
+    public static final String CARD_CLICKS = ".cardClicksAdvice";
+    public static final String INTRO_DECLINE = ".introDeclineAdvice";
+    public static final String BIG_DECLINE = ".bigDeclineAdvice";
+
+    private static final List<String> FILES =
+            List.of(VIEW_COUNT, ENGAGEMENT, VIEW_PERCENT, CARD_CLICKS, INTRO_DECLINE, BIG_DECLINE);
+
+    private static volatile Map<String, String[]> corpora = load();
+
+    /**
+     * Picks a random piece of advice from one of the advice files.
+     *
+     * @param file one of the advice file names defined in this class (e.g. VIEW_COUNT).
+     * @return a randomly chosen line of that file, or null if the file is missing or empty.
+     */
+    public static String pick(String file) {
+        String[] lines = corpora.get(file);
+        if(lines == null || lines.length == 0) return null;
+        return lines[ThreadLocalRandom.current().nextInt(lines.length)];
+    }
+
+    /**
+     * Reads every advice file again, e.g. after the advice was edited on the server.
+     * <br>Requests that are already running keep using the advice they started with.
+     */
+    public static void reload() {
+        corpora = load();
+    }
+
+    private static Map<String, String[]> load() {
+        Map<String, String[]> loaded = new HashMap<>();
+        for (String file : FILES) {
+            loaded.put(file, readLines(file));
+        }
+        return Map.copyOf(loaded);
+    }
+
+    /**
+     * Reads the non-blank lines of a classpath resource. The resource is read as a stream, so this also works
+     * when the application is packaged as a WAR.
+     *
+     * @param file the name of the resource at the root of the classpath.
+     * @return the lines of the file, or an empty array if it is missing or can not be read.
+     */
+    private static String[] readLines(String file) {
+        InputStream stream = AdviceCorpus.class.getResourceAsStream("/" + file);
+        if(stream == null) return new String[0];
+
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))){
+            String line;
+            while((line = reader.readLine()) != null){
+                if(!line.isBlank()) lines.add(line);
+            }
+        }
+        catch(IOException ex){
+            // A broken file is treated like a missing one, getVideoAdvice() then falls back to a generic message.
+            return new String[0];
+        }
+        return lines.toArray(new String[0]);
+    }
+}
@@ -0,0 +1,178 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Metrics;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * This class caches the rows of YouTube Analytics queries. The analytics data only changes about once a day,
+ * but every page refresh used to query it again.
+ * <br>Entries are keyed on the channel and on everything that changes the result (metrics, dimensions, filters,
+ * sort, dates...). The end date is part of the key, so the queries ending "today" get new entries every day.
+ * <br>An entry is fresh for a while after it was fetched. After that, and until it expires, it is still returned
+ * straight away, but it is also fetched again in the background (stale-while-revalidate), so a user never waits
+ * for a query that was answered recently.
+ * <br>The cache is bounded in size (Caffeine evicts the entries least likely to be used again), and hits, stale
+ * hits and misses are counted per metric in "youtube.analytics.cache".
+ */
+public class AnalyticsCache {
+
+    /**
+     * What identifies an analytics query. The channel is always the signed-in user's own channel, so a user can
+     * never be served another channel's rows, even when the query says "channel==MINE".
+     */
+    record Key(String channelID, String metrics, String dimensions, String filters, String startDate,
+               String endDate, String sort, Integer maxResults, String currency) {
+    }
+
+    // Failed queries are not cached, a query without data is (the rows are then null).
+    private record Entry(List<List<Object>> rows, long fetchedAt) {
+    }
+
+    private static volatile Duration freshFor = Duration.ofHours(1);
+    private static volatile LongSupplier clock = System::nanoTime;
+    private static volatile AsyncCache<Key, Entry> entries = build(10_000, Duration.ofHours(24));
+
+    private static final Set<Key> REFRESHING = ConcurrentHashMap.newKeySet();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    /**
+     * Changes the size and timing of the cache. Any cached rows are dropped.
+     *
+     * @param maxEntries the most queries kept in the cache.
+     * @param fresh how long rows are returned without being fetched again.
+     * @param stale how long after being fetched rows are still returned (while being fetched again). Must not be
+     *              shorter than fresh.
+     */
+    public static void configure(int maxEntries, Duration fresh, Duration stale) {
+        if(stale.compareTo(fresh) < 0){
+            throw new IllegalArgumentException("The stale time of the analytics cache can not be shorter than the fresh time.");
+        }
+        freshFor = fresh;
+        entries = build(maxEntries, stale);
+    }
+
+    /**
+     * Executes an analytics query, or returns its cached rows.
+     *
+     * @param clients the API objects for the current request, the query is charged to its user.
+     * @param channelID the ID of the signed-in user's channel (see getDefaultChannel()).
+     * @param query the query, ready to be executed.
+     * @return the rows of the response (possibly null, like getRows() of the response).
+     * @throws IOException if the query had to be executed and failed.
+     */
+    public static List<List<Object>> rows(YtClients clients, String channelID, YouTubeAnalytics.Reports.Query query)
+            throws IOException {
+        Key key = new Key(channelID, query.getMetrics(), query.getDimensions(), query.getFilters(),
+                query.getStartDate(), query.getEndDate(), query.getSort(), query.getMaxResults(), query.getCurrency());
+        AsyncCache<Key, Entry> cache = entries;
+
+        CompletableFuture<Entry> present = cache.getIfPresent(key);
+        Entry cached = present == null ? null : present.getNow(null);
+        if(cached != null){
+            boolean fresh = clock.getAsLong() - cached.fetchedAt() < freshFor.toNanos();
+            count(key, fresh ? "hit" : "stale");
+            if(!fresh) refresh(cache, key, clients, query);
+            return cached.rows();
+        }
+
+        count(key, "miss");
+        // Concurrent misses for the same query share a single upstream call (see SingleFlight).
+        return SingleFlight.get(cache, key, () -> fetch(clients, query)).rows();
+    }
+
+    /**
+     * @return the share of lookups for the given metrics that were answered from the cache (fresh or stale),
+     * or NaN if there were no lookups yet.
+     */
+    public static double hitRate(String metrics) {
+        double hits = counted(metrics, "hit") + counted(metrics, "stale");
+        double all = hits + counted(metrics, "miss");
+        return all == 0 ? Double.NaN : hits / all;
+    }
+
+    /**
+     * Drops every cached query, e.g. when a user signs out.
+     */
+    public static void invalidateAll() {
+        entries.synchronous().invalidateAll();
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache since it was last configured.
+     */
+    public static CacheStats stats() {
+        return entries.synchronous().stats();
+    }
+
+    /**
+     * @return the approximate number of entries in the cache.
+     */
+    public static long size() {
+        return entries.synchronous().estimatedSize();
+    }
+
+    // Used by tests to move time forward.
+    static void setClock(LongSupplier nanoClock) {
+        clock = nanoClock == null ? System::nanoTime : nanoClock;
+    }
+
+    /**
+     * Fetches a stale entry again in the background, using the query (and so the token) of the request that
+     * found it stale. At most one refresh per query runs at a time, and a failed refresh keeps the stale rows.
+     * <br>Nobody is waiting for a refresh, so it is sent with the BACKGROUND quota priority.
+     */
+    private static void refresh(AsyncCache<Key, Entry> cache, Key key, YtClients clients,
+                                YouTubeAnalytics.Reports.Query query) {
+        if(!REFRESHING.add(key)) return;
+        UpstreamPool.submit(() -> QuotaScheduler.withPriority(QuotaScheduler.Priority.BACKGROUND, () -> fetch(clients, query)))
+                .whenComplete((entry, failure) -> {
+            if(entry != null) cache.synchronous().put(key, entry);
+            REFRESHING.remove(key);
+        });
+    }
+
+    private static Entry fetch(YtClients clients, YouTubeAnalytics.Reports.Query query) throws IOException {
+        return new Entry(Actions.execute("reports.query", clients.userKey(), query).getRows(), clock.getAsLong());
+    }
+
+    private static void count(Key key, String result) {
+        String metrics = String.valueOf(key.metrics());
+        COUNTERS.computeIfAbsent(metrics + '|' + result, name -> {
+            LongAdder adder = new LongAdder();
+            FunctionCounter.builder("youtube.analytics.cache", adder, LongAdder::doubleValue)
+                    .description("Lookups of analytics queries in the cache, by metrics and result.")
+                    .tag("metrics", metrics)
+                    .tag("result", result)
+                    .register(Metrics.globalRegistry);
+            return adder;
+        }).increment();
+    }
+
+    private static double counted(String metrics, String result) {
+        LongAdder counter = COUNTERS.get(metrics + '|' + result);
+        return counter == null ? 0 : counter.doubleValue();
+    }
+
+    private static AsyncCache<Key, Entry> build(int maxEntries, Duration stale) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(stale)
+                .recordStats()
+                .ticker(() -> clock.getAsLong())
+                .buildAsync();
+    }
+}
@@ -2,6 +2,7 @@ package com.honours.backend.apiActions;
 
 
 import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
 import com.google.api.services.youtube.model.Channel;
 import com.google.api.services.youtube.model.ChannelStatistics;
 import com.google.api.services.youtube.model.Subscription;
@@ -27,12 +28,10 @@ public class ChannelActions extends Actions{
     public static ResponseEntity<Object> getChannelSubs(TokenResponse tr){
         try{
             // Instantiates all YouTube api variables for the system and gets the main channel's statistics
-            makeYtObjects(tr);
-            Channel defaultChannel = getDefaultChannel();
-            ChannelStatistics stats = defaultChannel.getStatistics();
-            BigInteger subs = stats.getSubscriberCount();
+            YtClients clients = makeYtObjects(tr);
+            Channel defaultChannel = getDefaultChannel(clients);
 
-            return new ResponseEntity<>(Map.of("subscriberCount", subs.toString()),HttpStatus.OK);
+            return new ResponseEntity<>(Map.of("subscriberCount", subscriberCount(defaultChannel)),HttpStatus.OK);
         }
         catch(Exception ex){
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
@@ -52,8 +51,8 @@ public class ChannelActions extends Actions{
     public static ResponseEntity<Object> getChannelBasics(TokenResponse tr){
         try{
             // Initializing all variables we need
-            makeYtObjects(tr);
-            Channel defaultChannel = getDefaultChannel();
+            YtClients clients = makeYtObjects(tr);
+            Channel defaultChannel = getDefaultChannel(clients);
 
             // Finding the already queried information in (getDefaultChannel())
             String channel_name = defaultChannel.getSnippet().getTitle();
@@ -80,51 +79,76 @@ public class ChannelActions extends Actions{
     public static ResponseEntity<Object> getWatchTime365(TokenResponse tr){
         try{
             // Setting up needed objects
-            makeYtObjects(tr);
-            Channel defaultChannel = getDefaultChannel();
-            String channelID = defaultChannel.getId();
+            YtClients clients = makeYtObjects(tr);
+            Channel defaultChannel = getDefaultChannel(clients);
 
-            // Calculating the time frame and converting it to the accepted format
-            LocalDate now = LocalDate.now();
-            LocalDate last_year = now.minusYears(1);
-            String before365 = last_year.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-            String today = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+            return new ResponseEntity<>(Map.of("minutesWatched", queryWatchTime365(clients, defaultChannel)),
+                    HttpStatus.OK);
 
-            // Executing the query for VIDEOS only, excluding SHORTS
-            String result = ytAnalytics.reports().query()
-                    .set("ids", "channel==" + channelID)
-                    .set("startDate",before365)
-                    .set("endDate",today)
-                    .set("metrics","estimatedMinutesWatched")
-                    .set("filters","creatorContentType==video_on_demand")
-                    .execute().getRows().get(0).get(0).toString();
+        }
+        catch(IOException ex){
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            return new ResponseEntity<>(Map.of("minutesWatched", result), HttpStatus.OK);
+    /**
+     * This method returns the daily views, watch time and gained subscribers of the default channel of the
+     * logged-in user, for every day since the channel was created.
+     * <br>The days are kept in the MetricsStore, so after the first request only the latest days are queried.
+     *
+     * @param tr token response object received by the front end
+     * @return the first day ("start") and one array per metric ("views", "minutesWatched", "subscribersGained")
+     * with a value for each day since then + HTTP code 200
+     * OR
+     * HTTP code 500
+     */
+    public static ResponseEntity<Object> getDailyTrends(TokenResponse tr){
+        try{
+            YtClients clients = makeYtObjects(tr);
+            Channel defaultChannel = getDefaultChannel(clients);
+            LocalDate created = LocalDate.parse(defaultChannel.getSnippet().getPublishedAt().toString().substring(0,10));
 
+            MetricsStore.Daily daily = MetricsStore.daily(clients, defaultChannel.getId(),
+                    "views,estimatedMinutesWatched,subscribersGained", null, created, MetricsStore.today());
+
+            return new ResponseEntity<>(Map.of("start", daily.start().toString(),
+                    "views", daily.column(0),
+                    "minutesWatched", daily.column(1),
+                    "subscribersGained", daily.column(2)), HttpStatus.OK);
         }
         catch(IOException ex){
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * A single channel of the top 20 subscribers as it is returned to the front-end. The names of the fields are
+     * the JSON keys.
+     */
+    public record SubscriberChannel(String channel_name, String channelID, String sub_count, String profile_picture_URL) {
+    }
+
     /**
      * The query finds top 20 of the most RELEVANT (NOT SUBSCRIBED) channels for the logged-in user
      * and returns data about them.
      *
      * @param tr token response object received by the front end
      * @return ResponseEntity of type object (holds HTTP code 200 if success, otherwise HTTP code 500).
-     * <br>On success, returns a list of objects (in the form of a map) holding information about a channel.
+     * <br>On success, returns a list of objects (see SubscriberChannel) holding information about a channel.
      * That is information such as channel name, ID, subscribers count, profile picture.
      */
     public static ResponseEntity<Object> getTop20Subs(TokenResponse tr) {
-        makeYtObjects(tr);
+        YtClients clients = makeYtObjects(tr);
+        // The subscribers may already have been loaded when the user signed in.
+        ResponseEntity<Object> warmed = WarmUp.prefetched(clients.userKey(), "top20Subs");
+        if(warmed != null) return warmed;
         try{
             // Getting Subscription objects for top 20 most relevant channels.
-            List <Subscription> subs = yt.subscriptions().list(List.of("subscriberSnippet"))
-                    .set("mySubscribers",true)
-                    .set("maxResults",(long) 20)
-                    .setOrder("relevance")
-                    .execute().getItems();
+            List <Subscription> subs = execute("subscriptions.list", clients.userKey(),
+                    clients.yt().subscriptions().list(List.of("subscriberSnippet"))
+                            .set("mySubscribers",true)
+                            .set("maxResults",(long) 20)
+                            .setOrder("relevance")).getItems();
 
             // Storing their ID for a query in regard to their statistics.
             List<String> sub_ids = new ArrayList<>();
@@ -139,9 +163,9 @@ public class ChannelActions extends Actions{
             * If there are no relevant subscribers found, this will be empty, so no need to perform another query.
             * The top20 channels list has to stay empty in this situation. */
             if (!sub_ids.isEmpty()){
-                top20 = yt.channels().list(List.of("snippet,statistics"))
-                        .setId(sub_ids)
-                        .execute().getItems();
+                top20 = execute("channels.list", clients.userKey(),
+                        clients.yt().channels().list(List.of("snippet,statistics"))
+                                .setId(sub_ids)).getItems();
             }
 
 
@@ -153,27 +177,13 @@ public class ChannelActions extends Actions{
                 }
             });
 
-            String channel_name;
-            String channelID;
-            String sub_count;
-            String ppURL;
-            List<Map<String,String>> result = new ArrayList<>();
+            List<SubscriberChannel> result = new ArrayList<>(top20.size());
 
             // Saving the result for each channel into the return object
             for (Channel c : top20){
-                Map<String,String> channel_result = new HashMap<>();
-
-                channel_name = c.getSnippet().getTitle();
-                channelID = c.getId();
-                sub_count = c.getStatistics().getSubscriberCount().toString();
-                ppURL = c.getSnippet().getThumbnails().getMedium().getUrl();
-
-                channel_result.put("channel_name", channel_name);
-                channel_result.put("channelID", channelID);
-                channel_result.put("sub_count", sub_count);
-                channel_result.put("profile_picture_URL",ppURL);
-
-                result.add(channel_result);
+                result.add(new SubscriberChannel(c.getSnippet().getTitle(), c.getId(),
+                        c.getStatistics().getSubscriberCount().toString(),
+                        c.getSnippet().getThumbnails().getMedium().getUrl()));
             }
 
             return new ResponseEntity<>(result, HttpStatus.OK);
@@ -191,13 +201,16 @@ public class ChannelActions extends Actions{
      * @param tr token response object received by the front end
      * @return ResponseEntity of type object (holds HTTP code 200 if success, otherwise HTTP code 403).
      * <br>On success, returns monetization data about a channel.
-     * <br>If a channel is not monetized, an error is thrown and access is forbidden.
+     * <br>If a channel is not monetized, YouTube refuses to give its revenue and access is forbidden ("NOT_MONETIZED").
+     * <br>If the query was not sent or YouTube refused it because of the quota or the rate limits, HTTP code 429 is
+     * returned, and HTTP code 503 if the Analytics API is failing (see UpstreamResilience). Other failures return
+     * HTTP code 500.
      */
     public static ResponseEntity<Object> getEarningEstimations(TokenResponse tr){
         try{
             // Creating necessary objects
-            makeYtObjects(tr);
-            Channel defaultChannel = getDefaultChannel();
+            YtClients clients = makeYtObjects(tr);
+            Channel defaultChannel = getDefaultChannel(clients);
             String channelID = defaultChannel.getId();
 
             // Setting up date dimensions and converting to the proper format needed.
@@ -206,19 +219,78 @@ public class ChannelActions extends Actions{
             String prevMonth = last_month.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
             String today = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 
-            // Executing query for Estimated Ad Revenue.
-            String result = ytAnalytics.reports().query()
-                    .set("ids", "channel==" + channelID)
-                    .set("startDate",prevMonth)
-                    .set("endDate",today)
-                    .set("metrics","estimatedAdRevenue")
-                    .execute().getRows().get(0).get(0).toString();
+            // Executing query for Estimated Ad Revenue (cached, see AnalyticsCache).
+            String result = AnalyticsCache.rows(clients, channelID,
+                    clients.ytAnalytics().reports().query()
+                            .set("ids", "channel==" + channelID)
+                            .set("startDate",prevMonth)
+                            .set("endDate",today)
+                            .set("metrics","estimatedAdRevenue")).get(0).get(0).toString();
 
             return new ResponseEntity<>(result, HttpStatus.OK);
         }
+        catch(QuotaScheduler.QuotaExceededException ex){
+            return new ResponseEntity<>(HttpStatus.TOO_MANY_REQUESTS);
+        }
+        catch(UpstreamResilience.UpstreamUnavailableException ex){
+            return new ResponseEntity<>(HttpStatus.SERVICE_UNAVAILABLE);
+        }
         catch(IOException ex){
-            return new ResponseEntity<>("NOT_MONETIZED", HttpStatus.FORBIDDEN);
+            // A 403 about quota or rate limits says nothing about the channel (see outcomeOf()).
+            if(outcomeOf(ex).equals("throttled")){
+                return new ResponseEntity<>(HttpStatus.TOO_MANY_REQUESTS);
+            }
+            if(ex instanceof GoogleJsonResponseException json && json.getStatusCode() == 403){
+                return new ResponseEntity<>("NOT_MONETIZED", HttpStatus.FORBIDDEN);
+            }
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Forgets everything kept on the server for a user who signs out: the cached channel, and the warm-up of the
+     * session (which is cancelled if it is still running).
+     *
+     * @param tr token response object received by the front end
+     * @return HTTP code 200
+     */
+    public static ResponseEntity<Object> signOut(TokenResponse tr){
+        String userKey = ChannelCache.hashToken(tr.getAccessToken());
+        WarmUp.end(userKey);
+        ChannelCache.invalidate(userKey);
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+    /**
+     * Reads the current number of subscribers from an already queried channel.
+     *
+     * @param channel the default channel of the logged-in user (see getDefaultChannel()).
+     * @return the subscriber count as a String.
+     */
+    static String subscriberCount(Channel channel){
+        ChannelStatistics stats = channel.getStatistics();
+        BigInteger subs = stats.getSubscriberCount();
+        return subs.toString();
+    }
+
+    /**
+     * Queries the YouTube Analytics API for the watch time in minutes of a channel for the past year.
+     *
+     * @param clients the API objects for the current request.
+     * @param channel the default channel of the logged-in user (see getDefaultChannel()).
+     * @return total watch time for the channel in the last year as a String.
+     * @throws IOException if the query failed.
+     */
+    static String queryWatchTime365(YtClients clients, Channel channel) throws IOException {
+        // Calculating the time frame
+        LocalDate now = MetricsStore.today();
+        LocalDate last_year = now.minusYears(1);
+
+        // Summing the daily watch time of VIDEOS only, excluding SHORTS (only the days not stored yet are queried,
+        // see MetricsStore)
+        MetricsStore.Daily daily = MetricsStore.daily(clients, channel.getId(), "estimatedMinutesWatched",
+                "creatorContentType==video_on_demand", last_year, now);
+        return String.valueOf(Math.round(daily.total(0)));
+    }
+
 }
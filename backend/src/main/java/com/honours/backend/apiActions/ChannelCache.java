@@ -0,0 +1,107 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.api.services.youtube.model.Channel;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * This class caches the default channel of each signed-in user, so the channel id, uploads playlist id and
+ * snippet are queried once per session instead of once per endpoint.
+ * <br>Entries are keyed on a SHA-256 hash of the access token (the raw token is never stored), the cache is
+ * bounded in size and entries expire a few minutes after they were written.
+ * <br>Concurrent lookups for the same user share a single upstream call (see SingleFlight).
+ */
+public class ChannelCache {
+    private static final int MAX_USERS = 10_000;
+    private static final Duration TIME_TO_LIVE = Duration.ofMinutes(10);
+
+    private static final AsyncCache<String, Channel> CHANNELS = Caffeine.newBuilder()
+            .maximumSize(MAX_USERS)
+            .expireAfterWrite(TIME_TO_LIVE)
+            .recordStats()
+            .buildAsync();
+
+    /**
+     * A query for the default channel, used when the channel is not cached yet.
+     */
+    @FunctionalInterface
+    public interface ChannelLoader {
+        Channel load() throws IOException;
+    }
+
+    /**
+     * Gets the cached default channel for a user, or loads it if it is missing or expired.
+     * <br>If another request is already loading the same user's channel, this call waits for that result.
+     *
+     * @param userKey the hashed access token of the user (see hashToken()).
+     * @param loader the query that is executed on a cache miss.
+     * @return the default channel for the user.
+     * @throws IOException if the query for the channel failed. Failures are not cached.
+     */
+    public static Channel get(String userKey, ChannelLoader loader) throws IOException {
+        return SingleFlight.get(CHANNELS, userKey, loader::load);
+    }
+
+    /**
+     * Gets the cached default channel for a user without blocking, for the reactive actions (see ReactiveActions).
+     * <br>As with get(), concurrent lookups for the same user share a single query, and failures are not cached.
+     *
+     * @param userKey the hashed access token of the user (see hashToken()).
+     * @param loader starts the query for the channel on a cache miss.
+     * @return the default channel for the user, once it is known.
+     */
+    public static CompletableFuture<Channel> getAsync(String userKey, Supplier<CompletableFuture<Channel>> loader) {
+        return CHANNELS.get(userKey, (key, executor) -> loader.get());
+    }
+
+    /**
+     * Removes a user's channel from the cache (e.g. when the token is no longer valid).
+     *
+     * @param userKey the hashed access token of the user.
+     */
+    public static void invalidate(String userKey) {
+        CHANNELS.synchronous().invalidate(userKey);
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache since startup.
+     */
+    public static CacheStats stats() {
+        return CHANNELS.synchronous().stats();
+    }
+
+    /**
+     * @return the approximate number of entries in the cache.
+     */
+    public static long size() {
+        return CHANNELS.synchronous().estimatedSize();
+    }
+
+    /**
+     * Hashes an access token so it can be used as a cache key without keeping the token itself in memory.
+     *
+     * @param accessToken the OAuth 2.0 access token of a user.
+     * @return the SHA-256 hash of the token, hex encoded.
+     */
+    public static String hashToken(String accessToken) {
+        try{
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.valueOf(accessToken).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        }
+        catch(NoSuchAlgorithmException ex){
+            // Every Java platform is required to support SHA-256, so this can not happen.
+            throw new IllegalStateException(ex);
+        }
+    }
+}
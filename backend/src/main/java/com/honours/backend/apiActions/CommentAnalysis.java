@@ -0,0 +1,362 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.api.services.youtube.model.CommentSnippet;
+import com.google.api.services.youtube.model.CommentThread;
+import com.google.api.services.youtube.model.CommentThreadListResponse;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class keeps a server-side analysis of the comments of every video: how positive the comments are and which
+ * words they use the most.
+ * <br>Every comment is tokenised only once, when it is first seen. Its words are added to the video's keyword
+ * table and its score (from the words in sentimentLexicon.txt) to the video's sentiment totals, and the result is
+ * computed again only when new comments arrived. Repeated views of a video's analysis are served from the cache
+ * without querying YouTube or tokenising anything.
+ * <br>Like the video index (see VideoIndex), an analysis is first populated from the newest comments, and after that
+ * refreshed incrementally: only the comments newer than the newest known one are read. The comment pages read by
+ * get200Comments() are added the same way. Because an incremental refresh can not see deleted or edited comments,
+ * the analysis is rebuilt from scratch once a day.
+ * <br>The analyses are kept per channel and video, like the other caches (see VideoIndex), so a video's analysis is
+ * only served to the channel it was read for. Another user asking for the same video (e.g. a private one) reads its
+ * comments with their own token, which YouTube may refuse.
+ */
+public class CommentAnalysis {
+    private static final int MAX_VIDEOS = 2_000;
+    private static final long COMMENT_PAGE_SIZE = 100;
+    // The first read takes the newest 1000 comments, and so does a refresh at most.
+    private static final int MAX_PAGES = 10;
+    // An analysis that grew past this many comments through refreshes is rebuilt from the newest ones.
+    private static final int MAX_KEPT_COMMENTS = 5_000;
+    private static final int TOP_KEYWORDS = 20;
+    private static final int MIN_KEYWORD_LENGTH = 3;
+    private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(10);
+    private static final Duration REBUILD_INTERVAL = Duration.ofDays(1);
+    // A comment scoring more than this is positive, less than minus this negative, and neutral otherwise.
+    private static final double NEUTRAL_BAND = 0.05;
+    // A word right after "not", "never", ... counts the other way, a bit weaker ("not bad" is not "good").
+    private static final double NEGATION = -0.75;
+    private static final Set<String> NEGATORS = Set.of("not", "no", "never", "dont", "doesnt", "didnt", "isnt",
+            "wasnt", "arent", "cant", "cannot", "wont", "nothing");
+
+    private static final Map<String, Integer> LEXICON = readLexicon("sentimentLexicon.txt");
+    private static final Set<String> STOP_WORDS = Set.copyOf(readWords("stopWords.txt"));
+
+    // Keyed by channel and video ID. Videos nobody looked at for a while are dropped and analysed again when needed.
+    private static final Cache<String, VideoComments> ANALYSES = Caffeine.newBuilder()
+            .maximumSize(MAX_VIDEOS)
+            .expireAfterAccess(Duration.ofHours(6))
+            .recordStats()
+            .build();
+
+    /**
+     * The analysis of one video. The tables are only changed while holding the lock, and readers always see the
+     * last computed result, which is replaced as a whole when new comments were added.
+     */
+    private static class VideoComments {
+        private final ReentrantLock syncLock = new ReentrantLock();
+        private final Set<String> known = new HashSet<>();
+        private final Map<String, Integer> keywords = new HashMap<>();
+        private double scoreTotal = 0;
+        private int positive = 0;
+        private int negative = 0;
+        private volatile Map<String,Object> result = null;
+        private volatile Instant refreshedAt = Instant.EPOCH;
+        private volatile Instant rebuiltAt = Instant.EPOCH;
+
+        private void clear() {
+            known.clear();
+            keywords.clear();
+            scoreTotal = 0;
+            positive = 0;
+            negative = 0;
+        }
+
+        /**
+         * Tokenises the comments that are not known yet and adds them to the tables.
+         *
+         * @return whether any comment was added.
+         */
+        private boolean add(List<CommentThread> comments) {
+            boolean added = false;
+            for (CommentThread comment : comments) {
+                if(!known.add(idOf(comment))) continue;
+                added = true;
+
+                List<String> tokens = tokenise(textOf(comment));
+                double score = score(tokens);
+                scoreTotal += score;
+                if(score > NEUTRAL_BAND) positive++;
+                else if(score < -NEUTRAL_BAND) negative++;
+
+                // A word counts once per comment, so a single comment repeating a word does not make it a keyword.
+                for (String token : new HashSet<>(tokens)) {
+                    if(isKeyword(token)) keywords.merge(token, 1, Integer::sum);
+                }
+            }
+            return added;
+        }
+
+        private Map<String,Object> summarise() {
+            int analysed = known.size();
+            Map<String,Object> sentiment = new HashMap<>();
+            sentiment.put("average", analysed == 0 ? 0.0 : Math.round(scoreTotal / analysed * 1000) / 1000.0);
+            sentiment.put("positive", positive);
+            sentiment.put("negative", negative);
+            sentiment.put("neutral", analysed - positive - negative);
+
+            // The most used words first, and in alphabetical order when they are used as often.
+            List<Map<String,Object>> top = keywords.entrySet().stream()
+                    .sorted(Map.Entry.<String, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()))
+                    .limit(TOP_KEYWORDS)
+                    .map(e -> Map.<String,Object>of("word", e.getKey(), "count", e.getValue()))
+                    .toList();
+
+            Map<String,Object> summary = new HashMap<>();
+            summary.put("analysed_comments", analysed);
+            summary.put("sentiment", Map.copyOf(sentiment));
+            summary.put("keywords", top);
+            return Map.copyOf(summary);
+        }
+    }
+
+    /**
+     * Gets the analysis of a video's comments, refreshing it first if it is out of date.
+     * <br>If another request is already refreshing the analysis, the current one is returned instead of waiting
+     * (unless there is none yet).
+     *
+     * @param clients the API objects for the current request.
+     * @param videoID the video whose comments are analysed.
+     * @return a map with the number of "analysed_comments", the "sentiment" ("average" score from -1 to 1 and the
+     * number of "positive", "neutral" and "negative" comments) and the most used "keywords" ("word" and "count").
+     * @throws IOException if the analysis had to be populated and a query failed.
+     */
+    public static Map<String,Object> analysisOf(YtClients clients, String videoID) throws IOException {
+        String channelID = Actions.getDefaultChannel(clients).getId();
+        VideoComments analysis = ANALYSES.get(keyOf(channelID, videoID), key -> new VideoComments());
+        Instant now = Instant.now();
+        Map<String,Object> snapshot = analysis.result;
+        if(snapshot != null && analysis.refreshedAt.plus(REFRESH_INTERVAL).isAfter(now)) return snapshot;
+
+        if(snapshot == null) analysis.syncLock.lock();
+        else if(!analysis.syncLock.tryLock()) return snapshot;
+        try{
+            // Another request may have finished the refresh while this one was waiting for the lock.
+            if(analysis.result != null && analysis.refreshedAt.plus(REFRESH_INTERVAL).isAfter(now)) return analysis.result;
+
+            boolean rebuild = analysis.result == null || analysis.rebuiltAt.plus(REBUILD_INTERVAL).isBefore(now)
+                    || analysis.known.size() > MAX_KEPT_COMMENTS;
+            NewComments read = readNewest(clients, videoID, rebuild ? Set.of() : analysis.known);
+            // When even the most a refresh reads does not reach the known comments, there would be a gap between
+            // the two, so the analysis starts again from the newest ones.
+            if(rebuild || !read.joined()) {
+                analysis.clear();
+                analysis.rebuiltAt = now;
+            }
+            if(analysis.add(read.comments()) || analysis.result == null) analysis.result = analysis.summarise();
+            analysis.refreshedAt = now;
+            return analysis.result;
+        }
+        finally{
+            analysis.syncLock.unlock();
+        }
+    }
+
+    /**
+     * Adds comments read elsewhere (e.g. by get200Comments()) to a video's analysis, if the video is being analysed
+     * for the channel that read them and the comments reach down to ones already known, so there is no gap between
+     * them.
+     *
+     * @param channelID the channel of the user who read the comments.
+     * @param videoID the video the comments belong to.
+     * @param newestFirst the video's newest comments, newest first (the order the API returns them in).
+     */
+    public static void record(String channelID, String videoID, List<CommentThread> newestFirst) {
+        VideoComments analysis = ANALYSES.getIfPresent(keyOf(channelID, videoID));
+        if(analysis == null || analysis.result == null || newestFirst == null) return;
+        // A refresh that is already running reads the same comments.
+        if(!analysis.syncLock.tryLock()) return;
+        try{
+            int joinedAt = -1;
+            for (int i = 0; i < newestFirst.size() && joinedAt < 0; i++) {
+                if(analysis.known.contains(idOf(newestFirst.get(i)))) joinedAt = i;
+            }
+            if(joinedAt < 0) return;
+
+            if(analysis.add(newestFirst.subList(0, joinedAt))) analysis.result = analysis.summarise();
+            analysis.refreshedAt = Instant.now();
+        }
+        finally{
+            analysis.syncLock.unlock();
+        }
+    }
+
+    private static String keyOf(String channelID, String videoID) {
+        return channelID + "/" + videoID;
+    }
+
+    /**
+     * The comments newer than the known ones, and whether the reading got down to a known one.
+     */
+    private record NewComments(List<CommentThread> comments, boolean joined) {
+    }
+
+    /**
+     * Reads a video's comments from the newest one backwards, until the first one that is already known, the end
+     * of the comments or MAX_PAGES pages.
+     */
+    private static NewComments readNewest(YtClients clients, String videoID, Set<String> known) throws IOException {
+        List<CommentThread> found = new ArrayList<>();
+        String pageToken = null;
+        for (int page = 0; page < MAX_PAGES; page++) {
+            CommentThreadListResponse response = VideoActions.queryCommentPage(clients, videoID, pageToken,
+                    (int) COMMENT_PAGE_SIZE);
+            for (CommentThread comment : response.getItems() == null ? List.<CommentThread>of() : response.getItems()) {
+                if(known.contains(idOf(comment))) return new NewComments(found, true);
+                found.add(comment);
+            }
+            pageToken = response.getNextPageToken();
+            // Reaching the oldest comment also leaves no gap.
+            if(pageToken == null) return new NewComments(found, true);
+        }
+        return new NewComments(found, known.isEmpty());
+    }
+
+    /**
+     * Splits a comment into lower case words. The HTML the API formats the comments with is left out, and the
+     * apostrophes are dropped ("don't" becomes "dont", like in the lexicon).
+     *
+     * @param text the comment as returned by the API (textDisplay).
+     * @return the words, in the order they appear.
+     */
+    static List<String> tokenise(String text) {
+        List<String> tokens = new ArrayList<>();
+        if(text == null) return tokens;
+        String plain = text.replace("&#39;", "'").replace("&quot;", "\"").replace("&amp;", "&")
+                .replace("&lt;", "<").replace("&gt;", ">");
+
+        StringBuilder token = new StringBuilder();
+        boolean inTag = false;
+        for (int i = 0; i < plain.length(); i++) {
+            char c = plain.charAt(i);
+            if(c == '<' && plain.indexOf('>', i) > i) inTag = true;
+            if(inTag){
+                if(c == '>') inTag = false;
+                c = ' ';
+            }
+
+            if(Character.isLetterOrDigit(c)) token.append(Character.toLowerCase(c));
+            else if((c == '\'' || c == '’') && token.length() > 0) continue;
+            else if(token.length() > 0){
+                tokens.add(token.toString());
+                token.setLength(0);
+            }
+        }
+        if(token.length() > 0) tokens.add(token.toString());
+        return tokens;
+    }
+
+    /**
+     * Scores a comment from its words' sentiment in the lexicon, a word right after a negation counting the other
+     * way. The sum is scaled to between -1 and 1, so a long rant does not outweigh many short comments.
+     *
+     * @param tokens the comment's words (see tokenise()).
+     * @return the score, from -1 (very negative) to 1 (very positive), 0 for no sentiment.
+     */
+    static double score(List<String> tokens) {
+        double sum = 0;
+        for (int i = 0; i < tokens.size(); i++) {
+            Integer value = LEXICON.get(tokens.get(i));
+            if(value == null) continue;
+            boolean negated = (i > 0 && NEGATORS.contains(tokens.get(i - 1)))
+                    || (i > 1 && NEGATORS.contains(tokens.get(i - 2)));
+            sum += negated ? value * NEGATION : value;
+        }
+        // The same scaling VADER uses, so a single strong word scores about 0.6.
+        return sum / Math.sqrt(sum * sum + 15);
+    }
+
+    private static boolean isKeyword(String token) {
+        if(token.length() < MIN_KEYWORD_LENGTH || STOP_WORDS.contains(token) || NEGATORS.contains(token)) return false;
+        for (int i = 0; i < token.length(); i++) {
+            if(!Character.isDigit(token.charAt(i))) return true;
+        }
+        return false;
+    }
+
+    private static String textOf(CommentThread comment) {
+        CommentSnippet snippet = comment.getSnippet().getTopLevelComment().getSnippet();
+        return snippet.getTextDisplay();
+    }
+
+    // Comments without an ID (which the API always sends) are told apart by their author and text.
+    private static String idOf(CommentThread comment) {
+        if(comment.getId() != null) return comment.getId();
+        CommentSnippet snippet = comment.getSnippet().getTopLevelComment().getSnippet();
+        return snippet.getAuthorDisplayName() + ":" + snippet.getTextDisplay();
+    }
+
+    /**
+     * Drops every analysis, so the next request analyses the comments again.
+     */
+    public static void invalidateAll() {
+        ANALYSES.invalidateAll();
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache since startup.
+     */
+    public static CacheStats stats() {
+        return ANALYSES.stats();
+    }
+
+    /**
+     * @return the approximate number of entries in the cache.
+     */
+    public static long size() {
+        return ANALYSES.estimatedSize();
+    }
+
+    private static Map<String, Integer> readLexicon(String file) {
+        Map<String, Integer> lexicon = new HashMap<>();
+        for (String line : readWords(file)) {
+            String[] parts = line.split("\\s+");
+            if(parts.length == 2) lexicon.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return Map.copyOf(lexicon);
+    }
+
+    /**
+     * Reads the non-blank lines of a classpath resource that are not comments ("#"), like AdviceCorpus does.
+     *
+     * @return the lines, or an empty list if the file is missing or can not be read.
+     */
+    private static List<String> readWords(String file) {
+        InputStream stream = CommentAnalysis.class.getResourceAsStream("/" + file);
+        if(stream == null) return List.of();
+
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))){
+            String line;
+            while((line = reader.readLine()) != null){
+                if(!line.isBlank() && !line.startsWith("#")) lines.add(line.trim());
+            }
+        }
+        catch(IOException ex){
+            // Without the files every comment is neutral and every word can be a keyword, the analysis still works.
+            return List.of();
+        }
+        return lines;
+    }
+}
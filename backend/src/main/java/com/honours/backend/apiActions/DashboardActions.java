@@ -0,0 +1,101 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.services.youtube.model.Channel;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+public class DashboardActions extends Actions{
+    // The longest time the dashboard waits for its sections (which all start together) before reporting the
+    // unfinished ones as failed.
+    private static final long SECTION_TIMEOUT_SECONDS = 30;
+
+    /**
+     * This method gathers everything the dashboard page shows in a single request.
+     * <br>The default channel is resolved once, then the subscriber count, the watch time for the past year,
+     * the latest video's performance and the top 5 latest videos are queried at the same time.
+     * <br>A section that fails does not fail the whole dashboard; it is left out of the result and its error
+     * is listed under "errors" instead. The sections share a single deadline, so the request waits at most
+     * SECTION_TIMEOUT_SECONDS however many of them are slow.
+     *
+     * @param tr token response object received by the front end
+     * @return a map with the keys "subscriberCount", "minutesWatched", "lastVideo" and "latestVids" (the same
+     * values the separate endpoints return) plus an "errors" map of section name to a short error (see errorOf())
+     * + HTTP code 200
+     * <br>OR
+     * <br>HTTP code 500 if the channel could not be found or every section failed.
+     */
+    public static ResponseEntity<Object> getDashboard(TokenResponse tr){
+        YtClients clients = makeYtObjects(tr);
+        Channel defaultChannel;
+        try{
+            defaultChannel = getDefaultChannel(clients);
+        }
+        catch(IOException ex){
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(SECTION_TIMEOUT_SECONDS);
+        // Every section is started before waiting for any of them.
+        Map<String, CompletableFuture<Object>> sections = new LinkedHashMap<>();
+        sections.put("subscriberCount", UpstreamPool.submit(() -> ChannelActions.subscriberCount(defaultChannel)));
+        sections.put("minutesWatched", UpstreamPool.submit(() -> ChannelActions.queryWatchTime365(clients, defaultChannel)));
+        sections.put("lastVideo", UpstreamPool.submit(() -> VideoActions.queryLastVideoPerformance(clients, defaultChannel)));
+        sections.put("latestVids", UpstreamPool.submit(() -> {
+            try{
+                return VideoActions.queryTop5Vids(clients, defaultChannel);
+            }
+            catch(IndexOutOfBoundsException ex){
+                // Same as in getTop5Vids() - a channel without any videos has an empty top 5.
+                return List.of();
+            }
+        }));
+
+        Map<String,Object> result = new HashMap<>();
+        Map<String,String> errors = new HashMap<>();
+        for (Map.Entry<String, CompletableFuture<Object>> section : sections.entrySet()) {
+            try{
+                result.put(section.getKey(), section.getValue().get(Math.max(0, deadline - System.nanoTime()),
+                        TimeUnit.NANOSECONDS));
+            }
+            catch(ExecutionException ex){
+                errors.put(section.getKey(), errorOf(ex.getCause()));
+            }
+            catch(TimeoutException ex){
+                section.getValue().cancel(true);
+                errors.put(section.getKey(), "Timed out.");
+            }
+            catch(InterruptedException ex){
+                Thread.currentThread().interrupt();
+                errors.put(section.getKey(), "Interrupted.");
+            }
+        }
+        result.put("errors", errors);
+
+        if(errors.size() == sections.size()){
+            return new ResponseEntity<>(result, HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Names why a section failed, without passing on YouTube's error (which may hold its whole JSON error body).
+     *
+     * @param cause what the section threw.
+     * @return "quota_exceeded", "unavailable" (the rate limit or an open breaker), one of the outcomes of
+     * outcomeOf() for a failed query, or "failed" for anything else.
+     */
+    private static String errorOf(Throwable cause) {
+        if(cause instanceof QuotaScheduler.QuotaExceededException) return "quota_exceeded";
+        if(cause instanceof UpstreamResilience.UpstreamUnavailableException) return "unavailable";
+        if(cause instanceof IOException io) return outcomeOf(io);
+        return "failed";
+    }
+}
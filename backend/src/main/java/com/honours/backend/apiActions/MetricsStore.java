@@ -0,0 +1,365 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * This class keeps daily snapshots of analytics metrics on disk, so long-range queries (e.g. the last 365 days, or
+ * everything since a video was uploaded) are read locally and only the days that are not stored yet are requested
+ * from the YouTube Analytics API.
+ * <br>Every series (a channel, a set of metrics and a filter) is an append-only file with one line per day, e.g.
+ * "2024-03-01,120,456.5", in the channel's own folder. After the rows of a fetch, a line like
+ * "@2024-01-01,2024-03-01" records which days were fetched, since days without any views have no row at all.
+ * <br>The analytics data of the last few days is still being processed by YouTube, so only days older than
+ * "settle days" are stored. The recent days are always fetched again (through the AnalyticsCache).
+ * <br>Nothing is stored unless a folder is configured (see configure()).
+ */
+public class MetricsStore {
+    // Channel IDs are used as folder names, so anything that could leave the store's folder is refused.
+    private static final Pattern SAFE_CHANNEL_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private static volatile Path directory = null;
+    private static volatile int settleDays = 3;
+    private static volatile Clock clock = Clock.systemDefaultZone();
+    // The series read from disk, so a file is only read once. Evicted series are simply read again.
+    private static volatile Cache<Path, Series> loaded = build(1_000);
+    // One lock per file, kept apart from the series read from them: a series can be evicted while it is being
+    // filled, and the one read again from the same file must wait for that fill to be written first (see daily()).
+    // A lock is kept for as long as a thread holds on to it, so every thread locking a file gets the same one.
+    private static final Cache<Path, ReentrantLock> FILE_LOCKS = Caffeine.newBuilder().weakValues().build();
+
+    /**
+     * The metrics of each day of a period, one column per metric. Days without a row (no views at all) are 0.
+     */
+    public record Daily(LocalDate start, double[][] columns) {
+
+        public int days() {
+            return columns.length == 0 ? 0 : columns[0].length;
+        }
+
+        /**
+         * @return the values of the metric at the given position of the query's metrics, one per day.
+         */
+        public double[] column(int metric) {
+            return columns[metric];
+        }
+
+        /**
+         * @return the sum of the metric over the whole period.
+         */
+        public double total(int metric) {
+            double sum = 0;
+            for (double value : columns[metric]) sum += value;
+            return sum;
+        }
+    }
+
+    /**
+     * Changes where and what is stored. Series already read are dropped, so they are read again from the new folder.
+     *
+     * @param dir the folder of the store, or null to keep nothing on disk (every query then fetches the whole period).
+     * @param settle how many days before today are not stored either (today never is), since their numbers may
+     *               still change.
+     * @param maxLoadedSeries the most series kept in memory once read.
+     */
+    public static void configure(Path dir, int settle, int maxLoadedSeries) {
+        if(settle < 0){
+            throw new IllegalArgumentException("The settle days of the metrics store can not be negative.");
+        }
+        directory = dir;
+        settleDays = settle;
+        loaded = build(maxLoadedSeries);
+    }
+
+    // Used by tests to move to another day.
+    static void setClock(Clock newClock) {
+        clock = newClock == null ? Clock.systemDefaultZone() : newClock;
+    }
+
+    static LocalDate today() {
+        return LocalDate.now(clock);
+    }
+
+    /**
+     * Returns the daily metrics of a period, reading the stored days and fetching only the missing ones.
+     *
+     * @param clients the API objects for the current request.
+     * @param channelID the ID of the signed-in user's channel (see getDefaultChannel()).
+     * @param metrics the metrics, as given to a "reports.query" (e.g. "views,estimatedMinutesWatched"). Only
+     *                metrics that can be summed over days make sense here (no averages or rates).
+     * @param filters the filters of the query (e.g. "video==abc"), or null.
+     * @param start the first day of the period.
+     * @param end the last day of the period (usually today).
+     * @return the metrics of every day from start to end.
+     * @throws IOException if a missing day could not be fetched.
+     */
+    public static Daily daily(YtClients clients, String channelID, String metrics, String filters,
+                              LocalDate start, LocalDate end) throws IOException {
+        int metricCount = metrics.split(",").length;
+        int days = end.isBefore(start) ? 0 : (int) ChronoUnit.DAYS.between(start, end) + 1;
+        double[][] columns = new double[metricCount][days];
+        if(days == 0) return new Daily(start, columns);
+
+        // The stored part of the period ends with the last settled day.
+        LocalDate settledEnd = min(end, today().minusDays(settleDays + 1L));
+        LocalDate liveStart = start;
+
+        Path file = fileOf(channelID, metrics, filters);
+        if(file != null && !settledEnd.isBefore(start)){
+            // A lock rather than synchronized, so a virtual thread waiting on the fill does not pin its carrier.
+            // The series is looked up while holding it, so there is never more than one writer per file.
+            ReentrantLock lock = lockOf(file);
+            lock.lock();
+            try{
+                Series series = series(file, metrics, filters);
+                series.fill(clients, channelID, start, settledEnd);
+                series.copy(start, settledEnd, start, columns);
+            }
+            finally{
+                lock.unlock();
+            }
+            liveStart = settledEnd.plusDays(1);
+        }
+
+        if(!liveStart.isAfter(end)){
+            List<List<Object>> rows = AnalyticsCache.rows(clients, channelID, query(clients, channelID, metrics, filters, liveStart, end));
+            if(rows != null){
+                for (List<Object> row : rows) put(columns, start, LocalDate.parse(row.get(0).toString()), parseValues(row));
+            }
+        }
+        return new Daily(start, columns);
+    }
+
+    /**
+     * Drops the series read into memory (the files are kept).
+     */
+    public static void unloadAll() {
+        loaded.invalidateAll();
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the series kept in memory, since the store was last configured.
+     */
+    public static CacheStats stats() {
+        return loaded.stats();
+    }
+
+    /**
+     * @return the approximate number of series read into memory.
+     */
+    public static long size() {
+        return loaded.estimatedSize();
+    }
+
+    /**
+     * The stored days of one series, as read from its file plus what was appended since.
+     */
+    private static final class Series {
+        private final Path file;
+        private final String metrics;
+        private final String filters;
+        private final TreeMap<LocalDate, double[]> days = new TreeMap<>();
+        private LocalDate coveredFrom;
+        private LocalDate coveredTo;
+
+        private Series(Path file, String metrics, String filters) {
+            this.file = file;
+            this.metrics = metrics;
+            this.filters = filters;
+        }
+
+        private void read() throws IOException {
+            List<String> lines;
+            try{
+                lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            }
+            catch(NoSuchFileException ex){
+                return;
+            }
+            for (String line : lines) {
+                try{
+                    if(line.startsWith("@")){
+                        String[] range = line.substring(1).split(",");
+                        cover(LocalDate.parse(range[0]), LocalDate.parse(range[1]));
+                    }
+                    else if(!line.isBlank() && !line.startsWith("#")){
+                        String[] values = line.split(",");
+                        double[] parsed = new double[values.length - 1];
+                        for (int i = 1; i < values.length; i++) parsed[i - 1] = Double.parseDouble(values[i]);
+                        days.put(LocalDate.parse(values[0]), parsed);
+                    }
+                }
+                catch(DateTimeParseException | NumberFormatException | ArrayIndexOutOfBoundsException ex){
+                    // A line cut short (e.g. by a crash while appending) is skipped. If its range marker is
+                    // missing too, those days are simply fetched again.
+                }
+            }
+        }
+
+        /**
+         * Fetches the days of the period before and after the stored ones. The stored days always stay one
+         * unbroken range, so there is at most one query for each end.
+         */
+        private void fill(YtClients clients, String channelID, LocalDate start, LocalDate end) throws IOException {
+            if(coveredFrom == null){
+                fetch(clients, channelID, start, end);
+                return;
+            }
+            if(start.isBefore(coveredFrom)) fetch(clients, channelID, start, coveredFrom.minusDays(1));
+            if(end.isAfter(coveredTo)) fetch(clients, channelID, coveredTo.plusDays(1), end);
+        }
+
+        private void fetch(YtClients clients, String channelID, LocalDate from, LocalDate to) throws IOException {
+            List<List<Object>> rows = Actions.execute("reports.query", clients.userKey(), query(clients, channelID, metrics, filters, from, to)).getRows();
+
+            StringBuilder lines = new StringBuilder();
+            if(coveredFrom == null) lines.append("# metrics=").append(metrics).append(" filters=").append(filters).append('\n');
+            if(rows != null){
+                for (List<Object> row : rows) {
+                    double[] values = parseValues(row);
+                    days.put(LocalDate.parse(row.get(0).toString()), values);
+                    lines.append(row.get(0));
+                    for (double value : values) lines.append(',').append(format(value));
+                    lines.append('\n');
+                }
+            }
+            lines.append('@').append(from).append(',').append(to).append('\n');
+            cover(from, to);
+            append(lines);
+        }
+
+        private void append(CharSequence lines) {
+            try{
+                Files.createDirectories(file.getParent());
+                try(BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)){
+                    writer.append(lines);
+                }
+            }
+            catch(IOException ex){
+                // The days are kept in memory anyway, a store that can not be written to only makes restarts slower.
+            }
+        }
+
+        private void cover(LocalDate from, LocalDate to) {
+            coveredFrom = coveredFrom == null || from.isBefore(coveredFrom) ? from : coveredFrom;
+            coveredTo = coveredTo == null || to.isAfter(coveredTo) ? to : coveredTo;
+        }
+
+        private void copy(LocalDate from, LocalDate to, LocalDate start, double[][] columns) {
+            for (Map.Entry<LocalDate, double[]> day : days.subMap(from, true, to, true).entrySet()) {
+                put(columns, start, day.getKey(), day.getValue());
+            }
+        }
+    }
+
+    /**
+     * @return the file of a series, or null if nothing is stored (no folder is configured, or the channel ID is not
+     * safe to use as a folder name).
+     */
+    private static Path fileOf(String channelID, String metrics, String filters) {
+        Path dir = directory;
+        if(dir == null || channelID == null || !SAFE_CHANNEL_ID.matcher(channelID).matches()) return null;
+        return dir.resolve(channelID).resolve(seriesName(metrics, filters) + ".csv");
+    }
+
+    private static ReentrantLock lockOf(Path file) {
+        return FILE_LOCKS.get(file, f -> new ReentrantLock());
+    }
+
+    // Must be called with the file's lock held (see lockOf()).
+    private static Series series(Path file, String metrics, String filters) throws IOException {
+        try{
+            return loaded.get(file, f -> {
+                Series series = new Series(f, metrics, filters);
+                try{
+                    series.read();
+                }
+                catch(IOException ex){
+                    throw new UncheckedIOException(ex);
+                }
+                return series;
+            });
+        }
+        catch(UncheckedIOException ex){
+            throw ex.getCause();
+        }
+    }
+
+    // The metrics and filters can hold any character, so the file is named after their hash.
+    private static String seriesName(String metrics, String filters) {
+        try{
+            byte[] hash = MessageDigest.getInstance("SHA-256")
+                    .digest((metrics + '|' + filters).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash, 0, 12);
+        }
+        catch(NoSuchAlgorithmException ex){
+            throw new IllegalStateException("SHA-256 is always available.", ex);
+        }
+    }
+
+    private static YouTubeAnalytics.Reports.Query query(YtClients clients, String channelID, String metrics,
+                                                        String filters, LocalDate from, LocalDate to) throws IOException {
+        return clients.ytAnalytics().reports().query()
+                .setIds("channel==" + channelID)
+                .setDimensions("day")
+                .setSort("day")
+                .setStartDate(from.toString())
+                .setEndDate(to.toString())
+                .setMetrics(metrics)
+                .setFilters(filters);
+    }
+
+    private static double[] parseValues(List<Object> row) {
+        double[] values = new double[row.size() - 1];
+        for (int i = 1; i < row.size(); i++) {
+            Object value = row.get(i);
+            values[i - 1] = value instanceof Number n ? n.doubleValue() : Double.parseDouble(value.toString());
+        }
+        return values;
+    }
+
+    private static void put(double[][] columns, LocalDate start, LocalDate day, double[] values) {
+        int index = (int) ChronoUnit.DAYS.between(start, day);
+        if(index < 0 || columns.length == 0 || index >= columns[0].length) return;
+        for (int metric = 0; metric < columns.length && metric < values.length; metric++) {
+            columns[metric][index] = values[metric];
+        }
+    }
+
+    // Whole numbers (most metrics) are written without a decimal point.
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value) : Double.toString(value);
+    }
+
+    private static LocalDate min(LocalDate a, LocalDate b) {
+        return a.isBefore(b) ? a : b;
+    }
+
+    private static Cache<Path, Series> build(int maxSeries) {
+        return Caffeine.newBuilder().maximumSize(maxSeries).recordStats().build();
+    }
+}
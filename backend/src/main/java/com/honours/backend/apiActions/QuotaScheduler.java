@@ -0,0 +1,239 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.io.IOException;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class keeps track of the YouTube Data API quota. Every project gets a number of units a day (10,000 by
+ * default) and every query costs some of them, e.g. 1 unit for a page of comments and 100 for a search.
+ * Once they are used up, every query of every user fails until the quota is reset at midnight Pacific Time.
+ * <br>Before a query is sent (see Actions.execute()), its units are taken from the project's budget and from the
+ * budget of the user it is sent for. Queries sent for someone waiting on a page are INTERACTIVE, anything else
+ * (e.g. refreshing cached rows) is BACKGROUND, and background queries are refused while only the reserve of the
+ * budget is left, so the quota left at the end of a day goes to the pages people are looking at.
+ * <br>The remaining units are published as "youtube.quota.remaining", and refused queries are counted in
+ * "youtube.quota.refused", tagged with the priority and the budget that ran out.
+ */
+public class QuotaScheduler {
+    // The quota is reset at midnight Pacific Time, whatever the server's time zone.
+    private static final ZoneId QUOTA_ZONE = ZoneId.of("America/Los_Angeles");
+
+    // The cost of each call the actions make (see https://developers.google.com/youtube/v3/determine_quota_cost).
+    // The Analytics API has its own quota, reports.query does not use Data API units.
+    private static final Map<String, Integer> COSTS = Map.of(
+            "channels.list", 1,
+            "playlistItems.list", 1,
+            "videos.list", 1,
+            "commentThreads.list", 1,
+            "subscriptions.list", 1,
+            "search.list", 100,
+            "reports.query", 0);
+    // A call that is not listed above is assumed to cost as much as a list call.
+    private static final int DEFAULT_COST = 1;
+
+    /**
+     * How urgently a query is needed.
+     */
+    public enum Priority { INTERACTIVE, BACKGROUND }
+
+    private static final ThreadLocal<Priority> PRIORITY = ThreadLocal.withInitial(() -> Priority.INTERACTIVE);
+
+    private static volatile long dailyUnits = 10_000;
+    private static volatile long userDailyUnits = 2_000;
+    private static volatile double backgroundReserve = 0.2;
+    private static volatile Clock clock = Clock.system(QUOTA_ZONE);
+
+    private static final Object DAY_LOCK = new Object();
+    private static volatile LocalDate day = LocalDate.now(clock);
+    private static final AtomicLong USED = new AtomicLong();
+    private static final Map<String, AtomicLong> USED_BY_USER = new ConcurrentHashMap<>();
+
+    private static final Map<String, LongAdder> REFUSED = new ConcurrentHashMap<>();
+
+    static {
+        Gauge.builder("youtube.quota.remaining", () -> remaining())
+                .description("Data API quota units left for the project today.")
+                .baseUnit("units")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * Thrown instead of sending a query whose units are not available.
+     */
+    public static class QuotaExceededException extends IOException {
+        public QuotaExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A task that queries the YouTube APIs.
+     */
+    @FunctionalInterface
+    public interface QuotaTask<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Changes the budgets. The units already used today are kept.
+     *
+     * @param projectUnits the project's daily quota, as shown in the Google Cloud console.
+     * @param userUnits the most units a single user may use in a day.
+     * @param reserve the share of the project's quota (0 to 1) only interactive queries may use.
+     */
+    public static void configure(long projectUnits, long userUnits, double reserve) {
+        if(reserve < 0 || reserve > 1){
+            throw new IllegalArgumentException("The background reserve of the quota must be between 0 and 1.");
+        }
+        dailyUnits = projectUnits;
+        userDailyUnits = userUnits;
+        backgroundReserve = reserve;
+    }
+
+    /**
+     * Runs a task with the given priority. The queries it sends (including the ones it starts on the upstream
+     * pool) are scheduled with that priority.
+     */
+    public static <T> T withPriority(Priority priority, QuotaTask<T> task) throws Exception {
+        Priority previous = PRIORITY.get();
+        PRIORITY.set(priority);
+        try{
+            return task.call();
+        }
+        finally{
+            PRIORITY.set(previous);
+        }
+    }
+
+    /**
+     * @return the priority of the queries sent by the current thread.
+     */
+    public static Priority currentPriority() {
+        return PRIORITY.get();
+    }
+
+    /**
+     * @return the Data API units the project has left today.
+     */
+    public static long remaining() {
+        rollOver();
+        return Math.max(0, dailyUnits - USED.get());
+    }
+
+    /**
+     * @return the Data API units the user has left today.
+     */
+    public static long remaining(String userKey) {
+        rollOver();
+        AtomicLong used = USED_BY_USER.get(userKey);
+        return Math.max(0, userDailyUnits - (used == null ? 0 : used.get()));
+    }
+
+    /**
+     * @return how many queries were refused since startup, for the given priority.
+     */
+    public static double refused(Priority priority) {
+        return REFUSED.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith(priority.name()))
+                .mapToDouble(entry -> entry.getValue().doubleValue())
+                .sum();
+    }
+
+    /**
+     * Takes the units of a query from the project's and the user's budget, or refuses the query.
+     *
+     * @param call the name of the API method, e.g. "commentThreads.list".
+     * @param userKey the user the query is sent for, or null if it is not known.
+     * @throws QuotaExceededException if the units are not available for the current priority.
+     */
+    static void acquire(String call, String userKey) throws QuotaExceededException {
+        long cost = COSTS.getOrDefault(call, DEFAULT_COST);
+        if(cost == 0) return;
+        rollOver();
+
+        Priority priority = PRIORITY.get();
+        // Background queries leave the reserve alone, interactive ones may use everything.
+        long limit = priority == Priority.BACKGROUND ? (long) (dailyUnits * (1 - backgroundReserve)) : dailyUnits;
+        long used = USED.addAndGet(cost);
+        if(used > limit){
+            USED.addAndGet(-cost);
+            throw refuse(priority, "project", call);
+        }
+
+        if(userKey != null){
+            AtomicLong byUser = USED_BY_USER.computeIfAbsent(userKey, key -> new AtomicLong());
+            if(byUser.addAndGet(cost) > userDailyUnits){
+                byUser.addAndGet(-cost);
+                USED.addAndGet(-cost);
+                throw refuse(priority, "user", call);
+            }
+        }
+    }
+
+    /**
+     * Marks the project's quota as used up when YouTube says so, e.g. after a restart (the counts are not kept)
+     * or when another server uses the same project.
+     */
+    static void recordFailure(IOException failure) {
+        if(!(failure instanceof GoogleJsonResponseException response) || response.getDetails() == null) return;
+        if(response.getDetails().getErrors() == null) return;
+        for (GoogleJsonError.ErrorInfo error : response.getDetails().getErrors()) {
+            if("quotaExceeded".equals(error.getReason()) || "dailyLimitExceeded".equals(error.getReason())){
+                rollOver();
+                USED.accumulateAndGet(dailyUnits, Math::max);
+                return;
+            }
+        }
+    }
+
+    // Used by tests to move to another quota day.
+    static void setClock(Clock newClock) {
+        clock = newClock == null ? Clock.system(QUOTA_ZONE) : newClock;
+    }
+
+    // Used by tests to start from an unused quota.
+    static void reset() {
+        synchronized(DAY_LOCK){
+            day = LocalDate.now(clock.withZone(QUOTA_ZONE));
+            USED.set(0);
+            USED_BY_USER.clear();
+        }
+    }
+
+    private static void rollOver() {
+        LocalDate today = LocalDate.now(clock.withZone(QUOTA_ZONE));
+        if(today.equals(day)) return;
+        synchronized(DAY_LOCK){
+            if(today.equals(day)) return;
+            USED.set(0);
+            USED_BY_USER.clear();
+            day = today;
+        }
+    }
+
+    private static QuotaExceededException refuse(Priority priority, String budget, String call) {
+        REFUSED.computeIfAbsent(priority.name() + '|' + budget, name -> {
+            LongAdder adder = new LongAdder();
+            FunctionCounter.builder("youtube.quota.refused", adder, LongAdder::doubleValue)
+                    .description("Queries not sent because the Data API quota left was not enough for them.")
+                    .tag("priority", priority.name().toLowerCase())
+                    .tag("budget", budget)
+                    .register(Metrics.globalRegistry);
+            return adder;
+        }).increment();
+        return new QuotaExceededException("Not enough " + budget + " quota left today for " + call
+                + " (" + priority.name().toLowerCase() + ").");
+    }
+}
@@ -0,0 +1,187 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.services.youtube.model.Channel;
+import com.google.api.services.youtube.model.ChannelListResponse;
+import com.google.api.services.youtube.model.CommentThread;
+import com.google.api.services.youtube.model.CommentThreadListResponse;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * This class holds non-blocking versions of some of the actions, used by the reactive endpoints
+ * (see ReactiveApiController).
+ * <br>The results have the same shape as the ones of ChannelActions and VideoActions, but the queries are sent
+ * with ReactiveYouTube, so no thread waits for YouTube: the request's thread is given back as soon as the queries
+ * are sent, and the response is written when they arrive.
+ * <br>The default channel is shared with the blocking actions through ChannelCache.
+ */
+public class ReactiveActions {
+    private static final int COMMENT_PAGE_SIZE = 100;
+    private static final int DEFAULT_COMMENTS = 200;
+    // The most videos the Data API returns per page, so all videos are streamed with as few queries as possible.
+    private static final int STREAM_PAGE_SIZE = 50;
+
+    private ReactiveActions() {
+    }
+
+    /**
+     * The channel's name, profile picture and ID, like ChannelActions.getChannelBasics().
+     *
+     * @param tr token response object received by the front end
+     * @return the channel's basic information + Http code 200, OR Http code 500
+     */
+    public static Mono<ResponseEntity<Object>> getChannelBasics(TokenResponse tr) {
+        return respond(defaultChannel(tr).map(channel -> Map.of(
+                "channel_name", channel.getSnippet().getTitle(),
+                "profile_picture_URL", channel.getSnippet().getThumbnails().getMedium().getUrl(),
+                "channelID", channel.getId())));
+    }
+
+    /**
+     * One page of the videos uploaded by the channel (10 videos per page), like VideoActions.getAllVideos().
+     *
+     * @param tr The authentication token.
+     * @param pageToken The page token of the wanted page, or null for the first page.
+     * @return the videos of the page with the previous and next page tokens + Http code 200, OR Http code 500
+     */
+    public static Mono<ResponseEntity<Object>> getAllVideos(TokenResponse tr, String pageToken) {
+        return respond(uploadsPage(tr, pageToken, 10)
+                .map(page -> VideoActions.shapeMapResult(page.getItems(), page)));
+    }
+
+    /**
+     * Streams every video uploaded by the channel, one page (in the shape of getAllVideos()) at a time.
+     * <br>Each page is sent as soon as it arrives, while the next one is queried.
+     *
+     * @param tr The authentication token.
+     * @return the pages of videos. If a page other than the first fails, the stream ends with a {"error": "..."}.
+     */
+    public static Flux<Object> streamVideoPages(TokenResponse tr) {
+        return endWithErrorLine(uploadsPage(tr, null, STREAM_PAGE_SIZE)
+                .expand(page -> page.getNextPageToken() == null ? Mono.empty()
+                        : uploadsPage(tr, page.getNextPageToken(), STREAM_PAGE_SIZE))
+                .map(page -> VideoActions.shapeMapResult(page.getItems(), page)));
+    }
+
+    /**
+     * Up to 200 comments of a video, like VideoActions.get200Comments().
+     *
+     * @param tr The authentication token.
+     * @param videoID The video to get the comments from.
+     * @return the comments + Http code 200, OR Http code 500
+     */
+    public static Mono<ResponseEntity<Object>> get200Comments(TokenResponse tr, String videoID) {
+        return respond(comments(tr, videoID, DEFAULT_COMMENTS).collectList());
+    }
+
+    /**
+     * Streams up to a given number of comments of a video, one at a time, like VideoActions.streamComments().
+     * <br>The comments of each page are sent as soon as it arrives, while the next one is queried.
+     *
+     * @param tr The authentication token.
+     * @param videoID The video to get the comments from.
+     * @param maxComments The number of comments wanted, or null for the default. It is capped at the configured
+     *                    maximum (see VideoActions.setMaxCommentLimit()).
+     * @return the comments. If a page other than the first fails, the stream ends with a {"error": "..."}.
+     */
+    public static Flux<Object> streamComments(TokenResponse tr, String videoID, Integer maxComments) {
+        int limit = Math.max(1, Math.min(maxComments == null ? DEFAULT_COMMENTS : maxComments,
+                VideoActions.getMaxCommentLimit()));
+        return endWithErrorLine(comments(tr, videoID, limit));
+    }
+
+    /**
+     * The default channel of the user, from the cache or queried once for all concurrent requests.
+     */
+    static Mono<Channel> defaultChannel(TokenResponse tr) {
+        String token = tr.getAccessToken();
+        return Mono.defer(() -> Mono.fromFuture(ChannelCache.getAsync(ChannelCache.hashToken(token), () ->
+                ReactiveYouTube.data("channels.list", token, "channels", Map.of(
+                                "part", "id,snippet,statistics,contentDetails",
+                                "mine", true,
+                                "fields", "items(id,snippet,statistics,contentDetails)"), ChannelListResponse.class)
+                        .flatMap(channels -> channels.getItems() == null || channels.getItems().isEmpty()
+                                ? Mono.error(new IOException("The user has no channel."))
+                                : Mono.just(channels.getItems().get(0)))
+                        .toFuture())
+                // A request that goes away must not cancel the query the other requests are waiting for.
+                .copy()));
+    }
+
+    private static Mono<PlaylistItemListResponse> uploadsPage(TokenResponse tr, String pageToken, int pageSize) {
+        return defaultChannel(tr).flatMap(channel -> {
+            Map<String, Object> params = new HashMap<>();
+            params.put("part", "snippet,status");
+            params.put("playlistId", channel.getContentDetails().getRelatedPlaylists().getUploads());
+            params.put("maxResults", pageSize);
+            params.put("pageToken", pageToken);
+            return ReactiveYouTube.data("playlistItems.list", tr.getAccessToken(), "playlistItems", params,
+                    PlaylistItemListResponse.class);
+        });
+    }
+
+    /**
+     * The comments of a video, with the pages queried one after another until there are enough.
+     */
+    private static Flux<VideoActions.CommentItem> comments(TokenResponse tr, String videoID, int limit) {
+        return commentPage(tr, videoID, null, limit)
+                .expand(page -> page.remaining() <= 0 || page.response().getNextPageToken() == null ? Mono.empty()
+                        : commentPage(tr, videoID, page.response().getNextPageToken(), page.remaining()))
+                .concatMapIterable(page -> VideoActions.shapeCommentResult(page.items()))
+                .take(limit);
+    }
+
+    private static Mono<CommentPage> commentPage(TokenResponse tr, String videoID, String pageToken, int remaining) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("part", "snippet");
+        params.put("videoId", videoID);
+        params.put("maxResults", Math.min(COMMENT_PAGE_SIZE, remaining));
+        params.put("pageToken", pageToken);
+        return ReactiveYouTube.data("commentThreads.list", tr.getAccessToken(), "commentThreads", params,
+                        CommentThreadListResponse.class)
+                .map(response -> {
+                    List<CommentThread> items = response.getItems() == null ? List.of() : response.getItems();
+                    return new CommentPage(response, items, remaining - items.size());
+                });
+    }
+
+    /**
+     * A page of comments, and how many more comments are wanted after it.
+     */
+    private record CommentPage(CommentThreadListResponse response, List<CommentThread> items, int remaining) {
+    }
+
+    /**
+     * Turns a result into the response the blocking actions would give: 200 with the result, or 500 if a query
+     * failed.
+     */
+    private static Mono<ResponseEntity<Object>> respond(Mono<?> result) {
+        return result.<ResponseEntity<Object>>map(body -> new ResponseEntity<>(body, HttpStatus.OK))
+                .onErrorResume(IOException.class, ex -> Mono.just(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR)));
+    }
+
+    /**
+     * Ends a stream with a line of the shape {"error": "..."} when a query fails after something was sent. A failure
+     * before that is passed on, so it still results in an HTTP error.
+     */
+    private static Flux<Object> endWithErrorLine(Flux<?> items) {
+        return Flux.defer(() -> {
+            AtomicBoolean started = new AtomicBoolean();
+            return items.<Object>map(item -> item)
+                    .doOnNext(item -> started.set(true))
+                    .onErrorResume(IOException.class, ex -> started.get()
+                            ? Flux.just(Map.of("error", String.valueOf(ex.getMessage())))
+                            : Flux.error(ex));
+        });
+    }
+}
@@ -0,0 +1,225 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.googleapis.json.GoogleJsonErrorContainer;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import com.google.api.client.json.JsonFactory;
+import com.google.api.client.json.jackson2.JacksonFactory;
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutException;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.util.retry.Retry;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class queries the YouTube Data v3 and Analytics v2 REST endpoints without blocking, for the reactive
+ * actions (see ReactiveActions).
+ * <br>The responses are parsed into the same model classes the Google clients return, and every query gets the
+ * same treatment as one sent through Actions.execute(): it is charged to the quota (see QuotaScheduler), rate
+ * limited, sent again after temporary failures and rejected while its API is failing (see UpstreamResilience),
+ * and timed in the "youtube.upstream.calls" timer. Only the waiting is done with timers instead of sleeping.
+ * <br>Failed responses are turned into the exceptions the Google clients throw (GoogleJsonResponseException),
+ * so the outcome, quota and retry decisions are the same for both.
+ */
+public class ReactiveYouTube {
+    private static final JsonFactory JSON_FACTORY = new JacksonFactory();
+    private static final int MAX_RESPONSE_BYTES = 16 * 1024 * 1024;
+
+    private static volatile Client client = Client.create(null, Duration.ofSeconds(20), Duration.ofSeconds(20), 50);
+
+    private ReactiveYouTube() {
+    }
+
+    /**
+     * The HTTP client and the URLs of both APIs.
+     */
+    private record Client(WebClient web, ConnectionProvider connections, String dataRoot, String analyticsRoot,
+                          Duration readTimeout) {
+
+        static Client create(String rootUrl, Duration connectTimeout, Duration readTimeout, int maxConnections) {
+            ConnectionProvider connections = ConnectionProvider.builder("youtube-reactive")
+                    .maxConnections(maxConnections)
+                    .pendingAcquireMaxCount(-1)
+                    .build();
+            HttpClient http = HttpClient.create(connections)
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) connectTimeout.toMillis())
+                    .responseTimeout(readTimeout);
+            WebClient web = WebClient.builder()
+                    .clientConnector(new ReactorClientHttpConnector(http))
+                    .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_RESPONSE_BYTES))
+                    .build();
+            return new Client(web, connections,
+                    rootUrl != null ? rootUrl : YouTube.DEFAULT_ROOT_URL,
+                    rootUrl != null ? rootUrl : YouTubeAnalytics.DEFAULT_ROOT_URL,
+                    readTimeout);
+        }
+    }
+
+    /**
+     * Replaces the HTTP client used by the queries started from now on, and closes the connections of the old one.
+     *
+     * @param rootUrl the root URL of both APIs ending with "/", or null to use Google's default URLs.
+     * @param connectTimeout how long connecting to the API may take.
+     * @param readTimeout how long waiting for a response may take.
+     * @param maxConnections the most connections open at the same time (further queries wait for one).
+     */
+    public static void configure(String rootUrl, Duration connectTimeout, Duration readTimeout, int maxConnections) {
+        Client old = client;
+        client = Client.create(rootUrl, connectTimeout, readTimeout, maxConnections);
+        old.connections().disposeLater().subscribe();
+    }
+
+    /**
+     * Closes the open connections.
+     */
+    public static void shutdown() {
+        client.connections().disposeLater().subscribe();
+    }
+
+    /**
+     * Queries a Data API method, e.g. data("channels.list", token, "channels", params, ChannelListResponse.class).
+     *
+     * @param call the name of the API method, e.g. "channels.list".
+     * @param accessToken the access token of the user.
+     * @param resource the path of the method after "youtube/v3/", e.g. "channels".
+     * @param params the query parameters, e.g. "part" and "mine" (null values are left out).
+     * @param type the class of the parsed response.
+     * @return the parsed response, once it arrived.
+     */
+    public static <T> Mono<T> data(String call, String accessToken, String resource, Map<String, Object> params,
+                                   Class<T> type) {
+        Client current = client;
+        return get(current, call, accessToken, current.dataRoot() + "youtube/v3/" + resource, params, type);
+    }
+
+    /**
+     * Queries reports.query of the Analytics API.
+     *
+     * @param accessToken the access token of the user.
+     * @param params the query parameters, e.g. "ids", "metrics", "startDate" and "endDate".
+     * @param type the class of the parsed response.
+     * @return the parsed response, once it arrived.
+     */
+    public static <T> Mono<T> reports(String accessToken, Map<String, Object> params, Class<T> type) {
+        Client current = client;
+        return get(current, "reports.query", accessToken, current.analyticsRoot() + "v2/reports", params, type);
+    }
+
+    private static <T> Mono<T> get(Client current, String call, String accessToken, String url,
+                                   Map<String, Object> params, Class<T> type) {
+        UriComponentsBuilder uri = UriComponentsBuilder.fromHttpUrl(url);
+        params.forEach((name, value) -> {
+            if(value != null) uri.queryParam(name, value);
+        });
+        URI target = uri.encode().build().toUri();
+        String userKey = ChannelCache.hashToken(accessToken);
+
+        return Mono.defer(() -> {
+            AtomicInteger tried = new AtomicInteger();
+            return Mono.defer(() -> attempt(current, call, accessToken, userKey, target, type))
+                    .retryWhen(Retry.from(failures -> failures.concatMap(failure -> {
+                        long delay = failure.failure() instanceof IOException io
+                                ? UpstreamResilience.retryDelay(call, tried.incrementAndGet(), io) : -1;
+                        if(delay < 0) return Mono.error(failure.failure());
+                        return Mono.delay(Duration.ofMillis(delay));
+                    })));
+        });
+    }
+
+    /**
+     * Sends the query once, after taking its quota and its token from the rate limit.
+     */
+    private static <T> Mono<T> attempt(Client current, String call, String accessToken, String userKey,
+                                       URI target, Class<T> type) {
+        long wait;
+        try{
+            // The quota is taken before every attempt, YouTube charges for failed queries too.
+            QuotaScheduler.acquire(call, userKey);
+            wait = UpstreamResilience.admit(call);
+        }
+        catch(IOException ex){
+            return Mono.error(ex);
+        }
+
+        Mono<T> sent = Mono.defer(() -> {
+            long started = System.nanoTime();
+            return current.web().get()
+                    .uri(target)
+                    .headers(headers -> headers.setBearerAuth(String.valueOf(accessToken)))
+                    .exchangeToMono(response -> read(response, type))
+                    .timeout(current.readTimeout())
+                    .onErrorMap(ex -> !(ex instanceof IOException), ReactiveYouTube::toIOException)
+                    .doOnSuccess(result -> {
+                        UpstreamResilience.record(call, null);
+                        Actions.callTimer(call, "success").record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    })
+                    .doOnError(IOException.class, ex -> {
+                        QuotaScheduler.recordFailure(ex);
+                        UpstreamResilience.record(call, ex);
+                        Actions.callTimer(call, Actions.outcomeOf(ex)).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+                    });
+        });
+        return wait > 0 ? Mono.delay(Duration.ofNanos(wait)).then(sent) : sent;
+    }
+
+    private static <T> Mono<T> read(ClientResponse response, Class<T> type) {
+        return response.bodyToMono(String.class).defaultIfEmpty("").flatMap(body -> {
+            try{
+                if(response.statusCode().is2xxSuccessful()) return Mono.just(JSON_FACTORY.fromString(body, type));
+                return Mono.error(toResponseException(response, body));
+            }
+            catch(IOException ex){
+                return Mono.error(ex);
+            }
+        });
+    }
+
+    /**
+     * Turns a failed response into the exception the Google clients would have thrown for it.
+     */
+    private static IOException toResponseException(ClientResponse response, String body) {
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().asHttpHeaders().forEach(headers::set);
+        HttpResponseException.Builder builder = new HttpResponseException.Builder(response.rawStatusCode(),
+                null, headers).setContent(body);
+        try{
+            GoogleJsonErrorContainer error = JSON_FACTORY.fromString(body, GoogleJsonErrorContainer.class);
+            if(error != null && error.getError() != null){
+                builder.setMessage(response.rawStatusCode() + "\n" + body);
+                return new GoogleJsonResponseException(builder, error.getError());
+            }
+        }
+        catch(IOException | IllegalArgumentException ex){
+            // Not a JSON error, e.g. a proxy's error page.
+        }
+        return builder.setMessage(response.rawStatusCode() + " " + body).build();
+    }
+
+    private static IOException toIOException(Throwable ex) {
+        Throwable cause = ex instanceof WebClientRequestException ? ex.getCause() : ex;
+        // Timeouts are told apart from other failures, like the Google clients do, since they are worth retrying.
+        if(cause instanceof TimeoutException || cause instanceof ReadTimeoutException){
+            return new SocketTimeoutException("No response within the read timeout.");
+        }
+        if(cause instanceof IOException io) return io;
+        return new IOException(ex.getMessage(), ex);
+    }
+}
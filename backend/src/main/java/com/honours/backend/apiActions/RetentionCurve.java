@@ -0,0 +1,106 @@
+package com.honours.backend.apiActions;
+
+import java.util.List;
+
+/**
+ * This class holds the retention curve of a video, i.e. the audienceWatchRatio and relativeRetentionPerformance
+ * for each "elapsedVideoTimeRatio" point (usually 100 of them), in two primitive arrays.
+ * <br>The declines the video advice looks at are calculated once, when the curve is built, and the arrays are
+ * serialised to JSON as they are, so the retention part of a request only needs a handful of objects.
+ */
+public final class RetentionCurve {
+    // The points are analysed in segments of 10, the first segment being the intro of the video.
+    private static final int SEGMENT = 10;
+    // The API returns values like 0.64, which doubles can not hold exactly, so 0.94 - 0.64 may end up just under 0.3.
+    private static final double EPSILON = 1e-9;
+
+    private static final RetentionCurve EMPTY = new RetentionCurve(new double[0], new double[0]);
+
+    private final double[] watchRatio;
+    private final double[] relativePerformance;
+    private final double introDecline;
+    private final double biggestSegmentDecline;
+
+    private RetentionCurve(double[] watchRatio, double[] relativePerformance) {
+        this.watchRatio = watchRatio;
+        this.relativePerformance = relativePerformance;
+
+        // The decline of a segment is how much lower its last point is than its first one.
+        this.introDecline = watchRatio.length >= SEGMENT ? watchRatio[0] - watchRatio[SEGMENT - 1] : 0;
+        double biggest = 0;
+        for (int i = SEGMENT; i + SEGMENT - 1 < watchRatio.length; i += SEGMENT) {
+            biggest = Math.max(biggest, watchRatio[i] - watchRatio[i + SEGMENT - 1]);
+        }
+        this.biggestSegmentDecline = biggest;
+    }
+
+    /**
+     * Builds the curve from the rows of a "reports.query" with the "elapsedVideoTimeRatio" dimension and the
+     * metrics "audienceWatchRatio,relativeRetentionPerformance".
+     *
+     * @param rows the rows of the response (null or empty if there is not enough data for the video yet).
+     * @return the retention curve, empty if there were no rows.
+     */
+    public static RetentionCurve fromRows(List<List<Object>> rows) {
+        if(rows == null || rows.isEmpty()) return EMPTY;
+
+        double[] watchRatio = new double[rows.size()];
+        double[] relativePerformance = new double[rows.size()];
+        for (int i = 0; i < rows.size(); i++) {
+            List<Object> row = rows.get(i);
+            watchRatio[i] = asDouble(row.get(1));
+            relativePerformance[i] = asDouble(row.get(2));
+        }
+        return new RetentionCurve(watchRatio, relativePerformance);
+    }
+
+    /**
+     * Builds the curve from already known values, e.g. in tests and benchmarks.
+     */
+    public static RetentionCurve of(double[] watchRatio, double[] relativePerformance) {
+        return new RetentionCurve(watchRatio.clone(), relativePerformance.clone());
+    }
+
+    public boolean isEmpty() {
+        return watchRatio.length == 0;
+    }
+
+    public int size() {
+        return watchRatio.length;
+    }
+
+    /**
+     * @return whether the viewership drops by at least the given ratio (e.g. 0.3 for 30%) during the intro,
+     * i.e. the first 10% of the video.
+     */
+    public boolean hasIntroDecline(double ratio) {
+        return watchRatio.length >= SEGMENT && introDecline >= ratio - EPSILON;
+    }
+
+    /**
+     * @return whether the viewership drops by at least the given ratio (e.g. 0.2 for 20%) within any 10% of the
+     * video after the intro.
+     */
+    public boolean hasSegmentDecline(double ratio) {
+        return watchRatio.length >= 2 * SEGMENT && biggestSegmentDecline >= ratio - EPSILON;
+    }
+
+    /**
+     * The audienceWatchRatio values. The array is returned as it is (it is only read, when serialised to JSON).
+     */
+    public double[] watchRatio() {
+        return watchRatio;
+    }
+
+    /**
+     * The relativeRetentionPerformance values. The array is returned as it is (it is only read, when serialised to JSON).
+     */
+    public double[] relativePerformance() {
+        return relativePerformance;
+    }
+
+    // The API's numbers are usually parsed as BigDecimal, but anything printing as a number is accepted.
+    private static double asDouble(Object value) {
+        return value instanceof Number n ? n.doubleValue() : Double.parseDouble(value.toString());
+    }
+}
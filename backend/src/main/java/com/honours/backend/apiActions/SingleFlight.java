@@ -0,0 +1,71 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+
+import java.io.IOException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * This class loads missing cache entries so that concurrent misses for the same key share a single upstream call.
+ * <br>A synchronous Caffeine cache runs the loader inside the map's lock, which blocks the thread that holds it
+ * for the whole query (and, on a virtual thread, the carrier thread under it too). Here only an empty future is
+ * put in the cache under the lock. The request that put it then runs the query without holding any lock, and
+ * the other requests wait for the future.
+ */
+final class SingleFlight {
+
+    /**
+     * A query that loads a missing entry.
+     */
+    @FunctionalInterface
+    interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    private SingleFlight() {
+    }
+
+    /**
+     * Gets a cached value, or loads it if it is missing. A failed load is not cached (Caffeine removes futures
+     * that complete exceptionally), so the next request tries again.
+     *
+     * @param cache the cache (built with buildAsync()).
+     * @param key the key of the value.
+     * @param loader the query run when the value is missing and nobody else is loading it yet.
+     * @return the cached or loaded value.
+     * @throws IOException if the load (this request's or the one it waited for) failed.
+     */
+    static <K, V> V get(AsyncCache<K, V> cache, K key, Loader<V> loader) throws IOException {
+        CompletableFuture<V> mine = new CompletableFuture<>();
+        CompletableFuture<V> value = cache.get(key, (k, executor) -> mine);
+
+        if(value == mine){
+            try{
+                mine.complete(loader.load());
+            }
+            catch(Throwable ex){
+                // Whatever went wrong, the requests waiting for this load must not wait forever.
+                mine.completeExceptionally(ex);
+                throw ex;
+            }
+        }
+        return await(value);
+    }
+
+    private static <V> V await(CompletableFuture<V> value) throws IOException {
+        try{
+            return value.join();
+        }
+        catch(CancellationException ex){
+            throw new IOException("The shared query was cancelled.", ex);
+        }
+        catch(CompletionException ex){
+            Throwable cause = ex.getCause();
+            if(cause instanceof IOException io) throw io;
+            if(cause instanceof RuntimeException runtime) throw runtime;
+            throw new IOException(cause);
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.honours.backend.apiActions;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class holds the bounded thread pool used to run independent YouTube API queries at the same time.
+ * <br>The pool has a fixed number of threads and a bounded queue. When both are full, the task is run by the
+ * calling thread instead, which slows down the caller rather than dropping work or growing without limit.
+ * <br>In the virtual-thread mode (see ThreadingConfig) the queries run on a virtual thread each instead, and the
+ * rate limiter and quota in UpstreamResilience and QuotaScheduler are what bound them.
+ * <br>A query whose result is no longer wanted (its future was cancelled or timed out, see Actions.failFast()) is
+ * stopped: if it is still queued it never runs, otherwise its thread is interrupted and the HTTP request it is
+ * sending is aborted (see onCancel()), so it does not hold a thread and a connection until the read timeout.
+ */
+public class UpstreamPool {
+    private static final int THREADS = 16;
+    private static final int QUEUE_SIZE = 256;
+
+    private static final ExecutorService PLATFORM_POOL = new ThreadPoolExecutor(
+            THREADS, THREADS, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(QUEUE_SIZE),
+            namedDaemonThreads(),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
+    private static volatile ExecutorService pool = PLATFORM_POOL;
+
+    // The query running on the current thread, if it was started with submit().
+    private static final ThreadLocal<Running> RUNNING = new ThreadLocal<>();
+
+    /**
+     * A started query, and how to abort the HTTP request it is sending at the moment.
+     */
+    private static final class Running {
+        private volatile boolean cancelled;
+        private volatile Runnable abort;
+
+        private void cancel() {
+            cancelled = true;
+            Runnable current = abort;
+            if (current != null) current.run();
+        }
+    }
+
+    /**
+     * A task that queries the YouTube APIs and may fail with an IOException.
+     *
+     * @param <T> the type of the query result.
+     */
+    @FunctionalInterface
+    public interface UpstreamCall<T> {
+        T call() throws Exception;
+    }
+
+    /**
+     * Starts a query on the shared pool.
+     * <br>Cancelling the returned future (or completing it with a TimeoutException, e.g. with orTimeout()) stops the
+     * query: it is interrupted, and the HTTP request it is sending is aborted.
+     *
+     * @param call the query to run.
+     * @return a future completed with the query's result, or exceptionally with the exception it threw.
+     */
+    public static <T> CompletableFuture<T> submit(UpstreamCall<T> call) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        // The query keeps the quota priority of the code that started it.
+        QuotaScheduler.Priority priority = QuotaScheduler.currentPriority();
+        Running running = new Running();
+        Future<?> task = pool.submit(() -> {
+            // A task that was cancelled while still queued does not need to run at all.
+            if (future.isDone()) return;
+            Running outer = RUNNING.get();
+            RUNNING.set(running);
+            try{
+                future.complete(QuotaScheduler.withPriority(priority, call::call));
+            }
+            catch(Exception ex){
+                future.completeExceptionally(ex);
+            }
+            finally{
+                RUNNING.set(outer);
+            }
+        });
+        future.whenComplete((result, ex) -> {
+            // Only a result given up on from the outside, the query's own failure has already stopped it.
+            if (ex instanceof CancellationException || ex instanceof TimeoutException) {
+                running.cancel();
+                task.cancel(true);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Registers how to abort the HTTP request the current query is about to send, so cancelling the query also
+     * closes the request's connection instead of waiting for the response (see UpstreamTransport). Every request
+     * replaces the one before, e.g. when a query is sent again after a failure.
+     * <br>Does nothing on a thread that is not running a query started with submit().
+     *
+     * @param abort aborts the request. It may be called more than once, and after the request has completed.
+     */
+    static void onCancel(Runnable abort) {
+        Running running = RUNNING.get();
+        if (running == null) return;
+        running.abort = abort;
+        // The query may have been cancelled right before the request was registered.
+        if (running.cancelled) abort.run();
+    }
+
+    /**
+     * @return whether the query running on the current thread was cancelled, so it should not be sent again.
+     */
+    static boolean isCancelled() {
+        Running running = RUNNING.get();
+        return running != null && running.cancelled;
+    }
+
+    /**
+     * @return the pool itself, so its size, queue and completed tasks can be published as metrics.
+     */
+    public static ExecutorService executor() {
+        return pool;
+    }
+
+    /**
+     * Changes where queries are run. Queries already started keep running where they are.
+     *
+     * @param executor the executor to use, or null to go back to the bounded pool.
+     */
+    public static void setExecutor(ExecutorService executor) {
+        pool = executor == null ? PLATFORM_POOL : executor;
+    }
+
+    private static ThreadFactory namedDaemonThreads() {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, "upstream-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
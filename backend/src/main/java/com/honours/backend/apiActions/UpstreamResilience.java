@@ -0,0 +1,439 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.googleapis.json.GoogleJsonError;
+import com.google.api.client.googleapis.json.GoogleJsonResponseException;
+import com.google.api.client.http.HttpResponseException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class protects the back-end (and YouTube) from short upstream problems. Every query sent through
+ * Actions.execute() goes through it:
+ * <br>- Each API (the Data API and the Analytics API) has a token bucket, so no more than a set number of queries
+ * per second are sent to it. A query waits a little for a token, and is rejected if it would have to wait longer.
+ * <br>- Reads (".list" calls and "reports.query") that fail with a temporary error (429, 5xx, a timeout or a
+ * dropped connection) are tried again a few times, after a random ("jittered") and growing delay, so the retries
+ * of many requests are spread out instead of arriving at the same time.
+ * <br>- Each API has a circuit breaker. When too many of the latest queries failed with temporary errors, it opens
+ * and queries are rejected straight away for a while, instead of every request waiting for the same timeout.
+ * After that, a single query is let through to check if the API is back.
+ * <br>Retries, rejected queries and breaker trips are counted in "youtube.upstream.retries",
+ * "youtube.upstream.rejected" and "youtube.upstream.circuit.trips", and the breaker state is the
+ * "youtube.upstream.circuit.state" gauge (0 closed, 1 half-open, 2 open).
+ */
+public class UpstreamResilience {
+
+    /**
+     * Thrown instead of sending a query, when the API's breaker is open or its rate limit was reached.
+     */
+    public static class UpstreamUnavailableException extends IOException {
+        public UpstreamUnavailableException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * A single attempt at a query.
+     */
+    @FunctionalInterface
+    public interface Attempt<T> {
+        T run() throws IOException;
+    }
+
+    private static volatile Settings settings = new Settings(50, 50, Duration.ofSeconds(1), 3,
+            Duration.ofMillis(200), Duration.ofSeconds(2), 20, 0.5, Duration.ofSeconds(30));
+    private static final Map<String, Upstream> UPSTREAMS = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> COUNTERS = new ConcurrentHashMap<>();
+
+    private record Settings(double ratePerSecond, int burst, Duration maxWait, int maxAttempts, Duration baseDelay,
+                            Duration maxDelay, int window, double failureRate, Duration openFor) {
+    }
+
+    /**
+     * Changes the limits. The buckets and breakers start again from scratch.
+     *
+     * @param ratePerSecond the most queries per second sent to each API.
+     * @param burst how many queries may be sent at once after a quiet period.
+     * @param maxWait the longest a query waits for the rate limit before it is rejected.
+     * @param maxAttempts how many times a read is sent at most (1 means no retries).
+     * @param baseDelay the delay before the first retry (before the jitter), doubled for every further retry.
+     * @param maxDelay the longest delay between two attempts.
+     * @param window how many of the latest queries the breaker looks at.
+     * @param failureRate the share of failures (0 to 1) among them that opens the breaker.
+     * @param openFor how long the breaker stays open before a query is let through again.
+     */
+    public static void configure(double ratePerSecond, int burst, Duration maxWait, int maxAttempts,
+                                 Duration baseDelay, Duration maxDelay, int window, double failureRate,
+                                 Duration openFor) {
+        if(ratePerSecond <= 0 || burst < 1 || maxAttempts < 1 || window < 1 || failureRate <= 0 || failureRate > 1){
+            throw new IllegalArgumentException("Invalid upstream resilience settings.");
+        }
+        settings = new Settings(ratePerSecond, burst, maxWait, maxAttempts, baseDelay, maxDelay, window,
+                failureRate, openFor);
+        UPSTREAMS.values().forEach(Upstream::reset);
+    }
+
+    /**
+     * Sends a query with the rate limit, retries and circuit breaker of its API.
+     *
+     * @param call the name of the API method, e.g. "videos.list" or "reports.query".
+     * @param attempt sends the query once.
+     * @return the result of the first successful attempt.
+     * @throws IOException the failure of the last attempt, or an UpstreamUnavailableException if the query was
+     * rejected.
+     */
+    public static <T> T call(String call, Attempt<T> attempt) throws IOException {
+        for (int tried = 1; ; tried++) {
+            long wait = admit(call);
+            if(wait > 0) sleep(TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+
+            try{
+                T result = attempt.run();
+                record(call, null);
+                return result;
+            }
+            catch(IOException ex){
+                // A query cancelled while it was being sent (see UpstreamPool.submit()) failed because its request
+                // was aborted, which tells nothing about the API, and it is not sent again.
+                if(UpstreamPool.isCancelled()){
+                    upstream(apiOf(call)).breaker.release();
+                    throw ex;
+                }
+                record(call, ex);
+                long delay = retryDelay(call, tried, ex);
+                if(delay < 0) throw ex;
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * Lets a query through the breaker and rate limit of its API without waiting, for queries that must not
+     * block their thread (see ReactiveYouTube). The caller delays the query itself instead.
+     *
+     * @param call the name of the API method.
+     * @return how long to delay the query before sending it, in nanoseconds (0 to send it straight away).
+     * @throws UpstreamUnavailableException if the query was rejected.
+     */
+    static long admit(String call) throws UpstreamUnavailableException {
+        Upstream upstream = upstream(apiOf(call));
+        if(!upstream.breaker.allow()){
+            throw reject(upstream, "circuit_open", "The " + upstream.api + " API is unavailable, try again later.");
+        }
+        long wait = upstream.bucket.reserve(settings.maxWait());
+        if(wait < 0){
+            upstream.breaker.release();
+            throw reject(upstream, "rate_limited", "Too many queries to the " + upstream.api + " API right now.");
+        }
+        return wait;
+    }
+
+    /**
+     * Records how a query let through by admit() ended, for the breaker of its API.
+     *
+     * @param call the name of the API method.
+     * @param failure why the query failed, or null if it succeeded.
+     */
+    static void record(String call, IOException failure) {
+        CircuitBreaker breaker = upstream(apiOf(call)).breaker;
+        // Only failures of the API itself count, e.g. not a video that does not exist.
+        if(failure == null) breaker.record(true);
+        else if(isTemporary(failure)) breaker.record(false);
+        else breaker.release();
+    }
+
+    /**
+     * Decides whether a failed query is sent again, and counts the retry if it is.
+     *
+     * @param call the name of the API method.
+     * @param tried how many times the query was sent so far.
+     * @param failure why the last attempt failed.
+     * @return how long to wait before the next attempt in milliseconds, or -1 if the query is not sent again.
+     */
+    static long retryDelay(String call, int tried, IOException failure) {
+        Settings current = settings;
+        int attempts = isRead(call) ? current.maxAttempts() : 1;
+        if(!isTemporary(failure) || tried >= attempts) return -1;
+        count(apiOf(call), "youtube.upstream.retries", "Queries sent again after a temporary failure.", "call", call);
+        return delay(current, tried, failure);
+    }
+
+    /**
+     * @return the state of the API's breaker: "closed", "half_open" or "open".
+     */
+    public static String state(String api) {
+        return upstream(api).breaker.state().name().toLowerCase();
+    }
+
+    /**
+     * @return how many queries were sent again since startup.
+     */
+    public static double retries() {
+        return COUNTERS.entrySet().stream()
+                .filter(entry -> entry.getKey().startsWith("youtube.upstream.retries"))
+                .mapToDouble(entry -> entry.getValue().doubleValue())
+                .sum();
+    }
+
+    // The Analytics API has its own limits, every other call is a Data API call.
+    static String apiOf(String call) {
+        return call.startsWith("reports.") ? "analytics" : "data";
+    }
+
+    // Reads can be sent again safely, the actions do not make any other kind of call yet.
+    static boolean isRead(String call) {
+        return call.endsWith(".list") || call.equals("reports.query");
+    }
+
+    /**
+     * @return whether the failure may not happen again if the query is sent again a bit later.
+     */
+    static boolean isTemporary(IOException ex) {
+        if(ex instanceof UpstreamUnavailableException || ex instanceof QuotaScheduler.QuotaExceededException){
+            return false;
+        }
+        if(ex instanceof GoogleJsonResponseException response && response.getStatusCode() == 403){
+            // A 403 is usually final (e.g. no permission), except for the short term rate limits.
+            if(response.getDetails() == null || response.getDetails().getErrors() == null) return false;
+            for (GoogleJsonError.ErrorInfo error : response.getDetails().getErrors()) {
+                if("rateLimitExceeded".equals(error.getReason()) || "userRateLimitExceeded".equals(error.getReason())){
+                    return true;
+                }
+            }
+            return false;
+        }
+        if(ex instanceof HttpResponseException response){
+            return response.getStatusCode() == 429 || response.getStatusCode() >= 500;
+        }
+        // A query interrupted while waiting (e.g. cancelled by failFast()) is not sent again, a timed out one is.
+        if(ex instanceof InterruptedIOException && !(ex instanceof SocketTimeoutException)) return false;
+        return true;
+    }
+
+    /**
+     * The delay before the next attempt: a random time up to base * 2^(attempt - 1), capped at maxDelay
+     * ("full jitter"), or the time asked for by YouTube in a Retry-After header, if it is longer.
+     */
+    private static long delay(Settings current, int tried, IOException ex) {
+        long ceiling = Math.min(current.maxDelay().toMillis(), current.baseDelay().toMillis() << Math.min(tried - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+
+        if(ex instanceof HttpResponseException response && response.getHeaders() != null){
+            Object retryAfter = response.getHeaders().get("retry-after");
+            if(retryAfter instanceof Iterable<?> values && values.iterator().hasNext()) retryAfter = values.iterator().next();
+            try{
+                if(retryAfter != null){
+                    long asked = TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter.toString().trim()));
+                    delay = Math.max(delay, Math.min(asked, current.maxDelay().toMillis()));
+                }
+            }
+            catch(NumberFormatException ignored){
+                // Retry-After may also be a date, the jittered delay is used then.
+            }
+        }
+        return delay;
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try{
+            Thread.sleep(millis);
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to send a query again.");
+        }
+    }
+
+    // Used by tests that count the queries sent (1 turns the retries off).
+    static void setMaxAttempts(int maxAttempts) {
+        Settings c = settings;
+        settings = new Settings(c.ratePerSecond(), c.burst(), c.maxWait(), maxAttempts, c.baseDelay(), c.maxDelay(),
+                c.window(), c.failureRate(), c.openFor());
+    }
+
+    // Used by tests to start from closed breakers and full buckets.
+    static void reset() {
+        UPSTREAMS.values().forEach(Upstream::reset);
+    }
+
+    private static Upstream upstream(String api) {
+        return UPSTREAMS.computeIfAbsent(api, Upstream::new);
+    }
+
+    private static UpstreamUnavailableException reject(Upstream upstream, String reason, String message) {
+        count(upstream.api, "youtube.upstream.rejected", "Queries not sent because of the rate limit or an open breaker.",
+                "reason", reason);
+        return new UpstreamUnavailableException(message);
+    }
+
+    private static void count(String api, String name, String description, String tag, String value) {
+        COUNTERS.computeIfAbsent(name + '|' + api + '|' + value, key -> {
+            LongAdder adder = new LongAdder();
+            FunctionCounter.builder(name, adder, LongAdder::doubleValue)
+                    .description(description)
+                    .tag("api", api)
+                    .tag(tag, value)
+                    .register(Metrics.globalRegistry);
+            return adder;
+        }).increment();
+    }
+
+    /**
+     * The rate limit and breaker of one API.
+     */
+    private static final class Upstream {
+        private final String api;
+        private volatile TokenBucket bucket;
+        private volatile CircuitBreaker breaker;
+
+        private Upstream(String api) {
+            this.api = api;
+            reset();
+            Gauge.builder("youtube.upstream.circuit.state", this, upstream -> upstream.breaker.state().ordinal())
+                    .description("The state of the API's circuit breaker: 0 closed, 1 half-open, 2 open.")
+                    .tag("api", api)
+                    .register(Metrics.globalRegistry);
+        }
+
+        private void reset() {
+            Settings current = settings;
+            bucket = new TokenBucket(current.ratePerSecond(), current.burst());
+            breaker = new CircuitBreaker(api, current.window(), current.failureRate(), current.openFor());
+        }
+    }
+
+    /**
+     * Hands out up to "burst" tokens at once, refilled at "rate" tokens per second.
+     */
+    private static final class TokenBucket {
+        private final double ratePerNano;
+        private final int burst;
+        private double tokens;
+        private long refilledAt = System.nanoTime();
+
+        private TokenBucket(double ratePerSecond, int burst) {
+            this.ratePerNano = ratePerSecond / TimeUnit.SECONDS.toNanos(1);
+            this.burst = burst;
+            this.tokens = burst;
+        }
+
+        /**
+         * Takes a token if it comes within maxWait.
+         *
+         * @return how long to wait for the token in nanoseconds, or -1 if it would come later than maxWait
+         * (nothing is taken then).
+         */
+        private synchronized long reserve(Duration maxWait) {
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (now - refilledAt) * ratePerNano);
+            refilledAt = now;
+
+            // The token is taken now, even if it only exists in a while, so waiting queries keep their order.
+            long wait = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / ratePerNano);
+            if(wait > maxWait.toNanos()) return -1;
+            tokens -= 1;
+            return wait;
+        }
+    }
+
+    private enum State { CLOSED, HALF_OPEN, OPEN }
+
+    /**
+     * Opens when at least "failureRate" of the last "window" queries failed, and lets a single query through
+     * once it has been open for "openFor".
+     */
+    private static final class CircuitBreaker {
+        private final String api;
+        private final boolean[] outcomes;
+        private final int minimumCalls;
+        private final double failureRate;
+        private final long openForNanos;
+        private int next;
+        private int recorded;
+        private int failures;
+        private State state = State.CLOSED;
+        private long openedAt;
+        private boolean probing;
+
+        private CircuitBreaker(String api, int window, double failureRate, Duration openFor) {
+            this.api = api;
+            this.outcomes = new boolean[window];
+            // A couple of failures right after startup should not open the breaker.
+            this.minimumCalls = Math.max(1, window / 2);
+            this.failureRate = failureRate;
+            this.openForNanos = openFor.toNanos();
+        }
+
+        private synchronized State state() {
+            return state;
+        }
+
+        /**
+         * @return whether a query may be sent. In the half-open state, only one query is let through at a time.
+         */
+        private synchronized boolean allow() {
+            if(state == State.OPEN && System.nanoTime() - openedAt >= openForNanos){
+                state = State.HALF_OPEN;
+                probing = false;
+            }
+            if(state == State.OPEN) return false;
+            if(state == State.HALF_OPEN){
+                if(probing) return false;
+                probing = true;
+            }
+            return true;
+        }
+
+        // A query that was let through but ended without telling anything about the API (e.g. a 404).
+        private synchronized void release() {
+            probing = false;
+        }
+
+        private synchronized void record(boolean success) {
+            if(state == State.HALF_OPEN){
+                probing = false;
+                if(success) close();
+                else open();
+                return;
+            }
+            if(state == State.OPEN) return;
+
+            if(recorded == outcomes.length){
+                if(!outcomes[next]) failures--;
+            }
+            else{
+                recorded++;
+            }
+            outcomes[next] = success;
+            if(!success) failures++;
+            next = (next + 1) % outcomes.length;
+
+            if(recorded >= minimumCalls && failures >= failureRate * recorded) open();
+        }
+
+        private void open() {
+            state = State.OPEN;
+            openedAt = System.nanoTime();
+            count(api, "youtube.upstream.circuit.trips", "How many times the API's circuit breaker opened.",
+                    "state", "open");
+        }
+
+        private void close() {
+            state = State.CLOSED;
+            recorded = 0;
+            failures = 0;
+            next = 0;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.http.HttpTransport;
+import com.google.api.client.http.apache.v2.ApacheHttpTransport;
+import com.google.api.client.http.javanet.NetHttpTransport;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class holds the HTTP transport shared by every YouTube API connection, together with the
+ * timeouts applied to each request sent through it.
+ * <br>There are two kinds of transport:
+ * <br> - "pooled" keeps a pool of kept-alive connections to googleapis.com, so TLS handshakes are only paid when
+ * a new connection is needed. The pool size, the limit per host and the idle time after which connections are
+ * closed are all configurable.
+ * <br> - "simple" is the plain NetHttpTransport, which leaves connection reuse to the JDK.
+ * <br>Both register every request they send with UpstreamPool.onCancel(), so a query that is cancelled while waiting
+ * for its response gets its connection closed instead of holding it until the read timeout.
+ */
+public class UpstreamTransport {
+    private final HttpTransport transport;
+    private final PoolingHttpClientConnectionManager pool;
+    private final int connectTimeoutMillis;
+    private final int readTimeoutMillis;
+
+    private UpstreamTransport(HttpTransport transport, PoolingHttpClientConnectionManager pool,
+                              Duration connectTimeout, Duration readTimeout) {
+        this.transport = transport;
+        this.pool = pool;
+        this.connectTimeoutMillis = (int) connectTimeout.toMillis();
+        this.readTimeoutMillis = (int) readTimeout.toMillis();
+    }
+
+    /**
+     * Creates the plain JDK transport. This is what the application uses before (or without) any configuration.
+     *
+     * @param connectTimeout how long to wait for a connection to be established.
+     * @param readTimeout how long to wait for data once connected.
+     * @return a transport without a connection pool.
+     */
+    public static UpstreamTransport simple(Duration connectTimeout, Duration readTimeout) {
+        NetHttpTransport transport = new NetHttpTransport.Builder()
+                .setConnectionFactory(url -> {
+                    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+                    UpstreamPool.onCancel(connection::disconnect);
+                    return connection;
+                })
+                .build();
+        return new UpstreamTransport(transport, null, connectTimeout, readTimeout);
+    }
+
+    /**
+     * Creates a transport backed by a pool of kept-alive connections.
+     *
+     * @param maxTotal the maximum number of open connections in total.
+     * @param maxPerRoute the maximum number of open connections to a single host.
+     * @param connectTimeout how long to wait for a connection to be established.
+     * @param readTimeout how long to wait for data once connected.
+     * @param idleEviction connections that were idle for longer than this are closed.
+     * @return a pooled transport.
+     */
+    public static UpstreamTransport pooled(int maxTotal, int maxPerRoute, Duration connectTimeout,
+                                           Duration readTimeout, Duration idleEviction) {
+        PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager();
+        pool.setMaxTotal(maxTotal);
+        pool.setDefaultMaxPerRoute(maxPerRoute);
+        // Connections that were idle for a while are checked before being handed out again.
+        pool.setValidateAfterInactivity(1000);
+
+        // Same defaults as ApacheHttpTransport.newDefaultHttpClient(), except for the pool.
+        HttpClientBuilder client = ApacheHttpTransport.newDefaultHttpClientBuilder()
+                .setConnectionManager(pool)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectTimeout((int) connectTimeout.toMillis())
+                        .setConnectionRequestTimeout((int) connectTimeout.toMillis())
+                        .setSocketTimeout((int) readTimeout.toMillis())
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(idleEviction.toMillis(), TimeUnit.MILLISECONDS)
+                .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+                    // Aborting the request sent by ApacheHttpTransport closes its connection, or keeps it from being
+                    // sent at all if it has not been yet.
+                    if(request instanceof HttpRequestWrapper wrapper && wrapper.getOriginal() instanceof HttpUriRequest sent){
+                        UpstreamPool.onCancel(sent::abort);
+                    }
+                });
+
+        return new UpstreamTransport(new ApacheHttpTransport(client.build()), pool, connectTimeout, readTimeout);
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public int getReadTimeoutMillis() {
+        return readTimeoutMillis;
+    }
+
+    /**
+     * @return true if this transport keeps a connection pool (and poolStats() returns anything useful).
+     */
+    public boolean isPooled() {
+        return pool != null;
+    }
+
+    /**
+     * @return the number of leased, available and pending connections and the pool's maximum,
+     * or all zeros for the simple transport.
+     */
+    public PoolStats poolStats() {
+        return pool == null ? new PoolStats(0, 0, 0, 0) : pool.getTotalStats();
+    }
+
+    /**
+     * Closes every open connection. The transport can not be used afterwards.
+     */
+    public void shutdown() {
+        try{
+            transport.shutdown();
+        }
+        catch(IOException ex){
+            // Nothing else can be done with a transport that fails to close.
+        }
+    }
+}
@@ -1,21 +1,47 @@
 package com.honours.backend.apiActions;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.services.youtube.YouTube;
 import com.google.api.services.youtube.model.*;
-import com.google.api.services.youtubeAnalytics.v2.model.QueryResponse;
+import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class VideoActions extends Actions{
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+    // Every line is flushed with its page rather than on its own (see writeCommentPages()).
+    private static final ObjectWriter NDJSON_WRITER = new ObjectMapper().writer()
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    private static final int COMMENT_PAGE_SIZE = 100;
+    private static final int DEFAULT_COMMENTS = 200;
+    private static final int MAX_INDEX_PAGE_SIZE = 100;
+    private static final int MAX_TOP_VIDEOS = 50;
+    // The most video IDs sent in a single analytics filter (and rows returned for a "video" dimension query).
+    private static final int ANALYTICS_BATCH_SIZE = 200;
+    // The most video IDs videos.list accepts at once.
+    private static final int VIDEOS_LIST_BATCH_SIZE = 50;
+    // The most audience retention queries of a batch analysis running at the same time.
+    private static final int RETENTION_LANES = 4;
+    private static volatile int maxCommentLimit = 5000;
+
     /**
      * A method that queries the latest video uploaded by the default channel of the
      * logged-in user and returns some basic data about it.
@@ -25,67 +51,66 @@ public class VideoActions extends Actions{
      * <br> This is just basic information such as average view duration, views, title, and thumbnail.
      */
     public static ResponseEntity<Object> getLastVideoPerformance(TokenResponse tr){
-        makeYtObjects(tr);
+        YtClients clients = makeYtObjects(tr);
         try{
-            // Setting up and getting the latest video (it's the newest element in the uploads playlist)
-            Channel defC = getDefaultChannel();
-            String uploads = defC.getContentDetails().getRelatedPlaylists().getUploads();
-
-            PlaylistItem latestVideo = yt.playlistItems().list(List.of("snippet"))
-                    .set("channelID",defC.getId())
-                    .setPlaylistId(uploads)
-                    .setMaxResults(Long.valueOf("1"))
-                    .set("order","date")
-                    .set("type","video")
-                    .execute().getItems().get(0);
-
-            // Setting up a timeframe (from video upload (- 1 year) until now)
-
-            LocalDate now = LocalDate.now();
-            String uploaded_date = latestVideo.getSnippet().getPublishedAt().toString().substring(0,10);
-            String today = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
-
-            // Getting the metrics for the timeframe
-            QueryResponse response = ytAnalytics.reports().query()
-                    .setIds("channel=="+defC.getId())
-                    .setStartDate(uploaded_date)
-                    .setEndDate(today)
-                    .setMetrics("averageViewDuration,views")
-                    .setFilters("video=="+latestVideo.getSnippet().getResourceId().getVideoId())
-                    .execute();
-
-
-            // Storing the results as a json object (e.g.: { "AVD": 56; ..... })
-            String avd;
-            String views;
-            try{
-                /* There is the following issue in the YT API.
-                   Sometimes, a video exists but the metrics for it are not returned in the query.
-                   Usually happens when a video is new, or there is not enough data for it yet.
-                 */
-                avd = response.getRows().get(0).get(0).toString();
-                views = response.getRows().get(0).get(1).toString();
-            }
-            catch (IndexOutOfBoundsException ex){
-                // if we encounter that error, set the metrics to 0.
-                avd = "0";
-                views = "0";
-            }
-
-            Map<String,String> results = new HashMap<>(
-                    Map.of("AVD",avd,
-                           "views", views,
-                           "thumbnail_URL",latestVideo.getSnippet().getThumbnails().getHigh().getUrl(),
-                           "title", latestVideo.getSnippet().getTitle())
-            );
-
-            return new ResponseEntity<>(results, HttpStatus.OK);
+            Channel defC = getDefaultChannel(clients);
+            return new ResponseEntity<>(queryLastVideoPerformance(clients, defC), HttpStatus.OK);
         }
         catch (IOException ex){
-            return new ResponseEntity<>("A server error occurred.",HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>(new ApiError("A server error occurred."),HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Queries the latest video uploaded by a channel and some basic metrics about it.
+     *
+     * @param clients the API objects for the current request.
+     * @param defC the default channel of the logged-in user (see getDefaultChannel()).
+     * @return average view duration, views, title, and thumbnail of the latest video.
+     * @throws IOException if any of the queries failed.
+     */
+    static Map<String,String> queryLastVideoPerformance(YtClients clients, Channel defC) throws IOException {
+        // Setting up and getting the latest video (it's the newest element in the uploads playlist)
+        String uploads = defC.getContentDetails().getRelatedPlaylists().getUploads();
+
+        PlaylistItem latestVideo = execute("playlistItems.list", clients.userKey(),
+                clients.yt().playlistItems().list(List.of("snippet"))
+                        .set("channelID",defC.getId())
+                        .setPlaylistId(uploads)
+                        .setMaxResults(Long.valueOf("1"))
+                        .set("order","date")
+                        .set("type","video")).getItems().get(0);
+
+        // Setting up a timeframe (from video upload until now)
+        LocalDate now = MetricsStore.today();
+        LocalDate uploaded_date = LocalDate.parse(latestVideo.getSnippet().getPublishedAt().toString().substring(0,10));
+
+        /* Getting the daily views and watch time since the upload. Only the days not stored yet are queried
+           (see MetricsStore), and the average view duration is worked out from the totals, since averages
+           can not be added up day by day. */
+        MetricsStore.Daily daily = MetricsStore.daily(clients, defC.getId(), "views,estimatedMinutesWatched",
+                "video=="+latestVideo.getSnippet().getResourceId().getVideoId(), uploaded_date, now);
+
+        // Storing the results as a json object (e.g.: { "AVD": 56; ..... })
+        /* There is the following issue in the YT API.
+           Sometimes, a video exists but the metrics for it are not returned in the query.
+           Usually happens when a video is new, or there is not enough data for it yet.
+           In that case, the metrics are 0.
+         */
+        long totalViews = Math.round(daily.total(0));
+        String avd = totalViews == 0 ? "0" : String.valueOf(Math.round(daily.total(1) * 60 / totalViews));
+        String views = String.valueOf(totalViews);
+
+        Map<String,String> results = new HashMap<>(
+                Map.of("AVD",avd,
+                       "views", views,
+                       "thumbnail_URL",latestVideo.getSnippet().getThumbnails().getHigh().getUrl(),
+                       "title", latestVideo.getSnippet().getTitle())
+        );
+
+        return results;
+    }
+
     /**
      * Given a video, this method queries the YouTube API and gets multiple important metrics.
      *
@@ -96,101 +121,246 @@ public class VideoActions extends Actions{
      * <br><b>The returned value also includes the appropriate HTTP code.</b>
      */
     public static ResponseEntity<Object> getVideoPerformance(TokenResponse tr, String videoID){
-        makeYtObjects(tr);
+        YtClients clients = makeYtObjects(tr);
+        // The latest video may already have been analysed when the user signed in.
+        ResponseEntity<Object> warmed = WarmUp.prefetched(clients.userKey(), "vidAnalysis:" + videoID);
+        if(warmed != null) return warmed;
         try{
+            // The analytics are cached for the signed-in user's channel (see AnalyticsCache).
+            String channelID = getDefaultChannel(clients).getId();
+
             // Getting the video
-            Video current_video = yt.videos().list(List.of("snippet","statistics","status"))
-                    .setId(List.of(videoID))
-                    .execute().getItems().get(0);
+            Video current_video = execute("videos.list", clients.userKey(),
+                    clients.yt().videos().list(List.of("snippet","statistics","status"))
+                            .setId(List.of(videoID))).getItems().get(0);
 
             // Setting a timeframe for the entire existence of this video.
             LocalDate now = LocalDate.now();
-            String uploaded_date = current_video.getSnippet().getPublishedAt().toString().substring(0,10);
+            String uploaded_date = uploadDate(current_video);
             String today = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
 
-            // This query gets the overtime metrics during the video's execution.
-            List<List<Object>> overtimeMetrics = ytAnalytics.reports().query()
-                    .setIds("channel==MINE")
-                    .setFilters("video==" + videoID)
-                    .setDimensions("elapsedVideoTimeRatio")
-                    .setStartDate(uploaded_date)
-                    .setEndDate(today)
-                    .setMetrics("audienceWatchRatio,relativeRetentionPerformance")
-                    .execute().getRows();
-
-
-            // Storing the two metrics into different variables to avoid confusion.
-            List<Object> awr = new ArrayList<>();
-            List<Object> rrp = new ArrayList<>();
-
-            /* If there isn't enough overtime data for this video, the overtimeMetrics will be an empty array.
-            * If that's the case , return an empty array that will be checked in the front-end.
-            * Based on whether an array is empty or not, the analysis displayed will correspond.
-            * */
-            if(!overtimeMetrics.isEmpty()){
-                for (List<Object> l : overtimeMetrics) {
-                    awr.add(l.get(1));
-                    rrp.add(l.get(2));
-                }
-            }
-            // No need for an else here, because awr and rrp are created empty, we just don't add anything to them.
+            /* Both analytics queries only depend on the upload date, so they are sent at the same time.
+             * If either of them fails or times out, the other one is cancelled and the request fails straight away. */
 
+            // This query gets the overtime metrics during the video's execution.
+            CompletableFuture<List<List<Object>>> overtimeQuery = UpstreamPool.submit(() -> AnalyticsCache.rows(clients, channelID,
+                    retentionQuery(clients, videoID, uploaded_date, today)));
 
             // This query gets the overall metrics of the video.
-            List<List<Object>> overallMetricsQueryResult = ytAnalytics.reports().query()
-                    .setIds("channel==MINE")
-                    .setFilters("video==" + videoID)
-                    .setStartDate(uploaded_date)
-                    .setEndDate(today)
-                    .setMetrics("averageViewDuration,averageViewPercentage,subscribersGained,cardClickRate")
-                    .execute().getRows();
-
-            /* There is the same issue in the YT API that's described in getVideoPerformance.
-             * Sometimes, a video exists but some metrics for it are not returned in the query.
-             * Usually happens when a video is new, or there is not enough data for it yet.
-             * If we have the data, use that. Otherwise, populate the data used with 0-s.
-             */
-
-            List<Object> overallMetrics;
-            if(!overallMetricsQueryResult.isEmpty()) overallMetrics = overallMetricsQueryResult.get(0);
-            else overallMetrics = new ArrayList<>(Arrays.asList(
-               new BigInteger("0"),new BigDecimal("0"),new BigInteger("0"),new BigDecimal("0")
-            ));
-
+            CompletableFuture<List<List<Object>>> overallQuery = UpstreamPool.submit(() -> AnalyticsCache.rows(clients, channelID,
+                    clients.ytAnalytics().reports().query()
+                            .setIds("channel==MINE")
+                            .setFilters("video==" + videoID)
+                            .setStartDate(uploaded_date)
+                            .setEndDate(today)
+                            .setMetrics("averageViewDuration,averageViewPercentage,subscribersGained,cardClickRate")));
+
+            failFast(overtimeQuery, overallQuery);
+            List<List<Object>> overtimeMetrics = await(overtimeQuery);
+            List<List<Object>> overallMetricsQueryResult = await(overallQuery);
+
+            List<Object> overallMetrics = overallMetricsQueryResult != null && !overallMetricsQueryResult.isEmpty()
+                    ? overallMetricsQueryResult.get(0) : null;
+            return new ResponseEntity<>(videoPerformance(current_video, overallMetrics, overtimeMetrics), HttpStatus.OK);
+        }
+        catch(IOException ex){
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            // Getting tips based on certain video statistics
-            List<Object> videoTips = getVideoAdvice(current_video, overallMetrics, awr);
-
-            // Storing the needed information in a JSON-like format and returning.
-            Map<String,Object> result = new HashMap<>(Map.of(
-                    "thumbnailURL",current_video.getSnippet().getThumbnails().getHigh().getUrl(),
-                    "title", current_video.getSnippet().getTitle(),
-                    "viewCount", current_video.getStatistics().getViewCount(),
-                    "engagementCount", current_video.getStatistics().getLikeCount()
-                            .add(current_video.getStatistics().getDislikeCount())
-                            .add(current_video.getStatistics().getCommentCount())
-                            .add(new BigInteger(overallMetrics.get(2).toString())),
-                    "averageViewDuration",overallMetrics.get(0),
-                    "averageViewPercentage",overallMetrics.get(1),
-                    "cardClickRate",overallMetrics.get(3),
-                    "averageWatchRatio",awr,
-                    "relativeRetentionPerformance",rrp,
-                    "advice", videoTips
-            ));
+    /**
+     * Given several videos, this method gives each of them the same analysis as getVideoPerformance().
+     * <br>Instead of 3 queries per video, the videos are listed with one videos.list per 50 IDs, and the overall
+     * metrics of all of them come from a single analytics query with the "video" dimension. Only the audience
+     * retention has to be queried video by video, with at most RETENTION_LANES of those queries at a time.
+     *
+     * @param tr the token from the authorisation
+     * @param videoIDs the videos to analyse (at most 200, duplicates are ignored).
+     * @return The analysis of each video that was found, by video ID in the requested order.
+     * <br><b>The returned value also includes the appropriate HTTP code (400 if no or too many IDs were given).</b>
+     */
+    public static ResponseEntity<Object> getVideoPerformanceBatch(TokenResponse tr, List<String> videoIDs){
+        if(videoIDs == null || videoIDs.isEmpty()) return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        List<String> wanted = new ArrayList<>(new LinkedHashSet<>(videoIDs));
+        // All the overall metrics have to fit in a single analytics query.
+        if(wanted.size() > ANALYTICS_BATCH_SIZE){
+            String error = "At most " + ANALYTICS_BATCH_SIZE + " videos can be analysed at once.";
+            return new ResponseEntity<>(new ApiError(error), HttpStatus.BAD_REQUEST);
+        }
 
-            /* This piece of data has to be put here because the limit of parameters
-            *  in the function Map.of() appears to be a maximum of 10 items for the map.
-            *  This just adds the privacy status of a video to the returned result.
-            * */
-            result.put("privacy", current_video.getStatus().getPrivacyStatus());
+        YtClients clients = makeYtObjects(tr);
+        Map<String, CompletableFuture<List<List<Object>>>> overtimeQueries = Map.of();
+        try{
+            String channelID = getDefaultChannel(clients).getId();
+
+            // Getting the videos, 50 per query.
+            List<CompletableFuture<VideoListResponse>> pages = new ArrayList<>();
+            for (int from = 0; from < wanted.size(); from += VIDEOS_LIST_BATCH_SIZE) {
+                List<String> ids = wanted.subList(from, Math.min(from + VIDEOS_LIST_BATCH_SIZE, wanted.size()));
+                pages.add(UpstreamPool.submit(() -> execute("videos.list", clients.userKey(),
+                        clients.yt().videos().list(List.of("snippet","statistics","status"))
+                                .setId(ids)
+                                .setMaxResults((long) ids.size()))));
+            }
+            failFast(pages.toArray(new CompletableFuture<?>[0]));
+            Map<String, Video> found = new HashMap<>();
+            for (CompletableFuture<VideoListResponse> page : pages) {
+                List<Video> items = await(page).getItems();
+                if(items != null) for (Video v : items) found.put(v.getId(), v);
+            }
 
+            // Videos that do not exist (or are not visible to the user) are left out.
+            List<Video> videos = new ArrayList<>();
+            for (String id : wanted) {
+                if(found.containsKey(id)) videos.add(found.get(id));
+            }
+            Map<String,Object> result = new LinkedHashMap<>();
+            if(videos.isEmpty()) return new ResponseEntity<>(result, HttpStatus.OK);
+
+            // The overall metrics of every video at once, from the oldest upload until now.
+            String today = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+            String since = today;
+            StringJoiner ids = new StringJoiner(",");
+            for (Video v : videos) {
+                String uploaded = uploadDate(v);
+                if(uploaded.compareTo(since) < 0) since = uploaded;
+                ids.add(v.getId());
+            }
+            String oldestUpload = since;
+            CompletableFuture<List<List<Object>>> overallQuery = UpstreamPool.submit(() -> AnalyticsCache.rows(clients, channelID,
+                    clients.ytAnalytics().reports().query()
+                            .setIds("channel==MINE")
+                            .setDimensions("video")
+                            .setFilters("video==" + ids)
+                            .setStartDate(oldestUpload)
+                            .setEndDate(today)
+                            .setMetrics("averageViewDuration,averageViewPercentage,subscribersGained,cardClickRate")
+                            .setMaxResults(videos.size())));
+            failFast(overallQuery);
+            overtimeQueries = startRetentionQueries(clients, channelID, videos, today);
+
+            // Each row starts with the video ID, followed by the same metrics getVideoPerformance() queries.
+            Map<String, List<Object>> overallMetrics = new HashMap<>();
+            List<List<Object>> rows = await(overallQuery);
+            if(rows != null) for (List<Object> row : rows) overallMetrics.put(row.get(0).toString(), row.subList(1, row.size()));
+
+            for (Video v : videos) {
+                result.put(v.getId(), videoPerformance(v, overallMetrics.get(v.getId()),
+                        await(overtimeQueries.get(v.getId()))));
+            }
             return new ResponseEntity<>(result, HttpStatus.OK);
         }
         catch(IOException ex){
+            // The queries that have not started yet are not needed anymore.
+            for (CompletableFuture<?> query : overtimeQueries.values()) query.cancel(true);
             return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
+    /**
+     * Starts the audience retention query of each video, with at most RETENTION_LANES of them running at a time.
+     * <br>The videos are shared out between the lanes, and each lane starts its next query once the previous one
+     * is done (so every query gets the whole per-call timeout). A lane stops at its first failed query.
+     *
+     * @return the query of each video, by video ID.
+     */
+    private static Map<String, CompletableFuture<List<List<Object>>>> startRetentionQueries(
+            YtClients clients, String channelID, List<Video> videos, String today){
+        Map<String, CompletableFuture<List<List<Object>>>> queries = new HashMap<>();
+        List<CompletableFuture<?>> lanes = new ArrayList<>();
+        for (int i = 0; i < Math.min(RETENTION_LANES, videos.size()); i++) lanes.add(CompletableFuture.completedFuture(null));
+
+        for (int i = 0; i < videos.size(); i++) {
+            Video v = videos.get(i);
+            int lane = i % lanes.size();
+            CompletableFuture<List<List<Object>>> query = lanes.get(lane).thenCompose(previous -> {
+                CompletableFuture<List<List<Object>>> started = UpstreamPool.submit(() -> AnalyticsCache.rows(clients, channelID,
+                        retentionQuery(clients, v.getId(), uploadDate(v), today)));
+                failFast(started);
+                return started;
+            });
+            lanes.set(lane, query);
+            queries.put(v.getId(), query);
+        }
+        return queries;
+    }
+
+    /**
+     * The audience retention query of a video, the same for a single and a batch analysis so they share the
+     * cached rows (see AnalyticsCache).
+     */
+    private static YouTubeAnalytics.Reports.Query retentionQuery(YtClients clients, String videoID,
+                                                                 String uploaded_date, String today) throws IOException {
+        return clients.ytAnalytics().reports().query()
+                .setIds("channel==MINE")
+                .setFilters("video==" + videoID)
+                .setDimensions("elapsedVideoTimeRatio")
+                .setStartDate(uploaded_date)
+                .setEndDate(today)
+                .setMetrics("audienceWatchRatio,relativeRetentionPerformance");
+    }
+
+    private static String uploadDate(Video video){
+        return video.getSnippet().getPublishedAt().toString().substring(0,10);
+    }
+
+    /**
+     * Puts together the analysis of a video, as returned by getVideoPerformance() and getVideoPerformanceBatch().
+     *
+     * @param current_video the video, with its snippet, statistics and status.
+     * @param overallMetrics average view duration, average view percentage, subscribers gained and card click
+     *                       rate of the video, or null if the query returned nothing for it.
+     * @param overtimeMetrics the rows of the audience retention query (see RetentionCurve).
+     * @return the analysis of the video in a JSON-like format.
+     */
+    private static Map<String,Object> videoPerformance(Video current_video, List<Object> overallMetrics,
+                                                       List<List<Object>> overtimeMetrics){
+        /* If there isn't enough overtime data for this video, the curve will be empty.
+        * If that's the case, empty arrays are returned that will be checked in the front-end.
+        * Based on whether an array is empty or not, the analysis displayed will correspond.
+        * */
+        RetentionCurve retention = RetentionCurve.fromRows(overtimeMetrics);
+
+
+        /* There is the same issue in the YT API that's described in getVideoPerformance.
+         * Sometimes, a video exists but some metrics for it are not returned in the query.
+         * Usually happens when a video is new, or there is not enough data for it yet.
+         * If we have the data, use that. Otherwise, populate the data used with 0-s.
+         */
+        if(overallMetrics == null) overallMetrics = new ArrayList<>(Arrays.asList(
+           new BigInteger("0"),new BigDecimal("0"),new BigInteger("0"),new BigDecimal("0")
+        ));
+
+
+        // Getting tips based on certain video statistics
+        List<Object> videoTips = getVideoAdvice(current_video, overallMetrics, retention);
+
+        // Storing the needed information in a JSON-like format and returning.
+        Map<String,Object> result = new HashMap<>(Map.of(
+                "thumbnailURL",current_video.getSnippet().getThumbnails().getHigh().getUrl(),
+                "title", current_video.getSnippet().getTitle(),
+                "viewCount", current_video.getStatistics().getViewCount(),
+                "engagementCount", current_video.getStatistics().getLikeCount()
+                        .add(current_video.getStatistics().getDislikeCount())
+                        .add(current_video.getStatistics().getCommentCount())
+                        .add(new BigInteger(overallMetrics.get(2).toString())),
+                "averageViewDuration",overallMetrics.get(0),
+                "averageViewPercentage",overallMetrics.get(1),
+                "cardClickRate",overallMetrics.get(3),
+                "averageWatchRatio",retention.watchRatio(),
+                "relativeRetentionPerformance",retention.relativePerformance(),
+                "advice", videoTips
+        ));
+
+        /* This piece of data has to be put here because the limit of parameters
+        *  in the function Map.of() appears to be a maximum of 10 items for the map.
+        *  This just adds the privacy status of a video to the returned result.
+        * */
+        result.put("privacy", current_video.getStatus().getPrivacyStatus());
+
+        return result;
+    }
+
     /**
      * Gets all videos uploaded by a channel for a given api response page (10 videos per page).
      *
@@ -201,34 +371,34 @@ public class VideoActions extends Actions{
      * <br><b>Also returns the appropriate HTTP code.</b>
      */
     public static ResponseEntity<Object> getAllVideos(TokenResponse tr, String page_token){
-        makeYtObjects(tr);
+        YtClients clients = makeYtObjects(tr);
         try{
             // Setting up necessary objects.
-            Channel defC = getDefaultChannel();
+            Channel defC = getDefaultChannel(clients);
             String uploads = defC.getContentDetails().getRelatedPlaylists().getUploads();
             PlaylistItemListResponse uploadsResponse;
             List<PlaylistItem> pageUploads;
 
             // If the page token is null, we assume it's the first page of the results
             if(page_token == null){
-                uploadsResponse = yt.playlistItems().list(List.of("snippet", "status"))
-                        .set("channelID",defC.getId())
-                        .setPlaylistId(uploads)
-                        .setMaxResults(Long.valueOf("10"))
-                        .set("order","date")
-                        .set("type","video")
-                        .execute();
+                uploadsResponse = execute("playlistItems.list", clients.userKey(),
+                        clients.yt().playlistItems().list(List.of("snippet", "status"))
+                                .set("channelID",defC.getId())
+                                .setPlaylistId(uploads)
+                                .setMaxResults(Long.valueOf("10"))
+                                .set("order","date")
+                                .set("type","video"));
             }
             else{
                 // Otherwise, we try to get the page specified by the page token identifier.
-                uploadsResponse = yt.playlistItems().list(List.of("snippet", "status"))
-                        .set("channelID",defC.getId())
-                        .setPlaylistId(uploads)
-                        .setMaxResults(Long.valueOf("10"))
-                        .set("order","date")
-                        .set("type","video")
-                        .setPageToken(page_token)
-                        .execute();
+                uploadsResponse = execute("playlistItems.list", clients.userKey(),
+                        clients.yt().playlistItems().list(List.of("snippet", "status"))
+                                .set("channelID",defC.getId())
+                                .setPlaylistId(uploads)
+                                .setMaxResults(Long.valueOf("10"))
+                                .set("order","date")
+                                .set("type","video")
+                                .setPageToken(page_token));
             }
 
             // Getting all the items, shaping them up in the proper MAP return shape, and returning.
@@ -238,7 +408,35 @@ public class VideoActions extends Actions{
             return new ResponseEntity<>(result, HttpStatus.OK);
 
         } catch (IOException ex) {
-            return new ResponseEntity<>(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>(new ApiError("A server error occurred."), HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Gets one page of all the videos uploaded by a channel from the server-side video index (see VideoIndex),
+     * so turning pages, searching and filtering do not query YouTube every time.
+     *
+     * @param tr The authentication token.
+     * @param page_token A token returned with a previous page, or null for the first page.
+     * @param pageSize The number of videos per page, or null for 10.
+     * @param titleQuery Only list videos whose title contains this, or null for all.
+     * @param privacy Only list videos with this privacy status, or null for all.
+     * @return The videos for the page (with their information), previous and next page tokens, and the
+     * total number of matching videos.
+     * <br><b>Also returns the appropriate HTTP code.</b>
+     */
+    public static ResponseEntity<Object> getIndexedVideos(TokenResponse tr, String page_token, Integer pageSize,
+                                                          String titleQuery, String privacy){
+        YtClients clients = makeYtObjects(tr);
+        try{
+            Channel defC = getDefaultChannel(clients);
+            List<VideoIndex.IndexedVideo> videos = VideoIndex.videosOf(clients, defC);
+            int size = pageSize == null ? 10 : Math.max(1, Math.min(pageSize, MAX_INDEX_PAGE_SIZE));
+
+            return new ResponseEntity<>(VideoIndex.page(videos, page_token, size, titleQuery, privacy), HttpStatus.OK);
+        }
+        catch(IOException ex){
+            return new ResponseEntity<>(new ApiError("A server error occurred."), HttpStatus.INTERNAL_SERVER_ERROR);
         }
     }
 
@@ -251,13 +449,10 @@ public class VideoActions extends Actions{
      * <br><b>Also returns the appropriate HTTP code.</b>
      */
     public static ResponseEntity<Object> get200Comments(TokenResponse tr, String videoID){
-        makeYtObjects(tr);
+        YtClients clients = makeYtObjects(tr);
         try{
             // Getting the first batch of up to 100 (that's the limit for the api) comments from that video.
-            CommentThreadListResponse resp = yt.commentThreads().list(List.of("snippet"))
-                    .setVideoId(videoID)
-                    .setMaxResults(Long.valueOf("100"))
-                    .execute();
+            CommentThreadListResponse resp = queryCommentPage(clients, videoID, null, 100);
 
             // Storing the first batch.
             List<CommentThread> comments = resp.getItems();
@@ -265,99 +460,198 @@ public class VideoActions extends Actions{
 
             // If there are more pages with responses, get the second one for another batch of (up to 100) comments.
             if(resp.getNextPageToken() != null){
-                CommentThreadListResponse resp2 = yt.commentThreads().list(List.of("snippet"))
-                        .setVideoId(videoID)
-                        .setPageToken(resp.getNextPageToken())
-                        .setMaxResults(Long.valueOf("100"))
-                        .execute();
+                CommentThreadListResponse resp2 = queryCommentPage(clients, videoID, resp.getNextPageToken(), 100);
 
                 comments.addAll(resp2.getItems());
             }
 
+            // The comments also bring the video's comment analysis up to date, if it is being analysed.
+            CommentAnalysis.record(getDefaultChannel(clients).getId(), videoID, comments);
+
             // Shape up the result in the proper LIST return shape and returning.
-            List<Map<String,String>> result = shapeCommentResult(comments);
+            List<CommentItem> result = shapeCommentResult(comments);
 
             return new ResponseEntity<>(result,HttpStatus.OK);
         }
         catch(IOException ex){
-            return new ResponseEntity<>(ex,HttpStatus.INTERNAL_SERVER_ERROR);
+            return new ResponseEntity<>(new ApiError("A server error occurred."),HttpStatus.INTERNAL_SERVER_ERROR);
         }
 
     }
 
     /**
-     * Using an inner algorithm, gets the top 5 videos out of the 25 most recently uploaded.
+     * Analyses the comments of a specified video: how positive they are and the words they use the most.
+     * <br>The analysis is kept per video and only refreshed with the newest comments (see CommentAnalysis), so
+     * viewing it again costs no queries.
      *
      * @param tr The authentication token.
-     * @return A JSON-like object with basic information about the top 5 videos.
+     * @param videoID The specific video we need the comment analysis of.
+     * @return the number of analysed comments, their sentiment and their keywords.
      * <br><b>Also returns the appropriate HTTP code.</b>
      */
-    public static ResponseEntity<Object> getTop5Vids(TokenResponse tr){
-        makeYtObjects(tr);
+    public static ResponseEntity<Object> getCommentAnalysis(TokenResponse tr, String videoID){
+        YtClients clients = makeYtObjects(tr);
         try{
-            // Setting up the necessary info - channel, the latest videos.
-            Channel defChannel = getDefaultChannel();
-            String uploads_playlistID = defChannel.getContentDetails().getRelatedPlaylists().getUploads();
-
-            List<PlaylistItem> last25Vids = yt.playlistItems().list(List.of("snippet"))
-                    .set("channelID",defChannel.getId())
-                    .setPlaylistId(uploads_playlistID)
-                    .setMaxResults(Long.valueOf("25"))
-                    .set("order","date")
-                    .set("type","video")
-                    .execute().getItems();
-
-            // Setting up the second query, which will return specific data the algorithm may need.
-            List<String> ids25 = new ArrayList<>();
-            for (PlaylistItem i: last25Vids) {
-                ids25.add(i.getSnippet().getResourceId().getVideoId());
-            }
-            String videoIDS = String.join(",",ids25);
+            return new ResponseEntity<>(CommentAnalysis.analysisOf(clients, videoID), HttpStatus.OK);
+        }
+        catch(IOException ex){
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
 
-            // After getting the video IDs ready, the timeframe needs to pe specified.
-            // That frame is from the moment the oldest video was uploaded until the moment of the query.
-            LocalDate now = LocalDate.now();
-            String oldest_vid = last25Vids.get(last25Vids.size()-1).getSnippet()
-                    .getPublishedAt().toString().substring(0,10);
-            String today = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+    /**
+     * Streams up to a given number of comments for a specified video as newline-delimited JSON (one comment per
+     * line, in the same shape get200Comments() uses).
+     * <br>Comment pages are fetched on the upstream pool, each one as soon as the previous page's token is known,
+     * while the pages already received are being written to the client. That way the first comments reach the
+     * client before the last page has arrived.
+     * <br>The first page is fetched before anything is written, so an invalid token or video still results in
+     * an HTTP error. A failure on a later page ends the stream with a line of the shape {"error": "..."}.
+     *
+     * @param tr The authentication token.
+     * @param videoID The specific video we need the comments from.
+     * @param maxComments The number of comments wanted, or null for the default. It is capped at the
+     *                    configured maximum (see setMaxCommentLimit()).
+     * @return the streamed comments.
+     * <br><b>Also returns the appropriate HTTP code.</b>
+     */
+    public static ResponseEntity<StreamingResponseBody> streamComments(TokenResponse tr, String videoID,
+                                                                       Integer maxComments){
+        YtClients clients = makeYtObjects(tr);
+        int limit = Math.max(1, Math.min(maxComments == null ? DEFAULT_COMMENTS : maxComments, maxCommentLimit));
 
-            // Getting all the information we need as a response.
-            List<List<Object>> vidsOverallMetrics = ytAnalytics.reports().query()
-                    .setDimensions("video")
-                    .setIds("channel==MINE")
-                    .setMetrics("comments,likes,dislikes,shares,subscribersGained,averageViewPercentage,views,estimatedMinutesWatched")
-                    .setStartDate(oldest_vid)
-                    .setEndDate(today)
-                    .setFilters("video=="+videoIDS)
-                    .execute().getRows();
-
-            Map<String,Double> scores = new HashMap<>();
-
-            // Calculating the scores for each video based on the algorithm in calculateScore().
-            for (List<Object> videoMetrics: vidsOverallMetrics) {
-                String id = videoMetrics.get(0).toString();
-                scores.put(id,calculateScore(videoMetrics.subList(1,videoMetrics.size())));
-            }
+        CommentThreadListResponse firstPage;
+        try{
+            firstPage = queryCommentPage(clients, videoID, null, Math.min(COMMENT_PAGE_SIZE, limit));
+        }
+        catch(IOException ex){
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
 
-            // Getting the top 5 results and returning their basic information for any further need in the frontend.
-            Map<String,Double> top5 = findHighestScores(scores);
+        StreamingResponseBody body = out -> writeCommentPages(clients, videoID, firstPage, limit, out);
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
 
-            List<Video> videoSnippets = yt.videos().list(List.of("id,snippet"))
-                    .setId(top5.keySet().stream().toList())
-                    .execute().getItems();
+    /**
+     * Sets the largest number of comments a single request to streamComments() may ask for.
+     *
+     * @param limit the maximum number of comments per request.
+     */
+    public static void setMaxCommentLimit(int limit){
+        maxCommentLimit = limit;
+    }
 
-            List<Object> result = new ArrayList<>();
-            int i = 0;
-            for(Video v: videoSnippets){
-                Map<String,String> video_info = new HashMap<>(Map.of(
-                        "title",v.getSnippet().getTitle(),
-                        "video_id",v.getId(),
-                        "thumbnail_URL",v.getSnippet().getThumbnails().getHigh().getUrl()
-                ));
-                result.add(i,video_info);
+    /**
+     * @return the largest number of comments a single request may ask for (see setMaxCommentLimit()).
+     */
+    static int getMaxCommentLimit(){
+        return maxCommentLimit;
+    }
+
+    /**
+     * Writes the comment pages to the client while the following pages are fetched in the background.
+     */
+    private static void writeCommentPages(YtClients clients, String videoID, CommentThreadListResponse firstPage,
+                                          int limit, OutputStream out) throws IOException {
+        // Unbounded on purpose: the pool may run the fetching on this thread when it is busy, and the queue
+        // can never hold more than "limit" comments anyway.
+        BlockingQueue<CommentPage> pages = new LinkedBlockingQueue<>();
+        AtomicBoolean clientGone = new AtomicBoolean(false);
+
+        CompletableFuture<Void> fetching = UpstreamPool.submit(() -> {
+            CommentThreadListResponse page = firstPage;
+            int remaining = limit;
+            try{
+                while(true){
+                    List<CommentThread> items = page.getItems() == null ? List.of() : page.getItems();
+                    if(items.size() > remaining) items = items.subList(0, remaining);
+                    remaining -= items.size();
+                    pages.add(new CommentPage(items, null));
+
+                    if(page.getNextPageToken() == null || remaining <= 0 || clientGone.get()) break;
+                    page = queryCommentPage(clients, videoID, page.getNextPageToken(),
+                            Math.min(COMMENT_PAGE_SIZE, remaining));
+                }
             }
+            catch(IOException ex){
+                pages.add(new CommentPage(null, ex));
+            }
+            pages.add(CommentPage.END);
+            return null;
+        });
 
-            return new ResponseEntity<>(result, HttpStatus.OK);
+        // Every comment is written straight to the client, one line each, without being put in a list first.
+        JsonGenerator lines = NDJSON_WRITER.getFactory().createGenerator(out);
+        lines.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        lines.setRootValueSeparator(null);
+        try{
+            while(true){
+                CommentPage page = pages.take();
+                if(page == CommentPage.END) break;
+
+                if(page.error() != null){
+                    NDJSON_WRITER.writeValue(lines, Map.of("error", String.valueOf(page.error().getMessage())));
+                    lines.writeRaw('\n');
+                    break;
+                }
+                for (CommentThread comment : page.items()) {
+                    NDJSON_WRITER.writeValue(lines, CommentItem.of(comment));
+                    lines.writeRaw('\n');
+                }
+                // Each page is sent as soon as it is written, so the client can start rendering it.
+                lines.flush();
+            }
+            lines.flush();
+        }
+        catch(InterruptedException ex){
+            Thread.currentThread().interrupt();
+        }
+        finally{
+            // If the client went away (or anything else failed) there is no point in fetching more pages.
+            clientGone.set(true);
+            fetching.cancel(false);
+        }
+    }
+
+    /**
+     * A single page of comments on its way from the fetching task to the client, or the error that ended
+     * the fetching. END marks that there are no more pages.
+     */
+    private record CommentPage(List<CommentThread> items, IOException error) {
+        private static final CommentPage END = new CommentPage(List.of(), null);
+    }
+
+    /**
+     * Queries a single page of top-level comments of a video.
+     *
+     * @param clients the API objects for the current request.
+     * @param videoID The video to get the comments from.
+     * @param pageToken The page to get, or null for the first page.
+     * @param pageSize The number of comments on the page (at most 100, that's the limit for the api).
+     * @return the API response containing the comments and the next page's token.
+     * @throws IOException if the query failed.
+     */
+    static CommentThreadListResponse queryCommentPage(YtClients clients, String videoID, String pageToken,
+                                                      int pageSize) throws IOException {
+        YouTube.CommentThreads.List request = clients.yt().commentThreads().list(List.of("snippet"))
+                .setVideoId(videoID)
+                .setMaxResults((long) pageSize);
+        if(pageToken != null) request.setPageToken(pageToken);
+        return execute("commentThreads.list", clients.userKey(), request);
+    }
+
+    /**
+     * Using an inner algorithm, gets the top 5 videos out of the 25 most recently uploaded.
+     *
+     * @param tr The authentication token.
+     * @return A JSON-like object with basic information about the top 5 videos.
+     * <br><b>Also returns the appropriate HTTP code.</b>
+     */
+    public static ResponseEntity<Object> getTop5Vids(TokenResponse tr){
+        YtClients clients = makeYtObjects(tr);
+        try{
+            Channel defChannel = getDefaultChannel(clients);
+            return new ResponseEntity<>(queryTop5Vids(clients, defChannel), HttpStatus.OK);
         }
         catch(IndexOutOfBoundsException ex){
             /* This error occurs if there are 0 videos and the app tries to access them by index.
@@ -370,6 +664,163 @@ public class VideoActions extends Actions{
         }
     }
 
+    /**
+     * Scores the 25 most recently uploaded videos of a channel and returns the top 5.
+     *
+     * @param clients the API objects for the current request.
+     * @param defChannel the default channel of the logged-in user (see getDefaultChannel()).
+     * @return basic information about the top 5 videos.
+     * @throws IOException if any of the queries failed.
+     * @throws IndexOutOfBoundsException if the channel has no videos with metrics yet.
+     */
+    static List<Object> queryTop5Vids(YtClients clients, Channel defChannel) throws IOException {
+        // Setting up the necessary info - channel, the latest videos.
+        String uploads_playlistID = defChannel.getContentDetails().getRelatedPlaylists().getUploads();
+
+        List<PlaylistItem> last25Vids = execute("playlistItems.list", clients.userKey(),
+                clients.yt().playlistItems().list(List.of("snippet"))
+                        .set("channelID",defChannel.getId())
+                        .setPlaylistId(uploads_playlistID)
+                        .setMaxResults(Long.valueOf("25"))
+                        .set("order","date")
+                        .set("type","video")).getItems();
+
+        // Setting up the second query, which will return specific data the algorithm may need.
+        List<String> ids25 = new ArrayList<>();
+        for (PlaylistItem i: last25Vids) {
+            ids25.add(i.getSnippet().getResourceId().getVideoId());
+        }
+        String videoIDS = String.join(",",ids25);
+
+        // After getting the video IDs ready, the timeframe needs to pe specified.
+        // That frame is from the moment the oldest video was uploaded until the moment of the query.
+        LocalDate now = LocalDate.now();
+        String oldest_vid = last25Vids.get(last25Vids.size()-1).getSnippet()
+                .getPublishedAt().toString().substring(0,10);
+        String today = now.format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+
+        // Getting all the information we need as a response.
+        List<List<Object>> vidsOverallMetrics = execute("reports.query", clients.userKey(),
+                clients.ytAnalytics().reports().query()
+                        .setDimensions("video")
+                        .setIds("channel==MINE")
+                        .setMetrics("comments,likes,dislikes,shares,subscribersGained,averageViewPercentage,views,estimatedMinutesWatched")
+                        .setStartDate(oldest_vid)
+                        .setEndDate(today)
+                        .setFilters("video=="+videoIDS)).getRows();
+
+        Map<String,Double> scores = new HashMap<>();
+
+        // Calculating the scores for each video based on the algorithm in calculateScore().
+        for (List<Object> videoMetrics: vidsOverallMetrics) {
+            String id = videoMetrics.get(0).toString();
+            scores.put(id,calculateScore(videoMetrics.subList(1,videoMetrics.size())));
+        }
+
+        // Getting the top 5 results and returning their basic information for any further need in the frontend.
+        Map<String,Double> top5 = findHighestScores(scores, 5);
+
+        List<Video> videoSnippets = execute("videos.list", clients.userKey(),
+                clients.yt().videos().list(List.of("id,snippet"))
+                        .setId(top5.keySet().stream().toList())).getItems();
+
+        // The videos are not returned in any particular order, so they are put back in order of their score.
+        videoSnippets.sort(Comparator.comparing((Video v) -> top5.get(v.getId())).reversed());
+
+        List<Object> result = new ArrayList<>();
+        for(Video v: videoSnippets){
+            Map<String,String> video_info = new HashMap<>(Map.of(
+                    "title",v.getSnippet().getTitle(),
+                    "video_id",v.getId(),
+                    "thumbnail_URL",v.getSnippet().getThumbnails().getHigh().getUrl()
+            ));
+            result.add(video_info);
+        }
+
+        return result;
+    }
+
+    /**
+     * Ranks every video the channel has ever uploaded (not just the latest 25) and returns the k best.
+     * <br>The video IDs come from the channel's video index (see VideoIndex). They are split into batches that
+     * fit into a single analytics filter, all batches are queried at the same time, and the rows are merged
+     * into a primitive table that is then scored.
+     *
+     * @param tr The authentication token.
+     * @param k The number of videos wanted, or null for 5.
+     * @return A list of the best videos (best first) with their title, ID, thumbnail and score.
+     * <br><b>Also returns the appropriate HTTP code.</b>
+     */
+    public static ResponseEntity<Object> getTopVideos(TokenResponse tr, Integer k){
+        YtClients clients = makeYtObjects(tr);
+        try{
+            Channel defChannel = getDefaultChannel(clients);
+            List<VideoIndex.IndexedVideo> videos = VideoIndex.videosOf(clients, defChannel);
+            int wanted = k == null ? 5 : Math.max(1, Math.min(k, MAX_TOP_VIDEOS));
+
+            // No video can have been uploaded before the channel was created.
+            String since = defChannel.getSnippet().getPublishedAt().toString().substring(0,10);
+            String today = LocalDate.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+
+            List<CompletableFuture<VideoMetricsTable>> batches = new ArrayList<>();
+            for (int from = 0; from < videos.size(); from += ANALYTICS_BATCH_SIZE) {
+                List<VideoIndex.IndexedVideo> batch = videos.subList(from, Math.min(from + ANALYTICS_BATCH_SIZE, videos.size()));
+                batches.add(UpstreamPool.submit(() -> queryBatchMetrics(clients, batch, since, today)));
+            }
+            failFast(batches.toArray(new CompletableFuture<?>[0]));
+
+            VideoMetricsTable table = new VideoMetricsTable(videos.size());
+            for (CompletableFuture<VideoMetricsTable> batch : batches) {
+                table.addAll(await(batch));
+            }
+
+            // The index already has the title and thumbnail of every video, so no further query is needed.
+            Map<String, VideoIndex.IndexedVideo> byId = new HashMap<>();
+            for (VideoIndex.IndexedVideo v : videos) byId.put(v.videoID(), v);
+
+            List<Object> result = new ArrayList<>();
+            for (int row : table.topK(wanted)) {
+                VideoIndex.IndexedVideo v = byId.get(table.id(row));
+                if(v == null) continue;
+                result.add(Map.of(
+                        "title", v.title(),
+                        "video_id", v.videoID(),
+                        "thumbnail_URL", v.thumbnailURL(),
+                        "score", table.score(row)));
+            }
+            return new ResponseEntity<>(result, HttpStatus.OK);
+        }
+        catch(IOException ex){
+            return new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR);
+        }
+    }
+
+    /**
+     * Queries the scoring metrics of one batch of videos.
+     *
+     * @return a table holding a row for each video in the batch that has any metrics.
+     */
+    private static VideoMetricsTable queryBatchMetrics(YtClients clients, List<VideoIndex.IndexedVideo> batch,
+                                                       String since, String today) throws IOException {
+        StringJoiner ids = new StringJoiner(",");
+        for (VideoIndex.IndexedVideo v : batch) ids.add(v.videoID());
+
+        List<List<Object>> rows = execute("reports.query", clients.userKey(),
+                clients.ytAnalytics().reports().query()
+                        .setDimensions("video")
+                        .setIds("channel==MINE")
+                        .setMetrics("comments,likes,dislikes,shares,subscribersGained,averageViewPercentage,views,estimatedMinutesWatched")
+                        .setStartDate(since)
+                        .setEndDate(today)
+                        .setFilters("video==" + ids)
+                        .setSort("-views")
+                        .setMaxResults(batch.size())).getRows();
+
+        VideoMetricsTable table = new VideoMetricsTable(batch.size());
+        table.addRows(rows);
+        return table;
+    }
+
     /**
      * This method contains the algorithm that decides what score each video will be assigned.
      *
@@ -387,6 +838,16 @@ public class VideoActions extends Actions{
         long views = Long.parseLong(metrics.get(6).toString());
         long watchtime = Long.parseLong(metrics.get(7).toString());
 
+        return calculateScore(comments, likes, dislikes, shares, subs_gained, avp, views, watchtime);
+    }
+
+    /**
+     * The same scoring algorithm as above, for metrics that are already parsed (see VideoMetricsTable).
+     *
+     * @return the score for that video.
+     */
+    static double calculateScore(long comments, long likes, long dislikes, long shares, long subs_gained,
+                                 double avp, long views, long watchtime){
         // Engagement rate (in percentage) are all engagement actions / the number of views * 100 to convert to %
         double eng_rate = (double) (likes + dislikes + comments + shares) /views * 100;
         double subs_gained_percent = (double) subs_gained /views * 100;
@@ -396,27 +857,31 @@ public class VideoActions extends Actions{
     }
 
     /**
-     * A helper method that returns a map of the top 5 scores.
+     * A helper method that returns a map of the top k scores.
+     * <br>Only a heap of the best k entries is kept while going through the scores, so nothing is fully sorted.
      *
      * @param scores All the scores we have in the form of a map.
-     * @return The map of just the top 5 scores.
+     * @param k The number of top scores wanted.
+     * @return The map of just the top k scores (or fewer, if there are fewer scores), highest first.
      */
-    private static Map<String,Double> findHighestScores(Map<String,Double> scores){
-        List<Map.Entry<String, Double>> sortList = new ArrayList<>(scores.entrySet());
-
-        // Sorting the map by the values of each entry (IN DESCENDING ORDER!)
-        sortList.sort(new Comparator<Map.Entry<String, Double>>() {
-            @Override
-            public int compare(Map.Entry<String, Double> o1, Map.Entry<String, Double> o2) {
-                return o2.getValue().compareTo(o1.getValue()); // Sorting in descending order
+    private static Map<String,Double> findHighestScores(Map<String,Double> scores, int k){
+        // The heap's head is the lowest of the best k scores found so far.
+        PriorityQueue<Map.Entry<String, Double>> best = new PriorityQueue<>(Math.max(1, k), Map.Entry.comparingByValue());
+        for (Map.Entry<String, Double> entry : scores.entrySet()) {
+            if(best.size() < k) best.add(entry);
+            else if(k > 0 && entry.getValue() > best.peek().getValue()){
+                best.poll();
+                best.add(entry);
             }
-        });
+        }
 
-        return new HashMap<>(Map.of(sortList.get(0).getKey(),sortList.get(0).getValue(),
-                sortList.get(1).getKey(),sortList.get(1).getValue(),
-                sortList.get(2).getKey(),sortList.get(2).getValue(),
-                sortList.get(3).getKey(),sortList.get(3).getValue(),
-                sortList.get(4).getKey(),sortList.get(4).getValue()));
+        // Emptying the heap gives the lowest first, so the entries are reversed into descending order.
+        List<Map.Entry<String, Double>> descending = new ArrayList<>(best.size());
+        while(!best.isEmpty()) descending.add(0, best.poll());
+
+        Map<String,Double> top = new LinkedHashMap<>();
+        for (Map.Entry<String, Double> entry : descending) top.put(entry.getKey(), entry.getValue());
+        return top;
     }
 
     /**
@@ -427,10 +892,9 @@ public class VideoActions extends Actions{
      * @param resp The raw response to a Data v3 API query. It should contain the <b>page token</b>
      * @return A map of videos that contains all videos for the provided page (pageUploads).
      */
-    private static Map<String,Object> shapeMapResult(List<PlaylistItem> pageUploads, PlaylistItemListResponse resp){
+    static Map<String,Object> shapeMapResult(List<PlaylistItem> pageUploads, PlaylistItemListResponse resp){
         Map<String,Object> organisedResponse = new HashMap<>();
-        List<Object> videosList = new ArrayList<>();
-        int n = 1;
+        List<VideoIndex.IndexedVideo> videosList = new ArrayList<>(pageUploads.size());
 
         // Each video has its core data stored to an array of all videos for the page.
         for (PlaylistItem v: pageUploads) {
@@ -440,13 +904,9 @@ public class VideoActions extends Actions{
             * we just ignore that and store all other videos with their needed data.
             * */
             if(!v.getStatus().getPrivacyStatus().equals("privacyStatusUnspecified")){
-                Map<String,String> videoInfo = new HashMap<>();
-                videoInfo.put("title",v.getSnippet().getTitle());
-                videoInfo.put("thumbnailURL",v.getSnippet().getThumbnails().getHigh().getUrl());
-                videoInfo.put("videoID",v.getSnippet().getResourceId().getVideoId());
-                videoInfo.put("privacy",v.getStatus().getPrivacyStatus());
-
-                videosList.add(videoInfo);
+                videosList.add(new VideoIndex.IndexedVideo(v.getSnippet().getResourceId().getVideoId(),
+                        v.getSnippet().getTitle(), v.getSnippet().getThumbnails().getHigh().getUrl(),
+                        v.getStatus().getPrivacyStatus()));
             }
         }
         // Page tokens and all videos are added to the response.
@@ -457,50 +917,53 @@ public class VideoActions extends Actions{
         return organisedResponse;
     }
 
+    /**
+     * A single comment as it is returned to the front-end. The names of the fields are the JSON keys.
+     */
+    public record CommentItem(String comment_body, String comment_author, String comment_author_profile_picture_URL) {
+        static CommentItem of(CommentThread c) {
+            CommentSnippet snippet = c.getSnippet().getTopLevelComment().getSnippet();
+            return new CommentItem(snippet.getTextDisplay(), snippet.getAuthorDisplayName(),
+                    snippet.getAuthorProfileImageUrl());
+        }
+    }
+
     /**
      * A helper method to shape the result of a list of comments
      *
      * @param comments A list of CommentThread that should be properly shaped
-     * @return A list of JSON-like objects containing comment information.
+     * @return A list of the comments' information (body, author, author profile picture).
      */
-    private static List<Map<String,String>> shapeCommentResult(List<CommentThread> comments){
-        List<Map<String,String>> shaper = new ArrayList<>();
-        // Each comment has its data (like body, author, author profile picture) shaped and returned.
+    static List<CommentItem> shapeCommentResult(List<CommentThread> comments){
+        List<CommentItem> shaper = new ArrayList<>(comments.size());
         for(CommentThread c:comments){
-            Map<String,String> comment = new HashMap<>();
-            comment.put("comment_body",c.getSnippet().getTopLevelComment().getSnippet().getTextDisplay());
-            comment.put("comment_author",c.getSnippet().getTopLevelComment().getSnippet().getAuthorDisplayName());
-            comment.put("comment_author_profile_picture_URL",c.getSnippet().getTopLevelComment().getSnippet().getAuthorProfileImageUrl());
-            shaper.add(comment);
+            shaper.add(CommentItem.of(c));
         }
 
         return shaper;
     }
 
     /**
-     * A helper method that takes specific video data and generates advice that was located in pre-populated files.
+     * A helper method that takes specific video data and generates advice that was located in pre-populated files (see AdviceCorpus).
      * The advice is specific based on how well/poorly the video is performing.
      *
      * @param current_video A video object (returned by YouTube API) of the currently analysed video
      * @param overallMetrics Additional metrics for that video in the first parameter
-     * @param overtimeRetention Retention metrics that are used for the video's evaluation.
+     * @param retention The retention curve of the video that is used for the video's evaluation.
      * @return A list of Strings that represent the advice for a video(or empty if the video needs no advice).
      */
-    private static List<Object> getVideoAdvice(Video current_video, List<Object> overallMetrics, List<Object> overtimeRetention){
+    private static List<Object> getVideoAdvice(Video current_video, List<Object> overallMetrics, RetentionCurve retention){
         List<Object> result = new ArrayList<>();
 
 
         // If the video being analysed has under 10 thousand views, choose a piece of advice from the
         // "low viewcount advice"
         if(current_video.getStatistics().getViewCount().compareTo(BigInteger.valueOf(10000)) < 1){
-            try{
-                result.add(adviceFromFile(VideoActions.class.getResource("/.viewCountAdvice").getPath()));
-            }
-            catch(Exception ex){
-                // This only occurs if there's something wrong with the advice file.
-                result.add("There seems to be room for improvement for your video's view count, " +
-                        "but we can not fetch advice for now, sorry...");
-            }
+            String advice = AdviceCorpus.pick(AdviceCorpus.VIEW_COUNT);
+            // The advice is only missing if there's something wrong with the advice file.
+            result.add(advice != null ? advice :
+                    "There seems to be room for improvement for your video's view count, " +
+                    "but we can not fetch advice for now, sorry...");
         }
 
         // Calculating engagement Rate
@@ -511,105 +974,59 @@ public class VideoActions extends Actions{
 
         // If the engagement Rate is lower than 10%, give engagement advice chosen from the preset
         if((engRate * 100) < 10){
-            try{
-                result.add(adviceFromFile(VideoActions.class.getResource("/.engagementAdvice").getPath()));
-            }
-            catch(Exception ex){
-                // This only occurs if there's something wrong with the advice file.
-                result.add("There seems to be room for improvement for your video's engagement rate, " +
-                        "but we can not fetch advice for now, sorry...");
-            }
-
+            String advice = AdviceCorpus.pick(AdviceCorpus.ENGAGEMENT);
+            // The advice is only missing if there's something wrong with the advice file.
+            result.add(advice != null ? advice :
+                    "There seems to be room for improvement for your video's engagement rate, " +
+                    "but we can not fetch advice for now, sorry...");
         }
 
         // If the average view percentage for the video is lower than 20%, give view percent advice from the preset.
         if(((BigDecimal) overallMetrics.get(1)).compareTo(new BigDecimal((long) 20)) < 1){
-            try{
-                result.add(adviceFromFile(VideoActions.class.getResource("/.viewPercentAdvice").getPath()));
-            }
-            catch(Exception ex){
-                // This only occurs if there's something wrong with the advice file.
-                result.add("There seems to be room for improvement for your video's average view percentage, " +
-                        "but we can not fetch advice for now, sorry...");
-            }
+            String advice = AdviceCorpus.pick(AdviceCorpus.VIEW_PERCENT);
+            // The advice is only missing if there's something wrong with the advice file.
+            result.add(advice != null ? advice :
+                    "There seems to be room for improvement for your video's average view percentage, " +
+                    "but we can not fetch advice for now, sorry...");
         }
 
         // If the card click rate is under 2%, provide card click rate improvement advice from the preset.
         if(((BigDecimal) overallMetrics.get(3)).compareTo(new BigDecimal((long) 2)) < 1){
-            try{
-                result.add(adviceFromFile(VideoActions.class.getResource("/.cardClicksAdvice").getPath()));
-            }
-            catch(Exception ex){
-                // This only occurs if there's something wrong with the advice file.
-                result.add("There seems to be room for improvement for your video's card click rate, " +
-                        "but we can not fetch advice for now, sorry...");
-            }
+            String advice = AdviceCorpus.pick(AdviceCorpus.CARD_CLICKS);
+            // The advice is only missing if there's something wrong with the advice file.
+            result.add(advice != null ? advice :
+                    "There seems to be room for improvement for your video's card click rate, " +
+                    "but we can not fetch advice for now, sorry...");
         }
 
         /* We provide overtime advice if there is any overtime data at all, if not, we just skip overtime advice.
            Overtime advice is related to any declines in the video intro, as well as other declines throughout
            the video.
          */
-        if(!overtimeRetention.isEmpty()){
+        if(!retention.isEmpty()){
 
             // Here, we check if there is a dip of over 30% in viewership in the introduction of the video (first 10%)
             // If there is, provide advice from the preset.
-            if(((BigDecimal) overtimeRetention.get(0)).subtract((BigDecimal) overtimeRetention.get(9))
-                    .compareTo(BigDecimal.valueOf(0.3)) >= 0){
-                try{
-                    result.add(adviceFromFile(VideoActions.class.getResource("/.introDeclineAdvice").getPath()));
-                }
-                catch(Exception ex){
-                    // This only occurs if there's something wrong with the advice file.
-                    result.add("There seems to be room for improvement for your video's intro retention, " +
-                            "but we can not fetch advice for now, sorry...");
-                }
-
+            if(retention.hasIntroDecline(0.3)){
+                String advice = AdviceCorpus.pick(AdviceCorpus.INTRO_DECLINE);
+                // The advice is only missing if there's something wrong with the advice file.
+                result.add(advice != null ? advice :
+                        "There seems to be room for improvement for your video's intro retention, " +
+                        "but we can not fetch advice for now, sorry...");
             }
 
             // Here, we check for any big dips of viewership after the video introduction, if there is a viewership decline
-            // of over 20%, provide advice from the preset.
-            boolean existsBigDecline = false;
-
-            for(int i = 10; i < overtimeRetention.size(); i+=10){
-                if(((BigDecimal) overtimeRetention.get(i)).subtract((BigDecimal) overtimeRetention.get(i+9))
-                        .compareTo(BigDecimal.valueOf(0.2)) >= 0){
-                    existsBigDecline = true;
-                    break;
-                }
-            }
-            if(existsBigDecline){
-                try{
-                    result.add(adviceFromFile(VideoActions.class.getResource("/.bigDeclineAdvice").getPath()));
-                }
-                catch(Exception ex){
-                    // This only occurs if there's something wrong with the advice file.
-                    result.add("There seems to be room for improvement for your video's retention, " +
-                            "but we can not fetch advice for now, sorry...");
-                }
+            // of over 20% (within 10% of the video), provide advice from the preset.
+            if(retention.hasSegmentDecline(0.2)){
+                String advice = AdviceCorpus.pick(AdviceCorpus.BIG_DECLINE);
+                // The advice is only missing if there's something wrong with the advice file.
+                result.add(advice != null ? advice :
+                        "There seems to be room for improvement for your video's retention, " +
+                        "but we can not fetch advice for now, sorry...");
             }
         }
 
         // Return all the advice based on stats covered.
         return result;
     }
-
-    /**
-     * A helper method that is used in the getVideoAdvice method. It provides a random piece of advice
-     * provided a filename for an advice container.
-     *
-     * @param filename The file with the pre-populated advice
-     * @return One piece of randomly chosen advice from the file provided.
-     * @throws FileNotFoundException if the file specified is not found.
-     */
-    private static String adviceFromFile(String filename) throws FileNotFoundException {
-        File adviceFile = new File(filename);
-        Scanner reader = new Scanner(adviceFile);
-        List<String> lines = new ArrayList<>();
-        while(reader.hasNextLine()){
-            lines.add(reader.nextLine());
-        }
-        Random random = new Random();
-        return lines.get(random.nextInt(lines.size()));
-    }
 }
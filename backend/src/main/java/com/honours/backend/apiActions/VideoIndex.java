@@ -0,0 +1,205 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.google.api.services.youtube.model.Channel;
+import com.google.api.services.youtube.model.PlaylistItem;
+import com.google.api.services.youtube.model.PlaylistItemListResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * This class keeps a server-side index of every video uploaded by a channel, so the videos page can be paged
+ * through, searched and filtered without querying YouTube on every page turn.
+ * <br>An index is first populated by reading the whole uploads playlist, 50 videos per query. After that it is
+ * refreshed incrementally: only the newest uploads are read, until the first video that is already known.
+ * Because an incremental refresh can not see deleted videos or edited titles, the index is rebuilt from scratch
+ * once a day.
+ */
+public class VideoIndex {
+    private static final int MAX_CHANNELS = 1_000;
+    private static final long PLAYLIST_PAGE_SIZE = 50;
+    private static final Duration REFRESH_INTERVAL = Duration.ofMinutes(5);
+    private static final Duration REBUILD_INTERVAL = Duration.ofDays(1);
+
+    // Channels nobody looked at for a while are dropped and populated again when needed.
+    private static final Cache<String, ChannelVideos> INDEXES = Caffeine.newBuilder()
+            .maximumSize(MAX_CHANNELS)
+            .expireAfterAccess(Duration.ofHours(6))
+            .recordStats()
+            .build();
+
+    /**
+     * A single uploaded video, holding the same information the videos page shows. It is returned to the
+     * front-end as it is, the names of the fields are the JSON keys.
+     */
+    public record IndexedVideo(String videoID, String title, String thumbnailURL, String privacy) {
+    }
+
+    /**
+     * The index of one channel. Readers always see an immutable snapshot of the videos (newest first), which
+     * is replaced as a whole when a refresh finishes.
+     */
+    private static class ChannelVideos {
+        private final ReentrantLock syncLock = new ReentrantLock();
+        private volatile List<IndexedVideo> videos = null;
+        private volatile Instant refreshedAt = Instant.EPOCH;
+        private volatile Instant rebuiltAt = Instant.EPOCH;
+    }
+
+    /**
+     * Gets every video uploaded by a channel, refreshing the channel's index first if it is out of date.
+     * <br>If another request is already refreshing the index, the current snapshot is returned instead of waiting
+     * (unless there is no snapshot yet).
+     *
+     * @param clients the API objects for the current request.
+     * @param channel the default channel of the logged-in user (see getDefaultChannel()).
+     * @return all the channel's videos, newest first.
+     * @throws IOException if the index had to be populated and a query failed.
+     */
+    public static List<IndexedVideo> videosOf(YtClients clients, Channel channel) throws IOException {
+        ChannelVideos index = INDEXES.get(channel.getId(), id -> new ChannelVideos());
+        Instant now = Instant.now();
+        List<IndexedVideo> snapshot = index.videos;
+        if(snapshot != null && index.refreshedAt.plus(REFRESH_INTERVAL).isAfter(now)) return snapshot;
+
+        if(snapshot == null) index.syncLock.lock();
+        else if(!index.syncLock.tryLock()) return snapshot;
+        try{
+            // Another request may have finished the refresh while this one was waiting for the lock.
+            if(index.videos != null && index.refreshedAt.plus(REFRESH_INTERVAL).isAfter(now)) return index.videos;
+
+            boolean rebuild = index.videos == null || index.rebuiltAt.plus(REBUILD_INTERVAL).isBefore(now);
+            List<IndexedVideo> known = rebuild ? List.of() : index.videos;
+            index.videos = readUploads(clients, channel, known);
+            index.refreshedAt = now;
+            if(rebuild) index.rebuiltAt = now;
+            return index.videos;
+        }
+        finally{
+            index.syncLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the uploads playlist from the newest video backwards, until the end of the playlist or until the
+     * first video that is already in the index.
+     *
+     * @param known the videos already indexed, newest first (empty to read the whole playlist).
+     * @return the newly found videos followed by the known ones.
+     */
+    private static List<IndexedVideo> readUploads(YtClients clients, Channel channel, List<IndexedVideo> known)
+            throws IOException {
+        String uploads = channel.getContentDetails().getRelatedPlaylists().getUploads();
+        Set<String> knownIds = new HashSet<>();
+        for (IndexedVideo v : known) knownIds.add(v.videoID());
+
+        List<IndexedVideo> found = new ArrayList<>();
+        String pageToken = null;
+        reading:
+        do{
+            PlaylistItemListResponse page = Actions.execute("playlistItems.list", clients.userKey(),
+                    clients.yt().playlistItems().list(List.of("snippet", "status"))
+                            .setPlaylistId(uploads)
+                            .setMaxResults(PLAYLIST_PAGE_SIZE)
+                            .setPageToken(pageToken));
+
+            for (PlaylistItem item : page.getItems()) {
+                String videoID = item.getSnippet().getResourceId().getVideoId();
+                if(knownIds.contains(videoID)) break reading;
+
+                // Deleted videos stay in the playlist without any data, they are left out like in getAllVideos().
+                if(item.getStatus().getPrivacyStatus().equals("privacyStatusUnspecified")) continue;
+                found.add(new IndexedVideo(videoID, item.getSnippet().getTitle(),
+                        item.getSnippet().getThumbnails().getHigh().getUrl(), item.getStatus().getPrivacyStatus()));
+            }
+            pageToken = page.getNextPageToken();
+        } while(pageToken != null);
+
+        if(found.isEmpty()) return known;
+        List<IndexedVideo> merged = new ArrayList<>(found.size() + known.size());
+        merged.addAll(found);
+        merged.addAll(known);
+        return List.copyOf(merged);
+    }
+
+    /**
+     * Picks one page out of a channel's videos, after filtering them by title and privacy.
+     * <br>The page tokens point at a video rather than an offset, so they stay valid when new uploads are added
+     * to the front of the index between two page turns.
+     *
+     * @param videos all the channel's videos, newest first (see videosOf()).
+     * @param pageToken a token returned as "nextPageToken" or "prevPageToken" by an earlier call, or null for the
+     *                  first page.
+     * @param pageSize the number of videos per page.
+     * @param titleQuery only videos whose title contains this (ignoring case) are listed, or null for all.
+     * @param privacy only videos with this privacy status (e.g. "public") are listed, or null for all.
+     * @return a map with the page's "videos" (in the same shape getAllVideos() uses), the "prevPageToken" and
+     * "nextPageToken" (null when there is no such page) and the "total" number of matching videos.
+     */
+    public static Map<String,Object> page(List<IndexedVideo> videos, String pageToken, int pageSize,
+                                          String titleQuery, String privacy) {
+        String needle = titleQuery == null || titleQuery.isBlank() ? null : titleQuery.toLowerCase(Locale.ROOT);
+        List<IndexedVideo> matching = new ArrayList<>();
+        for (IndexedVideo v : videos) {
+            if(privacy != null && !privacy.isBlank() && !privacy.equals(v.privacy())) continue;
+            if(needle != null && !v.title().toLowerCase(Locale.ROOT).contains(needle)) continue;
+            matching.add(v);
+        }
+
+        int from = 0;
+        if(pageToken != null){
+            try{
+                String cursor = new String(Base64.getUrlDecoder().decode(pageToken), StandardCharsets.UTF_8);
+                int at = indexOf(matching, cursor.substring(2));
+                // A token pointing at a video that is gone starts again from the first page.
+                if(at >= 0) from = cursor.startsWith("a:") ? at + 1 : Math.max(0, at - pageSize);
+            }
+            catch(IllegalArgumentException | IndexOutOfBoundsException ex){
+                // So does a malformed token.
+                from = 0;
+            }
+        }
+        int to = Math.min(from + pageSize, matching.size());
+
+        Map<String,Object> result = new HashMap<>();
+        // The videos of the index are returned as they are, so a page costs no more than the list holding it.
+        result.put("videos", List.copyOf(matching.subList(from, to)));
+        result.put("prevPageToken", from > 0 ? token("b:", matching.get(from).videoID()) : null);
+        result.put("nextPageToken", to < matching.size() ? token("a:", matching.get(to - 1).videoID()) : null);
+        result.put("total", matching.size());
+        return result;
+    }
+
+    /**
+     * @return the hit, miss and eviction counters of the cache since startup.
+     */
+    public static CacheStats stats() {
+        return INDEXES.stats();
+    }
+
+    /**
+     * @return the approximate number of entries in the cache.
+     */
+    public static long size() {
+        return INDEXES.estimatedSize();
+    }
+
+    private static int indexOf(List<IndexedVideo> videos, String videoID) {
+        for (int i = 0; i < videos.size(); i++) {
+            if(videos.get(i).videoID().equals(videoID)) return i;
+        }
+        return -1;
+    }
+
+    private static String token(String direction, String videoID) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((direction + videoID).getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,146 @@
+package com.honours.backend.apiActions;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * This class stores the scoring metrics of many videos in primitive columns (one array per metric) instead of
+ * one List of boxed numbers per video, so a whole back catalogue can be scored without a per-video allocation.
+ * <br>Each row holds the rows returned by a "reports.query" with the "video" dimension and the metrics
+ * "comments,likes,dislikes,shares,subscribersGained,averageViewPercentage,views,estimatedMinutesWatched",
+ * in that order.
+ */
+public class VideoMetricsTable {
+    private String[] ids;
+    private long[] comments;
+    private long[] likes;
+    private long[] dislikes;
+    private long[] shares;
+    private long[] subsGained;
+    private double[] avp;
+    private long[] views;
+    private long[] watchtime;
+    private int size = 0;
+
+    public VideoMetricsTable(int expectedRows) {
+        int capacity = Math.max(expectedRows, 8);
+        ids = new String[capacity];
+        comments = new long[capacity];
+        likes = new long[capacity];
+        dislikes = new long[capacity];
+        shares = new long[capacity];
+        subsGained = new long[capacity];
+        avp = new double[capacity];
+        views = new long[capacity];
+        watchtime = new long[capacity];
+    }
+
+    /**
+     * Adds every row of an analytics query response.
+     *
+     * @param rows the rows of the response, each starting with the video ID followed by the metrics.
+     */
+    public void addRows(List<List<Object>> rows) {
+        if(rows == null) return;
+        for (List<Object> row : rows) {
+            ensureCapacity(size + 1);
+            ids[size] = row.get(0).toString();
+            comments[size] = asLong(row.get(1));
+            likes[size] = asLong(row.get(2));
+            dislikes[size] = asLong(row.get(3));
+            shares[size] = asLong(row.get(4));
+            subsGained[size] = asLong(row.get(5));
+            avp[size] = asDouble(row.get(6));
+            views[size] = asLong(row.get(7));
+            watchtime[size] = asLong(row.get(8));
+            size++;
+        }
+    }
+
+    /**
+     * Appends all the rows of another table (e.g. the result of another batch) to this one.
+     *
+     * @param other the table to copy the rows from.
+     */
+    public void addAll(VideoMetricsTable other) {
+        ensureCapacity(size + other.size);
+        System.arraycopy(other.ids, 0, ids, size, other.size);
+        System.arraycopy(other.comments, 0, comments, size, other.size);
+        System.arraycopy(other.likes, 0, likes, size, other.size);
+        System.arraycopy(other.dislikes, 0, dislikes, size, other.size);
+        System.arraycopy(other.shares, 0, shares, size, other.size);
+        System.arraycopy(other.subsGained, 0, subsGained, size, other.size);
+        System.arraycopy(other.avp, 0, avp, size, other.size);
+        System.arraycopy(other.views, 0, views, size, other.size);
+        System.arraycopy(other.watchtime, 0, watchtime, size, other.size);
+        size += other.size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String id(int row) {
+        return ids[row];
+    }
+
+    /**
+     * Scores a single row using the same algorithm as VideoActions.calculateScore().
+     *
+     * @param row the index of the row.
+     * @return the score of that video.
+     */
+    public double score(int row) {
+        return VideoActions.calculateScore(comments[row], likes[row], dislikes[row], shares[row],
+                subsGained[row], avp[row], views[row], watchtime[row]);
+    }
+
+    /**
+     * Finds the k best scoring videos using a heap of at most k rows, rather than sorting every row.
+     *
+     * @param k the number of videos wanted.
+     * @return the rows of the best videos, best first. Fewer than k if the table has fewer rows.
+     */
+    public int[] topK(int k) {
+        double[] scores = new double[size];
+        for (int row = 0; row < size; row++) scores[row] = score(row);
+
+        // The heap's head is the worst of the best k rows found so far.
+        PriorityQueue<Integer> best = new PriorityQueue<>(Math.max(1, k), (a, b) -> Double.compare(scores[a], scores[b]));
+        for (int row = 0; row < size; row++) {
+            if(best.size() < k) best.add(row);
+            else if(k > 0 && scores[row] > scores[best.peek()]){
+                best.poll();
+                best.add(row);
+            }
+        }
+
+        int[] top = new int[best.size()];
+        for (int i = top.length - 1; i >= 0; i--) top[i] = best.poll();
+        return top;
+    }
+
+    private void ensureCapacity(int needed) {
+        if(needed <= ids.length) return;
+        int capacity = Math.max(needed, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        comments = Arrays.copyOf(comments, capacity);
+        likes = Arrays.copyOf(likes, capacity);
+        dislikes = Arrays.copyOf(dislikes, capacity);
+        shares = Arrays.copyOf(shares, capacity);
+        subsGained = Arrays.copyOf(subsGained, capacity);
+        avp = Arrays.copyOf(avp, capacity);
+        views = Arrays.copyOf(views, capacity);
+        watchtime = Arrays.copyOf(watchtime, capacity);
+    }
+
+    // The API's numbers are usually parsed as BigDecimal, but anything printing as a number is accepted.
+    private static long asLong(Object value) {
+        return value instanceof Number n ? n.longValue() : Long.parseLong(value.toString());
+    }
+
+    private static double asDouble(Object value) {
+        return value instanceof Number n ? n.doubleValue() : Double.parseDouble(value.toString());
+    }
+}
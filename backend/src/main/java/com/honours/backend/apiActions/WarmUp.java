@@ -0,0 +1,209 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.services.youtube.model.Channel;
+import com.google.api.services.youtube.model.PlaylistItem;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.http.ResponseEntity;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * This class warms up the caches of a user in the background as soon as they sign in, so the pages they usually
+ * open next are served from memory instead of waiting for YouTube.
+ * <br>The first request of a user (see makeYtObjects()) starts a warm-up on a small pool of its own, with the
+ * background quota priority (see QuotaScheduler), which loads one after the other:
+ * <br>- the default channel (the channel basics, see ChannelCache),
+ * <br>- the latest upload (only the first page of the uploads, syncing the whole video index of a large channel
+ * would cost every sign-in many queries, so the videos page still builds it, see VideoIndex),
+ * <br>- the top 20 subscribers and the analysis of the latest video, which are kept here for the session.
+ * <br>A session ends when the user signs out (see end()), when the token expires, or after keepFor. The warm-up
+ * of an ended session is cancelled and its results are dropped.
+ */
+public class WarmUp {
+    private static final int MAX_SESSIONS = 10_000;
+    private static final int QUEUE_SIZE = 100;
+
+    private static volatile boolean enabled = false;
+    private static volatile ThreadPoolExecutor pool = newPool(2);
+    private static volatile Cache<String, Session> sessions = build(Duration.ofMinutes(5));
+
+    private static final LongAdder SERVED = new LongAdder();
+
+    static {
+        FunctionCounter.builder("youtube.warmup.served", SERVED, LongAdder::doubleValue)
+                .description("Requests answered with the results of a warm-up")
+                .register(Metrics.globalRegistry);
+    }
+
+    /**
+     * The warm-up of one signed-in user, and what it has loaded so far.
+     */
+    private static final class Session {
+        private final Map<String, ResponseEntity<Object>> results = new ConcurrentHashMap<>();
+        private final long expiresAt;
+        private volatile Future<?> task;
+        private volatile boolean ended;
+
+        private Session(Long expiresInSeconds) {
+            // A token without an expiry is treated as valid for as long as the session is kept.
+            expiresAt = expiresInSeconds == null ? Long.MAX_VALUE
+                    : System.nanoTime() + TimeUnit.SECONDS.toNanos(expiresInSeconds);
+        }
+
+        private boolean isOver() {
+            return ended || System.nanoTime() - expiresAt > 0;
+        }
+
+        private void end() {
+            ended = true;
+            results.clear();
+            Future<?> running = task;
+            if(running != null) running.cancel(true);
+        }
+    }
+
+    /**
+     * Turns the warm-up on or off and sets its size. Sessions that were started before are ended.
+     *
+     * @param on whether new sessions are warmed up.
+     * @param threads the most sessions warmed up at the same time (further ones wait, or are skipped when too many
+     *                are waiting).
+     * @param keepFor how long the results of a warm-up are kept after the session started.
+     */
+    public static void configure(boolean on, int threads, Duration keepFor) {
+        Cache<String, Session> old = sessions;
+        ThreadPoolExecutor oldPool = pool;
+        enabled = on;
+        pool = newPool(threads);
+        sessions = build(keepFor);
+        old.invalidateAll();
+        oldPool.shutdownNow();
+    }
+
+    /**
+     * Starts warming up a user's caches, unless that was already done for this session.
+     *
+     * @param tr the token of the request that signed the user in.
+     * @param userKey the hashed access token of the user (see ChannelCache.hashToken()).
+     */
+    static void start(TokenResponse tr, String userKey) {
+        if(!enabled || tr.getAccessToken() == null) return;
+        Session session = new Session(tr.getExpiresInSeconds());
+        if(sessions.asMap().putIfAbsent(userKey, session) != null) return;
+
+        try{
+            Future<?> task = pool.submit(() -> {
+                try{
+                    QuotaScheduler.withPriority(QuotaScheduler.Priority.BACKGROUND, () -> run(tr, session));
+                }
+                catch(Exception ex){
+                    // Whatever was not loaded is simply queried when the user asks for it.
+                }
+            });
+            session.task = task;
+            // The session may have ended before it had a task to cancel.
+            if(session.isOver()) task.cancel(true);
+        }
+        catch(RejectedExecutionException ex){
+            // Too many sign-ins at once, this one is not warmed up.
+        }
+    }
+
+    /**
+     * Gets a result loaded by the warm-up of a user's session, if there is one.
+     *
+     * @param userKey the hashed access token of the user.
+     * @param section what was loaded, e.g. "top20Subs" or "vidAnalysis:VIDEO_ID".
+     * @return the response loaded for it, or null if it was not loaded (yet).
+     */
+    static ResponseEntity<Object> prefetched(String userKey, String section) {
+        Session session = sessions.getIfPresent(userKey);
+        if(session == null || session.isOver()) return null;
+        ResponseEntity<Object> result = session.results.get(section);
+        if(result != null) SERVED.increment();
+        return result;
+    }
+
+    /**
+     * Ends a user's session: its warm-up is cancelled and its results are dropped.
+     * <br>An ended session is kept until keepFor is over, so a late request with the same token does not start
+     * another warm-up.
+     *
+     * @param userKey the hashed access token of the user.
+     */
+    public static void end(String userKey) {
+        Session ended = new Session(0L);
+        ended.end();
+        // The replaced session is ended by the removal listener.
+        sessions.put(userKey, ended);
+    }
+
+    /**
+     * @return the pool running the warm-ups, so its threads and queue can be published as metrics.
+     */
+    public static ExecutorService executor() {
+        return pool;
+    }
+
+    private static Void run(TokenResponse tr, Session session) throws IOException {
+        if(session.isOver()) return null;
+        YtClients clients = Actions.makeYtObjects(tr);
+        Channel channel = Actions.getDefaultChannel(clients);
+        if(session.isOver()) return null;
+
+        // The uploads playlist starts with the latest video.
+        List<PlaylistItem> latest = Actions.execute("playlistItems.list", clients.userKey(),
+                clients.yt().playlistItems().list(List.of("contentDetails"))
+                        .setPlaylistId(channel.getContentDetails().getRelatedPlaylists().getUploads())
+                        .setMaxResults(1L)).getItems();
+        if(session.isOver()) return null;
+
+        keep(session, "top20Subs", () -> ChannelActions.getTop20Subs(tr));
+        if(latest != null && !latest.isEmpty()){
+            String videoID = latest.get(0).getContentDetails().getVideoId();
+            keep(session, "vidAnalysis:" + videoID, () -> VideoActions.getVideoPerformance(tr, videoID));
+        }
+        return null;
+    }
+
+    // Failed responses are not kept, the user's own request tries again.
+    private static void keep(Session session, String section, Supplier<ResponseEntity<Object>> action) {
+        if(session.isOver()) return;
+        ResponseEntity<Object> result = action.get();
+        if(result.getStatusCode().is2xxSuccessful() && !session.isOver()) session.results.put(section, result);
+    }
+
+    private static Cache<String, Session> build(Duration keepFor) {
+        return Caffeine.newBuilder()
+                .maximumSize(MAX_SESSIONS)
+                .expireAfterWrite(keepFor)
+                .removalListener((String userKey, Session session, RemovalCause cause) -> {
+                    if(session != null) session.end();
+                })
+                .build();
+    }
+
+    private static ThreadPoolExecutor newPool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_SIZE),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "warm-up-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+}
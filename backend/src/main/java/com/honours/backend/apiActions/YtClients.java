@@ -0,0 +1,16 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.services.youtube.YouTube;
+import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
+
+/**
+ * This record holds the two YouTube api objects built for a single request.
+ * <br>An instance is created once per request by {@link Actions#makeYtObjects} and passed through every
+ * action that needs to query the APIs, so two users served at the same time never share a credential.
+ *
+ * @param yt the YouTube Data v3 API connection, authorised with the requesting user's token.
+ * @param ytAnalytics the YouTube Analytics v2 API connection, authorised with the same token.
+ * @param userKey the hashed access token of the user, used as a key for anything cached per user.
+ */
+public record YtClients(YouTube yt, YouTubeAnalytics ytAnalytics, String userKey) {
+}
@@ -0,0 +1,23 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The "youtube.advice.*" values.
+ *
+ * @param reloadInterval how often the advice files are read again, or 0 to only read them on startup.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.advice")
+public record AdviceProperties(@DefaultValue("0s") Duration reloadInterval) {
+
+    public AdviceProperties {
+        if(reloadInterval.isNegative()){
+            throw new IllegalArgumentException("youtube.advice.reload-interval can not be negative, not " + reloadInterval);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The "youtube.analytics-cache.*" values.
+ *
+ * @param maxEntries the most analytics queries cached.
+ * @param freshFor how long cached rows are returned as they are.
+ * @param staleFor how long cached rows are returned while being fetched again.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.analytics-cache")
+public record AnalyticsCacheProperties(@DefaultValue("10000") int maxEntries,
+                                       @DefaultValue("1h") Duration freshFor,
+                                       @DefaultValue("24h") Duration staleFor) {
+
+    public AnalyticsCacheProperties {
+        if(maxEntries < 0){
+            throw new IllegalArgumentException("youtube.analytics-cache.max-entries can not be negative.");
+        }
+        if(freshFor.isNegative() || staleFor.compareTo(freshFor) < 0){
+            throw new IllegalArgumentException("youtube.analytics-cache.stale-for can not be shorter than fresh-for.");
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+
+import java.net.URI;
+
+/**
+ * The "youtube.api.*" values.
+ *
+ * @param rootUrl where both APIs are queried, or null (an empty value) for googleapis.com.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.api")
+public record ApiProperties(String rootUrl) {
+
+    public ApiProperties {
+        if(rootUrl != null && rootUrl.isBlank()){
+            rootUrl = null;
+        }
+        if(rootUrl != null && !URI.create(rootUrl).isAbsolute()){
+            throw new IllegalArgumentException("youtube.api.root-url must be an absolute URL, not " + rootUrl);
+        }
+    }
+}
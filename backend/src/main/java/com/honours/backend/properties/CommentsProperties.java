@@ -0,0 +1,21 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * The "youtube.comments.*" values.
+ *
+ * @param maxLimit the largest number of comments a client may ask for from /api/comments/stream.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.comments")
+public record CommentsProperties(@DefaultValue("5000") int maxLimit) {
+
+    public CommentsProperties {
+        if(maxLimit < 1){
+            throw new IllegalArgumentException("youtube.comments.max-limit must be at least 1, not " + maxLimit);
+        }
+    }
+}
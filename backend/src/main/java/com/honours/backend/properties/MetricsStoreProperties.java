@@ -0,0 +1,40 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.nio.file.Path;
+
+/**
+ * The "youtube.metrics-store.*" values.
+ *
+ * @param dir the folder the daily metrics are kept in, or null (an empty value) to keep nothing on disk.
+ * @param settleDays the number of days before today that may still change, and are not stored.
+ * @param maxLoadedSeries the most stored series kept in memory.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.metrics-store")
+public record MetricsStoreProperties(String dir,
+                                     @DefaultValue("3") int settleDays,
+                                     @DefaultValue("1000") int maxLoadedSeries) {
+
+    public MetricsStoreProperties {
+        if(dir != null && dir.isBlank()){
+            dir = null;
+        }
+        if(settleDays < 0){
+            throw new IllegalArgumentException("youtube.metrics-store.settle-days can not be negative.");
+        }
+        if(maxLoadedSeries < 1){
+            throw new IllegalArgumentException("youtube.metrics-store.max-loaded-series must be at least 1, not " + maxLoadedSeries);
+        }
+    }
+
+    /**
+     * @return the folder of the store, or null when nothing is kept on disk.
+     */
+    public Path path() {
+        return dir == null ? null : Path.of(dir);
+    }
+}
@@ -0,0 +1,28 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * The "youtube.quota.*" values.
+ *
+ * @param dailyUnits the daily Data API quota of the Google Cloud project.
+ * @param userDailyUnits the most units a single user may use in a day.
+ * @param backgroundReserve the share of the daily units background queries leave to interactive ones.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.quota")
+public record QuotaProperties(@DefaultValue("10000") long dailyUnits,
+                              @DefaultValue("2000") long userDailyUnits,
+                              @DefaultValue("0.2") double backgroundReserve) {
+
+    public QuotaProperties {
+        if(dailyUnits < 0 || userDailyUnits < 0){
+            throw new IllegalArgumentException("The daily units of youtube.quota can not be negative.");
+        }
+        if(backgroundReserve < 0 || backgroundReserve > 1){
+            throw new IllegalArgumentException("youtube.quota.background-reserve must be between 0 and 1, not " + backgroundReserve);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The "youtube.resilience.*" values, i.e. the rate limit, retries and circuit breaker of every API.
+ *
+ * @param ratePerSecond the most queries per second.
+ * @param burst the most queries sent at once after a quiet while.
+ * @param maxWait how long a query may wait for its turn.
+ * @param maxAttempts how many times a failing read is sent (1 turns the retries off).
+ * @param baseDelay the delay before the first retry, which grows for the next ones.
+ * @param maxDelay the longest delay before a retry.
+ * @param breakerWindow the number of last queries the failure rate is measured over.
+ * @param breakerFailureRate the share of failed queries that opens the breaker.
+ * @param breakerOpenFor how long the queries are rejected once the breaker is open.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.resilience")
+public record ResilienceProperties(@DefaultValue("50") double ratePerSecond,
+                                   @DefaultValue("50") int burst,
+                                   @DefaultValue("1s") Duration maxWait,
+                                   @DefaultValue("3") int maxAttempts,
+                                   @DefaultValue("200ms") Duration baseDelay,
+                                   @DefaultValue("2s") Duration maxDelay,
+                                   @DefaultValue("20") int breakerWindow,
+                                   @DefaultValue("0.5") double breakerFailureRate,
+                                   @DefaultValue("30s") Duration breakerOpenFor) {
+
+    public ResilienceProperties {
+        if(ratePerSecond <= 0 || burst < 1){
+            throw new IllegalArgumentException("youtube.resilience.rate-per-second and burst must be more than 0.");
+        }
+        if(maxAttempts < 1){
+            throw new IllegalArgumentException("youtube.resilience.max-attempts must be at least 1, not " + maxAttempts);
+        }
+        if(maxWait.isNegative() || baseDelay.isNegative() || maxDelay.compareTo(baseDelay) < 0){
+            throw new IllegalArgumentException("youtube.resilience.max-delay can not be shorter than base-delay, and no delay can be negative.");
+        }
+        if(breakerWindow < 1 || breakerFailureRate <= 0 || breakerFailureRate > 1){
+            throw new IllegalArgumentException("youtube.resilience.breaker-window must be at least 1 and breaker-failure-rate between 0 and 1.");
+        }
+        if(!TransportProperties.isPositive(breakerOpenFor)){
+            throw new IllegalArgumentException("youtube.resilience.breaker-open-for must be longer than 0.");
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * The "youtube.threads.*" values.
+ *
+ * @param virtual whether every request and upstream query runs on a virtual thread of its own.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.threads")
+public record ThreadsProperties(@DefaultValue("false") boolean virtual) {
+}
@@ -0,0 +1,43 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The "youtube.transport.*" values, i.e. the HTTP connections to the YouTube APIs.
+ *
+ * @param type "pooled" (connections are kept alive and reused) or "simple" (the JDK's default HTTP client).
+ * @param maxConnections the most connections open at the same time.
+ * @param maxConnectionsPerRoute the most connections open at the same time to a single host.
+ * @param connectTimeout how long connecting may take.
+ * @param readTimeout how long waiting for a response may take.
+ * @param idleEviction how long an unused connection is kept open.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.transport")
+public record TransportProperties(@DefaultValue("pooled") String type,
+                                  @DefaultValue("50") int maxConnections,
+                                  @DefaultValue("20") int maxConnectionsPerRoute,
+                                  @DefaultValue("5s") Duration connectTimeout,
+                                  @DefaultValue("20s") Duration readTimeout,
+                                  @DefaultValue("30s") Duration idleEviction) {
+
+    public TransportProperties {
+        if(!type.equals("pooled") && !type.equals("simple")){
+            throw new IllegalArgumentException("youtube.transport.type must be \"pooled\" or \"simple\", not " + type);
+        }
+        if(maxConnections < 1 || maxConnectionsPerRoute < 1 || maxConnectionsPerRoute > maxConnections){
+            throw new IllegalArgumentException("youtube.transport.max-connections-per-route must be between 1 and max-connections.");
+        }
+        if(!isPositive(connectTimeout) || !isPositive(readTimeout) || !isPositive(idleEviction)){
+            throw new IllegalArgumentException("The timeouts of youtube.transport must be longer than 0.");
+        }
+    }
+
+    static boolean isPositive(Duration duration) {
+        return !duration.isNegative() && !duration.isZero();
+    }
+}
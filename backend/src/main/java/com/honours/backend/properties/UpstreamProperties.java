@@ -0,0 +1,23 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The "youtube.upstream.*" values.
+ *
+ * @param callTimeout how long a single query may take when several are sent at the same time.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.upstream")
+public record UpstreamProperties(@DefaultValue("15s") Duration callTimeout) {
+
+    public UpstreamProperties {
+        if(!TransportProperties.isPositive(callTimeout)){
+            throw new IllegalArgumentException("youtube.upstream.call-timeout must be longer than 0.");
+        }
+    }
+}
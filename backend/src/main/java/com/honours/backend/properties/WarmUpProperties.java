@@ -0,0 +1,30 @@
+package com.honours.backend.properties;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConstructorBinding;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * The "youtube.warm-up.*" values.
+ *
+ * @param enabled whether the first request of a user loads the pages they usually open next.
+ * @param threads the size of the warm-up pool.
+ * @param keepFor how long the loaded pages are kept.
+ */
+@ConstructorBinding
+@ConfigurationProperties("youtube.warm-up")
+public record WarmUpProperties(@DefaultValue("false") boolean enabled,
+                               @DefaultValue("2") int threads,
+                               @DefaultValue("5m") Duration keepFor) {
+
+    public WarmUpProperties {
+        if(threads < 1){
+            throw new IllegalArgumentException("youtube.warm-up.threads must be at least 1, not " + threads);
+        }
+        if(!TransportProperties.isPositive(keepFor)){
+            throw new IllegalArgumentException("youtube.warm-up.keep-for must be longer than 0.");
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.honours.backend.receivedRequests;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.util.Key;
+
+/**
+ * This class is accepted by the HTTP request body and 3 different values are expected in the shape of a
+ * JSON object - a video ID, a token - CustomResponseToken, and optionally the maximum number of comments wanted.
+ * It is passed by the front-end in requests (as a request body) for the comments of a video.
+ */
+public class CommentsTokenResponse {
+    // The json key is "video_id"
+    @Key("video_id")
+    private String video_id;
+
+    // The json key is "token"
+    @Key("token")
+    private CustomTokenResponse token;
+
+    // The json key is "max_comments", if it is left out the server's default limit is used.
+    @Key("max_comments")
+    private Integer max_comments;
+
+    // Getters and setters are set up for the request body being generated here.
+
+    public CommentsTokenResponse(CustomTokenResponse token, String video_id, Integer max_comments){
+        this.token = token;
+        this.video_id = video_id;
+        this.max_comments = max_comments;
+    }
+
+    public String getVidID() {
+        return video_id;
+    }
+
+    public TokenResponse getTr() {
+        return token;
+    }
+
+    public Integer getMaxComments() {
+        return max_comments;
+    }
+
+    public void setVideID(String video_id) {
+        this.video_id = video_id;
+    }
+
+    public void setTr(CustomTokenResponse token) {
+        this.token = token;
+    }
+
+    public void setMaxComments(Integer max_comments) {
+        this.max_comments = max_comments;
+    }
+}
@@ -0,0 +1,40 @@
+package com.honours.backend.receivedRequests;
+
+import com.google.api.client.util.Key;
+
+/**
+ * This class is accepted by the HTTP request body for the best videos out of the whole channel.
+ * Only the token is required in the JSON object, the number of videos is optional (5 if left out).
+ */
+public class TopVideosTokenResponse {
+    // The JSON key for the authentication token in the shape "token":{OAUTH 2.0 AUTHENTICATION TOKEN HERE}
+    @Key("token")
+    private CustomTokenResponse token;
+
+    // The JSON key is "k", the number of best videos wanted (at most 50).
+    @Key("k")
+    private Integer k;
+
+    // Getters and setters for the customised body request object are set up here too.
+
+    public TopVideosTokenResponse(CustomTokenResponse token, Integer k) {
+        this.token = token;
+        this.k = k;
+    }
+
+    public CustomTokenResponse getToken() {
+        return token;
+    }
+
+    public Integer getK() {
+        return k;
+    }
+
+    public void setToken(CustomTokenResponse token) {
+        this.token = token;
+    }
+
+    public void setK(Integer k) {
+        this.k = k;
+    }
+}
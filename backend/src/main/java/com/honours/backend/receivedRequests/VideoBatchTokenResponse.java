@@ -0,0 +1,43 @@
+package com.honours.backend.receivedRequests;
+
+import com.google.api.client.util.Key;
+
+import java.util.List;
+
+/**
+ * This class is accepted by the HTTP request body for the analysis of several videos at once. Both the token and
+ * the list of video IDs are required in the JSON object.
+ * It is passed by the front-end in requests (as a request body) when comparing videos.
+ */
+public class VideoBatchTokenResponse {
+    // The JSON key for the authentication token in the shape "token":{OAUTH 2.0 AUTHENTICATION TOKEN HERE}
+    @Key("token")
+    private CustomTokenResponse token;
+
+    // The JSON key is "video_ids", the videos to analyse (at most 200).
+    @Key("video_ids")
+    private List<String> video_ids;
+
+    // Getters and setters for the customised body request object are set up here too.
+
+    public VideoBatchTokenResponse(CustomTokenResponse token, List<String> video_ids) {
+        this.token = token;
+        this.video_ids = video_ids;
+    }
+
+    public CustomTokenResponse getToken() {
+        return token;
+    }
+
+    public List<String> getVideo_ids() {
+        return video_ids;
+    }
+
+    public void setToken(CustomTokenResponse token) {
+        this.token = token;
+    }
+
+    public void setVideo_ids(List<String> video_ids) {
+        this.video_ids = video_ids;
+    }
+}
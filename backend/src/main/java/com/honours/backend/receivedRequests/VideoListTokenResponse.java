@@ -0,0 +1,81 @@
+package com.honours.backend.receivedRequests;
+
+import com.google.api.client.util.Key;
+
+/**
+ * This class is accepted by the HTTP request body for a page of the channel's video index. Only the token is
+ * required in the JSON object, the page token, page size, title search and privacy filter are all optional.
+ * It is passed by the front-end in requests (as a request body) for the videos page.
+ */
+public class VideoListTokenResponse {
+    // The JSON key for the authentication token in the shape "token":{OAUTH 2.0 AUTHENTICATION TOKEN HERE}
+    @Key("token")
+    private CustomTokenResponse token;
+
+    // The JSON key for the page token is "page_token", it is one of the tokens returned with the previous page.
+    @Key("page_token")
+    private String page_token;
+
+    // The JSON key is "page_size", 10 videos per page if left out.
+    @Key("page_size")
+    private Integer page_size;
+
+    // The JSON key is "query", only videos with a title containing it are listed.
+    @Key("query")
+    private String query;
+
+    // The JSON key is "privacy", e.g. "public", "unlisted" or "private".
+    @Key("privacy")
+    private String privacy;
+
+    // Getters and setters for the customised body request object are set up here too.
+
+    public VideoListTokenResponse(CustomTokenResponse token, String page_token, Integer page_size,
+                                  String query, String privacy) {
+        this.token = token;
+        this.page_token = page_token;
+        this.page_size = page_size;
+        this.query = query;
+        this.privacy = privacy;
+    }
+
+    public CustomTokenResponse getToken() {
+        return token;
+    }
+
+    public String getPage_token() {
+        return page_token;
+    }
+
+    public Integer getPage_size() {
+        return page_size;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public String getPrivacy() {
+        return privacy;
+    }
+
+    public void setToken(CustomTokenResponse token) {
+        this.token = token;
+    }
+
+    public void setPage_token(String page_token) {
+        this.page_token = page_token;
+    }
+
+    public void setPage_size(Integer page_size) {
+        this.page_size = page_size;
+    }
+
+    public void setQuery(String query) {
+        this.query = query;
+    }
+
+    public void setPrivacy(String privacy) {
+        this.privacy = privacy;
+    }
+}
@@ -0,0 +1,40 @@
+package com.honours.backend;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+// Tests do not export metrics unless asked to.
+@AutoConfigureMetrics
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MetricsEndpointTests {
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    /**
+     * The Prometheus endpoint exports the route timers (with histogram buckets), the response sizes, the caches
+     * and the upstream pool.
+     */
+    @Test
+    void routesCachesAndPoolsAreExported() {
+        for (int i = 0; i < 3; i++) rest.getForEntity("/test", String.class);
+
+        ResponseEntity<String> scrape = rest.getForEntity("/actuator/prometheus", String.class);
+        assert scrape.getStatusCode() == HttpStatus.OK : "The Prometheus endpoint returned " + scrape.getStatusCode();
+        String metrics = scrape.getBody();
+
+        assert metrics.contains("http_server_requests_seconds_bucket{") && metrics.contains("uri=\"/test\"")
+                : "The route timer (or its histogram) is missing!";
+        assert metrics.contains("http_server_response_size_bytes_count{") : "The response sizes are missing!";
+        assert metrics.contains("http_server_response_size_bytes_sum{status=\"200\",uri=\"/test\",} 45.0")
+                : "The 3 responses of 15 bytes were not recorded!";
+        assert metrics.contains("cache_gets_total{cache=\"analytics\"") : "The cache metrics are missing!";
+        assert metrics.contains("executor_pool_size_threads{name=\"upstream\"") : "The upstream pool metrics are missing!";
+        assert metrics.contains("youtube_quota_remaining_units") : "The remaining quota is missing!";
+    }
+}
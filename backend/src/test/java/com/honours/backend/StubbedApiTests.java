@@ -0,0 +1,249 @@
+package com.honours.backend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Runs whole requests through ApiController, with the backend pointed at a local YouTube stand-in instead of
+ * Google (see YouTubeStub).
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class StubbedApiTests {
+    private static final YouTubeStub STUB = start();
+
+    @Autowired
+    private TestRestTemplate rest;
+
+    @LocalServerPort
+    private int port;
+
+    private static YouTubeStub start() {
+        try{
+            return new YouTubeStub(120);
+        }
+        catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @DynamicPropertySource
+    static void pointAtTheStub(DynamicPropertyRegistry registry) {
+        registry.add("youtube.api.root-url", STUB::rootUrl);
+        // Failed queries are sent again straight away, so the error tests do not wait.
+        registry.add("youtube.resilience.base-delay", () -> "1ms");
+        registry.add("youtube.resilience.max-delay", () -> "5ms");
+        // Nothing is stored on disk, and only the queries of the tested requests are counted.
+        registry.add("youtube.metrics-store.dir", () -> "");
+        registry.add("youtube.warm-up.enabled", () -> "false");
+    }
+
+    @BeforeEach
+    void resetStub() {
+        STUB.reset();
+    }
+
+    @AfterAll
+    static void stopStub() {
+        STUB.close();
+    }
+
+    /**
+     * The pages the front-end opens are all answered from the stand-in: the dashboard's sections, the videos page,
+     * a video's analysis and its comments.
+     */
+    @Test
+    void theFrontEndsRoutesWorkOffline() {
+        Map<String, Object> token = token("routes");
+        for (String route : List.of("/api/channelBasics", "/api/dashboard", "/api/top20Subs", "/api/dailyTrends",
+                "/api/lastVidAnalysis", "/api/top5LatestVideos")) {
+            ResponseEntity<String> response = rest.postForEntity(route, token, String.class);
+            assert response.getStatusCode() == HttpStatus.OK : route + " returned " + response.getStatusCode();
+        }
+
+        Map<?, ?> videos = rest.postForObject("/api/videos", Map.of("token", token, "page_size", 50), Map.class);
+        assert ((Number) videos.get("total")).intValue() == 120 : "The index holds " + videos.get("total") + " videos!";
+
+        Map<?, ?> analysis = rest.postForObject("/api/vidAnalysis", Map.of("token", token, "video_id", "vid3"), Map.class);
+        assert analysis.get("title").equals("Benchmark video 3") : "Got the analysis of " + analysis.get("title");
+
+        List<?> comments = rest.postForObject("/api/get200Comments", Map.of("token", token, "video_id", "vid3"), List.class);
+        assert comments.size() == 200 : "Got " + comments.size() + " comments!";
+    }
+
+    /**
+     * Every access token gets a channel of its own size.
+     */
+    @Test
+    void channelsHaveTheirOwnSize() {
+        STUB.addChannel("small-channel", new YouTubeStub.Channel("UCsmall", 7, 3, 12));
+        Map<String, Object> token = token("small-channel");
+
+        Map<?, ?> videos = rest.postForObject("/api/videos", Map.of("token", token), Map.class);
+        List<?> subscribers = rest.postForObject("/api/top20Subs", token, List.class);
+
+        assert ((Number) videos.get("total")).intValue() == 7 : "The index holds " + videos.get("total") + " videos!";
+        assert subscribers.size() == 3 : "Got " + subscribers.size() + " subscribers!";
+    }
+
+    /**
+     * A temporary error is retried and does not reach the user, while a lasting one ends the request with an error.
+     */
+    @Test
+    void errorsAreInjected() {
+        Map<String, Object> token = token("errors");
+        Map<String, Object> body = Map.of("token", token, "video_id", "vid1");
+
+        STUB.failNext("videos.list", 1, 503);
+        ResponseEntity<String> retried = rest.postForEntity("/api/vidAnalysis", body, String.class);
+        assert retried.getStatusCode() == HttpStatus.OK : "A single 503 returned " + retried.getStatusCode();
+        assert STUB.queries("videos.list") == 2 : "videos.list was queried " + STUB.queries("videos.list") + " times!";
+
+        STUB.setProfile("videos.list", YouTubeStub.Profile.INSTANT.withErrors(1, 404));
+        ResponseEntity<String> failed = rest.postForEntity("/api/vidAnalysis", body, String.class);
+        assert failed.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR : "A 404 returned " + failed.getStatusCode();
+    }
+
+    /**
+     * Large responses are gzipped for a client that accepts it, and the typed comments keep the JSON keys the
+     * front-end reads.
+     */
+    @Test
+    void largeResponsesAreCompressed() throws Exception {
+        String body = new ObjectMapper().writeValueAsString(Map.of("token", token("gzip"), "video_id", "vid2"));
+        HttpResponse<InputStream> response = HttpClient.newHttpClient().send(
+                HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/api/get200Comments"))
+                        .header("Content-Type", "application/json")
+                        .header("Accept-Encoding", "gzip")
+                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                        .build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+
+        assert response.statusCode() == 200 : "Got " + response.statusCode();
+        assert response.headers().firstValue("Content-Encoding").orElse("").equals("gzip") : "Not compressed!";
+        List<?> comments;
+        try (InputStream json = new GZIPInputStream(response.body())) {
+            comments = new ObjectMapper().readValue(json, List.class);
+        }
+        assert comments.size() == 200 : "Got " + comments.size() + " comments!";
+        Set<?> keys = ((Map<?, ?>) comments.get(0)).keySet();
+        assert keys.equals(Set.of("comment_body", "comment_author", "comment_author_profile_picture_URL")) : "Keys " + keys;
+    }
+
+    /**
+     * A client asking for CBOR or Smile gets the same comments and videos as in JSON, in fewer bytes.
+     */
+    @Test
+    void binaryFormatsAreNegotiated() throws Exception {
+        Map<String, Object> comments = Map.of("token", token("binary"), "video_id", "vid4");
+        Map<String, Object> videos = Map.of("token", token("binary"), "page_size", 50);
+
+        byte[] jsonComments = post("/api/get200Comments", comments, MediaType.APPLICATION_JSON);
+        byte[] cborComments = post("/api/get200Comments", comments, MediaType.APPLICATION_CBOR);
+        byte[] jsonVideos = post("/api/videos", videos, MediaType.APPLICATION_JSON);
+        byte[] smileVideos = post("/api/videos", videos, MediaType.parseMediaType("application/x-jackson-smile"));
+
+        ObjectMapper json = new ObjectMapper();
+        assert new ObjectMapper(new CBORFactory()).readTree(cborComments).equals(json.readTree(jsonComments))
+                : "The CBOR comments differ from the JSON ones!";
+        assert new ObjectMapper(new SmileFactory()).readTree(smileVideos).equals(json.readTree(jsonVideos))
+                : "The Smile videos differ from the JSON ones!";
+        assert cborComments.length < jsonComments.length : cborComments.length + " CBOR bytes for " + jsonComments.length;
+        assert smileVideos.length < jsonVideos.length : smileVideos.length + " Smile bytes for " + jsonVideos.length;
+    }
+
+    /**
+     * A failed request asking for CBOR gets its error in CBOR too, and not as plain text labelled as CBOR.
+     */
+    @Test
+    void errorsAreSentInTheNegotiatedFormat() throws Exception {
+        List<String> tooMany = new ArrayList<>();
+        for (int i = 0; i < 201; i++) tooMany.add("vid" + i);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+        HttpEntity<Object> request = new HttpEntity<>(Map.of("token", token("cbor-error"), "video_ids", tooMany), headers);
+
+        ResponseEntity<byte[]> response = rest.exchange("/api/vidAnalysis/batch", HttpMethod.POST, request, byte[].class);
+        assert response.getStatusCode() == HttpStatus.BAD_REQUEST : "Got " + response.getStatusCode();
+        assert MediaType.APPLICATION_CBOR.isCompatibleWith(response.getHeaders().getContentType())
+                : "Got " + response.getHeaders().getContentType();
+        Map<?, ?> error = new ObjectMapper(new CBORFactory()).readValue(response.getBody(), Map.class);
+        assert String.valueOf(error.get("error")).startsWith("At most 200 videos") : "Got " + error;
+    }
+
+    /**
+     * A route failing on YouTube's side sends a short error in CBOR too, and not the exception with its stack trace.
+     */
+    @Test
+    void upstreamFailuresAreSentInTheNegotiatedFormat() throws Exception {
+        STUB.failNext("commentThreads.list", 1, 404);
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(MediaType.APPLICATION_CBOR));
+        HttpEntity<Object> request = new HttpEntity<>(Map.of("token", token("cbor-failure"), "video_id", "vid3"), headers);
+
+        ResponseEntity<byte[]> response = rest.exchange("/api/get200Comments", HttpMethod.POST, request, byte[].class);
+        assert response.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR : "Got " + response.getStatusCode();
+        assert MediaType.APPLICATION_CBOR.isCompatibleWith(response.getHeaders().getContentType())
+                : "Got " + response.getHeaders().getContentType();
+        Map<?, ?> error = new ObjectMapper(new CBORFactory()).readValue(response.getBody(), Map.class);
+        assert error.keySet().equals(Set.of("error")) : "Got " + error.keySet();
+    }
+
+    /**
+     * A dashboard section failing on YouTube's side is listed with a short error, and not with YouTube's error body.
+     */
+    @Test
+    void failedDashboardSectionsGetShortErrors() {
+        STUB.addChannel("dashboard-errors", new YouTubeStub.Channel("UCdashboardErrors", 5, 3, 10));
+        STUB.failNext("reports.query", 10, 404);
+
+        Map<?, ?> dashboard = rest.postForObject("/api/dashboard", token("dashboard-errors"), Map.class);
+        Map<?, ?> errors = (Map<?, ?>) dashboard.get("errors");
+        assert "client_error".equals(errors.get("minutesWatched")) : "Got " + errors;
+        assert dashboard.containsKey("subscriberCount") : "A section that did not fail is missing!";
+    }
+
+    private byte[] post(String route, Object body, MediaType accept) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        headers.setAccept(List.of(accept));
+        ResponseEntity<byte[]> response = rest.exchange(route, HttpMethod.POST, new HttpEntity<>(body, headers), byte[].class);
+        assert response.getStatusCode() == HttpStatus.OK : route + " returned " + response.getStatusCode();
+        assert accept.isCompatibleWith(response.getHeaders().getContentType()) : "Got " + response.getHeaders().getContentType();
+        return response.getBody();
+    }
+
+    private static Map<String, Object> token(String accessToken) {
+        return Map.of("access_token", accessToken, "expires_in", 3599, "token_type", "Bearer");
+    }
+}
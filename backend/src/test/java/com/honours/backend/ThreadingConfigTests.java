@@ -0,0 +1,49 @@
+package com.honours.backend;
+
+import com.honours.backend.apiActions.UpstreamPool;
+import com.honours.backend.properties.ThreadsProperties;
+import org.apache.coyote.http11.Http11NioProtocol;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+class ThreadingConfigTests {
+
+    /**
+     * The virtual-thread mode runs upstream queries on virtual threads, and goes back to the bounded pool when
+     * closed.
+     */
+    @Test
+    void virtualModeRunsQueriesOnVirtualThreads() throws Exception {
+        ThreadingConfig config = new ThreadingConfig(new ThreadsProperties(true));
+        try{
+            assert config.isVirtual();
+            Thread thread = UpstreamPool.submit(Thread::currentThread).get(5, TimeUnit.SECONDS);
+            assert thread.isVirtual() : "The query did not run on a virtual thread!";
+            assert thread.getName().startsWith("upstream-vt-") : "The virtual thread is called " + thread.getName();
+        }
+        finally{
+            config.close();
+        }
+        assert UpstreamPool.submit(() -> Thread.currentThread().getName()).get(5, TimeUnit.SECONDS)
+                .startsWith("upstream-") : "The bounded pool was not restored!";
+    }
+
+    /**
+     * Tomcat is handed a single executor for its requests, however often it is customised, and the executor is
+     * shut down with the configuration.
+     */
+    @Test
+    void requestExecutorIsSharedAndShutDown() {
+        ThreadingConfig config = new ThreadingConfig(new ThreadsProperties(true));
+        Http11NioProtocol first = new Http11NioProtocol();
+        Http11NioProtocol second = new Http11NioProtocol();
+        config.virtualRequestThreads().customize(first);
+        config.virtualRequestThreads().customize(second);
+        config.close();
+
+        assert first.getExecutor() == second.getExecutor() : "Every customisation made an executor of its own!";
+        assert ((ExecutorService) first.getExecutor()).isShutdown() : "The request executor was left running!";
+    }
+}
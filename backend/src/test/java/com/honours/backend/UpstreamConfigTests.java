@@ -0,0 +1,66 @@
+package com.honours.backend;
+
+import com.honours.backend.properties.AdviceProperties;
+import com.honours.backend.properties.MetricsStoreProperties;
+import com.honours.backend.properties.ResilienceProperties;
+import com.honours.backend.properties.TransportProperties;
+import com.honours.backend.properties.WarmUpProperties;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.BindException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+
+class UpstreamConfigTests {
+
+    private static <T> T bind(String prefix, Class<T> type, Map<String, String> values) {
+        return new Binder(new MapConfigurationPropertySource(values)).bindOrCreate(prefix, type);
+    }
+
+    private static String valueOf(String invalidProperty) {
+        if(invalidProperty.endsWith("type")) return "fast";
+        return invalidProperty.endsWith("interval") ? "-1s" : "0";
+    }
+
+    /**
+     * Values left out of application.properties get the documented defaults, and an empty store folder keeps
+     * nothing on disk.
+     */
+    @Test
+    void missingValuesGetTheDefaults() {
+        ResilienceProperties resilience = bind("youtube.resilience", ResilienceProperties.class,
+                Map.of("youtube.resilience.burst", "10"));
+        assert resilience.burst() == 10 : "Got " + resilience.burst();
+        assert resilience.maxAttempts() == 3 : "Got " + resilience.maxAttempts();
+        assert resilience.baseDelay().equals(Duration.ofMillis(200)) : "Got " + resilience.baseDelay();
+
+        MetricsStoreProperties store = bind("youtube.metrics-store", MetricsStoreProperties.class,
+                Map.of("youtube.metrics-store.dir", ""));
+        assert store.path() == null : "Got " + store.path();
+        assert !bind("youtube.warm-up", WarmUpProperties.class, Map.of()).enabled() : "Warm-ups are on by default!";
+    }
+
+    /**
+     * An invalid value stops the binding with the property's name, rather than being found out by the first request.
+     */
+    @Test
+    void invalidValuesAreRejected() {
+        for (Map.Entry<String, Class<?>> invalid : Map.<String, Class<?>>of(
+                "youtube.transport.type", TransportProperties.class,
+                "youtube.resilience.max-attempts", ResilienceProperties.class,
+                "youtube.warm-up.threads", WarmUpProperties.class,
+                "youtube.advice.reload-interval", AdviceProperties.class).entrySet()) {
+            String property = invalid.getKey();
+            String prefix = property.substring(0, property.lastIndexOf('.'));
+            try{
+                bind(prefix, invalid.getValue(), Map.of(property, valueOf(property)));
+                assert false : property + " was not rejected!";
+            }
+            catch(BindException ex){
+                assert ex.getCause().getCause().getMessage().contains(property) : "Unexpected failure: " + ex.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+package com.honours.backend;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for the parts of the YouTube Data v3 and Analytics v2 APIs the backend uses (channels.list,
+ * playlistItems.list, videos.list, commentThreads.list, subscriptions.list and reports.query), so whole requests
+ * can be tested, load tested and benchmarked without a Google account, quota or network.
+ * <br>Point the backend at it with youtube.api.root-url (or Actions.setRootUrl()) set to rootUrl().
+ * <br>Every access token gets a synthetic channel: the default one given to the constructor, or one added with
+ * addChannel(). Its videos are "vid0" (the newest), "vid1", ..., and every response is shaped like the real one,
+ * with only the fields the backend reads.
+ * <br>Each API method can be given a latency and an error profile (see setProfile()), to stand for the round trip
+ * to Google or for an outage, and the queries are counted per method (see queries()), as are the connections the
+ * backend opened (see connections()). A test needing answers of its own gives them with answer().
+ */
+public class YouTubeStub implements AutoCloseable {
+    private static final String ALL_CALLS = "*";
+
+    static {
+        // Without this, the JDK server waits for delayed ACKs and every call takes ~40 ms longer.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+
+    /**
+     * A synthetic channel.
+     *
+     * @param id the channel ID.
+     * @param videos how many videos it uploaded.
+     * @param subscribers how many subscribers subscriptions.list lists.
+     * @param comments how many comments each of its videos has.
+     */
+    public record Channel(String id, int videos, int subscribers, int comments) {
+    }
+
+    /**
+     * How an API method answers.
+     *
+     * @param latency how long every response is delayed.
+     * @param jitter up to how much longer a response is randomly delayed on top of the latency.
+     * @param errorRate the share of the queries (0 to 1) that fail.
+     * @param errorStatus the HTTP status of the failed queries, e.g. 503, 429 or 403 (quota exceeded).
+     */
+    public record Profile(Duration latency, Duration jitter, double errorRate, int errorStatus) {
+        public static final Profile INSTANT = new Profile(Duration.ZERO, Duration.ZERO, 0, 503);
+
+        public static Profile latency(Duration latency) {
+            return new Profile(latency, Duration.ZERO, 0, 503);
+        }
+
+        public Profile withJitter(Duration jitter) {
+            return new Profile(latency, jitter, errorRate, errorStatus);
+        }
+
+        public Profile withErrors(double errorRate, int errorStatus) {
+            return new Profile(latency, jitter, errorRate, errorStatus);
+        }
+    }
+
+    /**
+     * Answers the queries of an API method.
+     */
+    @FunctionalInterface
+    public interface Responder {
+        /**
+         * @param channel the channel of the query's access token.
+         * @param params the query's parameters, with the values of a list parameter joined with commas.
+         * @return the JSON response, or null for the stub's own answer.
+         */
+        String respond(Channel channel, Map<String, String> params);
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final Channel defaultChannel;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final Map<String, Profile> profiles = new ConcurrentHashMap<>();
+    private final Map<String, Responder> answers = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> failNext = new ConcurrentHashMap<>();
+    private final Map<String, AtomicInteger> queries = new ConcurrentHashMap<>();
+    // Each connection comes from a client port of its own, so this counts the connections opened.
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    public YouTubeStub(int videos) throws IOException {
+        this(videos, Duration.ZERO);
+    }
+
+    public YouTubeStub(int videos, Duration latency) throws IOException {
+        defaultChannel = new Channel("UCbench", videos, 20, 200);
+        profiles.put(ALL_CALLS, Profile.latency(latency));
+        // A backlog of 0 means the JDK's default of 50, too few for a load test.
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        // The responses being delayed must not hold back the others, like on Google's side.
+        executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "youtube-stub");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(executor);
+        handle("/youtube/v3/channels", "channels.list", this::channels);
+        handle("/youtube/v3/playlistItems", "playlistItems.list", this::playlistItems);
+        handle("/youtube/v3/videos", "videos.list", this::videos);
+        handle("/youtube/v3/commentThreads", "commentThreads.list", this::commentThreads);
+        handle("/youtube/v3/subscriptions", "subscriptions.list", this::subscriptions);
+        handle("/v2/reports", "reports.query", this::reports);
+        server.start();
+    }
+
+    /**
+     * @return the root URL to give to the backend (youtube.api.root-url) instead of Google's.
+     */
+    public String rootUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Gives an access token its own channel, instead of the default one.
+     *
+     * @param accessToken the access token the channel belongs to.
+     * @param channel the channel.
+     */
+    public void addChannel(String accessToken, Channel channel) {
+        channels.put(accessToken, channel);
+    }
+
+    /**
+     * Changes how an API method answers from now on.
+     *
+     * @param call the API method, e.g. "reports.query", or null for every method without a profile of its own.
+     * @param profile its latency and errors.
+     */
+    public void setProfile(String call, Profile profile) {
+        profiles.put(call == null ? ALL_CALLS : call, profile);
+    }
+
+    /**
+     * Answers an API method in a way of its own from now on, e.g. with data shaped for a test, or to look at the
+     * queries (the answer is given after the method's latency, in the thread serving the query). Failures still
+     * come from the profile and failNext().
+     *
+     * @param call the API method, e.g. "reports.query".
+     * @param responder gives the JSON responses, or null to leave a query to the stub's own answer.
+     */
+    public void answer(String call, Responder responder) {
+        answers.put(call, responder);
+    }
+
+    /**
+     * Makes the next queries of an API method fail, whatever its profile.
+     *
+     * @param call the API method, e.g. "videos.list".
+     * @param times how many of its next queries fail.
+     * @param status the HTTP status they fail with.
+     */
+    public void failNext(String call, int times, int status) {
+        failNext.put(call + "#" + status + "#" + reasonOf(status), new AtomicInteger(times));
+    }
+
+    /**
+     * Makes the next queries of an API method fail with a 403 that is not about quota: the "forbidden" error
+     * reports.query returns for data the user may not see, e.g. the revenue of a channel that is not monetized.
+     *
+     * @param call the API method, e.g. "reports.query".
+     * @param times how many of its next queries fail.
+     */
+    public void forbidNext(String call, int times) {
+        failNext.put(call + "#403#forbidden", new AtomicInteger(times));
+    }
+
+    /**
+     * @param call the API method, e.g. "videos.list".
+     * @return how many times it was queried (including failed queries).
+     */
+    public int queries(String call) {
+        AtomicInteger count = queries.get(call);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * @return how many connections the backend opened to the stub (kept-alive connections are only counted once).
+     */
+    public int connections() {
+        return clientPorts.size();
+    }
+
+    /**
+     * Sets every query and connection count back to 0 and takes away the profiles of single methods, their answers
+     * and the pending failures, leaving the profile of every method as it is.
+     */
+    public void reset() {
+        profiles.keySet().removeIf(call -> !call.equals(ALL_CALLS));
+        answers.clear();
+        failNext.clear();
+        queries.clear();
+        clientPorts.clear();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(String path, String call, Responder responder) {
+        server.createContext(path, exchange -> {
+            queries.computeIfAbsent(call, c -> new AtomicInteger()).incrementAndGet();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            Profile profile = profiles.getOrDefault(call, profiles.get(ALL_CALLS));
+            delay(profile);
+
+            String[] failure = failure(call, profile);
+            if (failure != null) {
+                int status = Integer.parseInt(failure[0]);
+                respond(exchange, status, error(status, failure[1]));
+                return;
+            }
+            Channel channel = channelOf(exchange);
+            Map<String, String> params = params(exchange);
+            Responder answer = answers.get(call);
+            String json = answer == null ? null : answer.respond(channel, params);
+            respond(exchange, 200, json != null ? json : responder.respond(channel, params));
+        });
+    }
+
+    // The status and the reason of the error the query fails with, or null if it does not fail.
+    private String[] failure(String call, Profile profile) {
+        for (Map.Entry<String, AtomicInteger> next : failNext.entrySet()) {
+            if (next.getKey().startsWith(call + "#") && next.getValue().getAndUpdate(n -> Math.max(0, n - 1)) > 0) {
+                return next.getKey().substring(call.length() + 1).split("#");
+            }
+        }
+        if (profile.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < profile.errorRate()) {
+            return new String[]{String.valueOf(profile.errorStatus()), reasonOf(profile.errorStatus())};
+        }
+        return null;
+    }
+
+    private Channel channelOf(HttpExchange exchange) {
+        String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+        if (authorization == null || !authorization.startsWith("Bearer ")) return defaultChannel;
+        return channels.getOrDefault(authorization.substring("Bearer ".length()), defaultChannel);
+    }
+
+    private String channels(Channel channel, Map<String, String> params) {
+        // Without "mine", the channels of the given IDs are wanted (e.g. the subscribers, see subscriptions()).
+        if (!params.containsKey("id")) {
+            return "{\"items\":[{\"id\":\"" + channel.id() + "\","
+                    + "\"snippet\":{\"title\":\"Channel " + channel.id() + "\",\"publishedAt\":\"2015-01-01T00:00:00Z\","
+                    + "\"thumbnails\":{\"medium\":{\"url\":\"https://yt3.ggpht.com/" + channel.id() + "\"}}},"
+                    + "\"contentDetails\":{\"relatedPlaylists\":{\"uploads\":\"UU" + channel.id() + "\"}},"
+                    + "\"statistics\":{\"subscriberCount\":\"" + (channel.subscribers() * 617L + 1) + "\"}}]}";
+        }
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        String[] ids = params.get("id").split(",");
+        for (int i = 0; i < ids.length; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"id\":\"").append(ids[i]).append("\",\"snippet\":{\"title\":\"Subscriber ").append(ids[i])
+                    .append("\",\"thumbnails\":{\"default\":{\"url\":\"https://yt3.ggpht.com/").append(ids[i])
+                    .append("\"},\"medium\":{\"url\":\"https://yt3.ggpht.com/").append(ids[i])
+                    .append("\"}}},\"statistics\":{\"subscriberCount\":\"").append(1_000 + (i * 7919L) % 50_000)
+                    .append("\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    // The page token is simply the index of the first video on the page.
+    private String playlistItems(Channel channel, Map<String, String> params) {
+        int videos = channel.videos();
+        int from = Integer.parseInt(params.getOrDefault("pageToken", "0"));
+        int to = Math.min(videos, from + Integer.parseInt(params.getOrDefault("maxResults", "5")));
+
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) json.append(',');
+            json.append("{\"snippet\":{\"title\":\"Benchmark video ").append(i)
+                    .append("\",\"publishedAt\":\"").append(publishedAt(i))
+                    .append("\",\"thumbnails\":{\"high\":{\"url\":\"https://i.ytimg.com/vi/vid").append(i)
+                    .append("/hqdefault.jpg\"}},\"resourceId\":{\"videoId\":\"vid").append(i)
+                    .append("\"}},\"contentDetails\":{\"videoId\":\"vid").append(i)
+                    .append("\"},\"status\":{\"privacyStatus\":\"public\"}}");
+        }
+        json.append(']');
+        if (to < videos) json.append(",\"nextPageToken\":\"").append(to).append('"');
+        if (from > 0) json.append(",\"prevPageToken\":\"").append(Math.max(0, from - 10)).append('"');
+        return json.append('}').toString();
+    }
+
+    private String videos(Channel channel, Map<String, String> params) {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (String id : params.getOrDefault("id", "vid0").split(",")) {
+            int n = index(id);
+            // Like YouTube, videos that do not exist are left out.
+            if (n < 0 || n >= channel.videos()) continue;
+            if (json.charAt(json.length() - 1) != '[') json.append(',');
+            json.append("{\"id\":\"").append(id)
+                    .append("\",\"snippet\":{\"title\":\"Benchmark video ").append(n)
+                    .append("\",\"publishedAt\":\"").append(publishedAt(n))
+                    .append("\",\"thumbnails\":{\"high\":{\"url\":\"https://i.ytimg.com/vi/").append(id)
+                    .append("/hqdefault.jpg\"}}},\"statistics\":{\"viewCount\":\"").append(views(n))
+                    .append("\",\"likeCount\":\"").append(views(n) / 20)
+                    .append("\",\"dislikeCount\":\"").append(views(n) / 500)
+                    .append("\",\"commentCount\":\"").append(views(n) / 100)
+                    .append("\"},\"status\":{\"privacyStatus\":\"public\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    // The page token is simply the index of the first comment on the page.
+    private String commentThreads(Channel channel, Map<String, String> params) {
+        int from = Integer.parseInt(params.getOrDefault("pageToken", "0"));
+        int to = Math.min(channel.comments(), from + Integer.parseInt(params.getOrDefault("maxResults", "20")));
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) json.append(',');
+            json.append("{\"id\":\"").append(params.get("videoId")).append("-comment").append(i)
+                    .append("\",\"snippet\":{\"topLevelComment\":{\"snippet\":{\"textDisplay\":\"Benchmark comment ")
+                    .append(i).append(", great video!\",\"authorDisplayName\":\"Viewer ").append(i)
+                    .append("\",\"authorProfileImageUrl\":\"https://yt3.ggpht.com/viewer").append(i).append("\"}}}}");
+        }
+        json.append(']');
+        if (to < channel.comments()) json.append(",\"nextPageToken\":\"").append(to).append('"');
+        return json.append('}').toString();
+    }
+
+    private String subscriptions(Channel channel, Map<String, String> params) {
+        int size = Math.min(channel.subscribers(), Integer.parseInt(params.getOrDefault("maxResults", "5")));
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < size; i++) {
+            if (i > 0) json.append(',');
+            json.append("{\"subscriberSnippet\":{\"channelId\":\"UCsub").append(i).append("\"}}");
+        }
+        return json.append("]}").toString();
+    }
+
+    private String reports(Channel channel, Map<String, String> params) {
+        String dimensions = params.getOrDefault("dimensions", "");
+        String metrics = params.getOrDefault("metrics", "");
+        StringBuilder json = new StringBuilder("{\"rows\":[");
+
+        if (dimensions.equals("video")) {
+            String[] ids = params.getOrDefault("filters", "video==vid0").substring("video==".length()).split(",");
+            for (int i = 0; i < ids.length; i++) {
+                if (i > 0) json.append(',');
+                long views = views(index(ids[i]));
+                if (metrics.startsWith("averageViewDuration")) {
+                    // The overall metrics of every video in the filter (see getVideoPerformanceBatch()).
+                    json.append("[\"").append(ids[i]).append("\",95,18.4,7,1.2]");
+                    continue;
+                }
+                // The scoring metrics of every video in the filter.
+                json.append("[\"").append(ids[i]).append("\",").append(views / 100).append(',').append(views / 20)
+                        .append(',').append(views / 500).append(',').append(views / 200).append(',')
+                        .append(views / 300).append(',').append(35 + index(ids[i]) % 40).append(',')
+                        .append(views).append(',').append(views * 3).append(']');
+            }
+        }
+        else if (dimensions.equals("elapsedVideoTimeRatio")) {
+            // The retention curve: the ratio, audienceWatchRatio and relativeRetentionPerformance.
+            for (int i = 0; i < 100; i++) {
+                if (i > 0) json.append(',');
+                double ratio = i < 10 ? 1.0 - i * 0.04 : 0.64 - (i - 10) * 0.005;
+                json.append('[').append((i + 1) / 100.0).append(',').append(ratio).append(',').append(0.5).append(']');
+            }
+        }
+        else if (dimensions.equals("day")) {
+            // Daily metrics (see MetricsStore): the same values every day, one per metric.
+            int count = metrics.isEmpty() ? 1 : metrics.split(",").length;
+            LocalDate to = LocalDate.parse(params.get("endDate"));
+            for (LocalDate day = LocalDate.parse(params.get("startDate")); !day.isAfter(to); day = day.plusDays(1)) {
+                if (json.charAt(json.length() - 1) != '[') json.append(',');
+                json.append("[\"").append(day).append('"');
+                for (int i = 0; i < count; i++) json.append(',').append(100 + i * 50);
+                json.append(']');
+            }
+        }
+        else if (metrics.startsWith("averageViewDuration")) {
+            json.append("[95,18.4,7,1.2]");
+        }
+        else {
+            // Single metric channel totals, e.g. estimatedAdRevenue.
+            json.append("[123456]");
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String reasonOf(int status) {
+        return switch (status) {
+            case 403 -> "quotaExceeded";
+            case 404 -> "notFound";
+            case 429 -> "rateLimitExceeded";
+            default -> "backendError";
+        };
+    }
+
+    private static String error(int status, String reason) {
+        return "{\"error\":{\"code\":" + status + ",\"message\":\"" + reason + "\",\"errors\":[{\"domain\":\"youtube\","
+                + "\"reason\":\"" + reason + "\",\"message\":\"" + reason + "\"}]}}";
+    }
+
+    private static String publishedAt(int video) {
+        // The newest video was uploaded on the 1st of March 2024 and there is one video a day before it.
+        return LocalDate.of(2024, 3, 1).minusDays(video) + "T12:00:00Z";
+    }
+
+    private static long views(int video) {
+        return 1_000 + (video * 7919L) % 100_000;
+    }
+
+    private static int index(String videoID) {
+        try{
+            return Integer.parseInt(videoID.substring(videoID.lastIndexOf("vid") + 3));
+        }
+        catch(RuntimeException ex){
+            return -1;
+        }
+    }
+
+    private static Map<String, String> params(HttpExchange exchange) {
+        Map<String, String> params = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null) return params;
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            // List parameters (e.g. the IDs of videos.list) are sent as one parameter per value, they are joined back.
+            if (eq > 0) params.merge(pair.substring(0, eq), URLDecoder.decode(pair.substring(eq + 1), StandardCharsets.UTF_8),
+                    (first, next) -> first + "," + next);
+        }
+        return params;
+    }
+
+    private static void delay(Profile profile) {
+        long millis = profile.latency().toMillis();
+        if (!profile.jitter().isZero()) millis += ThreadLocalRandom.current().nextLong(profile.jitter().toMillis() + 1);
+        if (millis <= 0) return;
+        try {
+            Thread.sleep(millis);
+        }
+        catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+        exchange.sendResponseHeaders(status, body.length);
+        exchange.getResponseBody().write(body);
+        exchange.close();
+    }
+}
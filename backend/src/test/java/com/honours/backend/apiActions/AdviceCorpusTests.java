@@ -0,0 +1,38 @@
+package com.honours.backend.apiActions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+class AdviceCorpusTests {
+
+    /**
+     * A missing advice file must not break the video analysis, picking from it just gives no advice.
+     */
+    @Test
+    void missingAdviceFileGivesNoAdvice() {
+        AdviceCorpus.reload();
+        assert AdviceCorpus.pick(".noSuchAdvice") == null : "Advice was returned for a file that does not exist!";
+    }
+
+    /**
+     * Every piece of advice picked has to be one of the non-blank lines of the file it was picked from,
+     * and over enough picks every line should come up.
+     */
+    @Test
+    void pickedAdviceComesFromTheFile() {
+        AdviceCorpus.reload();
+        Set<String> lines = Set.of("Ask your viewers a question at the end of the video.",
+                "Reply to the first comments on your video.",
+                "Pin a comment that invites discussion.");
+        Set<String> picked = new HashSet<>();
+
+        for (int i = 0; i < 300; i++) {
+            String advice = AdviceCorpus.pick(AdviceCorpus.ENGAGEMENT);
+            assert lines.contains(advice) : "Unexpected advice: " + advice;
+            picked.add(advice);
+        }
+        assert picked.equals(lines) : "Some advice was never picked: " + picked;
+    }
+}
@@ -0,0 +1,123 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.services.youtubeAnalytics.v2.YouTubeAnalytics;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+class AnalyticsCacheTests {
+    private YouTubeStub stub;
+    private final AtomicLong now = new AtomicLong();
+    private YtClients clients;
+
+    /**
+     * reports.query returns the number of the query as its only value, so every fetch can be told apart.
+     */
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(5);
+        stub.answer("reports.query", (channel, params) -> "{\"rows\":[[" + calls() + "]]}");
+        Actions.setRootUrl(stub.rootUrl());
+
+        // Every query is sent once, so the value of a response is the number of queries sent.
+        UpstreamResilience.setMaxAttempts(1);
+        AnalyticsCache.setClock(now::get);
+        AnalyticsCache.configure(100, Duration.ofHours(1), Duration.ofHours(24));
+        clients = Actions.makeYtObjects(new TokenResponse().setAccessToken("analytics-token"));
+    }
+
+    @AfterEach
+    void stopStub() {
+        AnalyticsCache.setClock(null);
+        UpstreamResilience.setMaxAttempts(3);
+        UpstreamResilience.reset();
+        AnalyticsCache.invalidateAll();
+        Actions.setRootUrl(null);
+        stub.close();
+    }
+
+    private int calls() {
+        return stub.queries("reports.query");
+    }
+
+    private YouTubeAnalytics.Reports.Query watchTime(String endDate) throws IOException {
+        return query("estimatedMinutesWatched", endDate);
+    }
+
+    private YouTubeAnalytics.Reports.Query query(String metrics, String endDate) throws IOException {
+        return clients.ytAnalytics().reports().query()
+                .setIds("channel==MINE")
+                .setStartDate("2024-01-01")
+                .setEndDate(endDate)
+                .setMetrics(metrics);
+    }
+
+    private static String value(List<List<Object>> rows) {
+        return rows.get(0).get(0).toString();
+    }
+
+    /**
+     * The same query for the same channel and day is only sent once, but another channel or another day is not
+     * served from the cache.
+     */
+    @Test
+    void sameQueryIsServedFromTheCache() throws Exception {
+        // The hit rate is counted since startup, so this test uses metrics no other test uses.
+        assert value(AnalyticsCache.rows(clients, "UC1", query("views,likes", "2024-03-01"))).equals("1");
+        assert value(AnalyticsCache.rows(clients, "UC1", query("views,likes", "2024-03-01"))).equals("1") : "The query was sent again!";
+        assert calls() == 1 : "Expected 1 upstream call but there were " + calls();
+
+        assert value(AnalyticsCache.rows(clients, "UC2", query("views,likes", "2024-03-01"))).equals("2") : "Another channel got cached rows!";
+        assert value(AnalyticsCache.rows(clients, "UC1", query("views,likes", "2024-03-02"))).equals("3") : "The next day got cached rows!";
+        assert AnalyticsCache.hitRate("views,likes") == 0.25 : "Expected 1 hit out of 4 lookups!";
+    }
+
+    /**
+     * Stale rows are returned straight away and fetched again in the background, and the new rows are used
+     * once they arrive.
+     */
+    @Test
+    void staleRowsAreRevalidatedInTheBackground() throws Exception {
+        AnalyticsCache.rows(clients, "UC1", watchTime("2024-03-01"));
+        now.addAndGet(TimeUnit.HOURS.toNanos(2));
+
+        assert value(AnalyticsCache.rows(clients, "UC1", watchTime("2024-03-01"))).equals("1") : "The stale rows were not returned!";
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (calls() < 2 && System.nanoTime() < deadline) LockSupport.parkNanos(1_000_000);
+        assert calls() == 2 : "The stale rows were not fetched again!";
+
+        deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!value(AnalyticsCache.rows(clients, "UC1", watchTime("2024-03-01"))).equals("2") && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(1_000_000);
+        }
+        assert value(AnalyticsCache.rows(clients, "UC1", watchTime("2024-03-01"))).equals("2") : "The new rows were not cached!";
+        assert calls() == 2 : "Fresh rows were fetched again!";
+    }
+
+    /**
+     * A failed query is not cached, the next request tries again.
+     */
+    @Test
+    void failuresAreNotCached() throws Exception {
+        stub.failNext("reports.query", 1, 500);
+        try{
+            AnalyticsCache.rows(clients, "UC1", watchTime("2024-03-01"));
+            assert false : "The failure was swallowed!";
+        }
+        catch(IOException expected){
+            // The query failed as it should have.
+        }
+
+        assert value(AnalyticsCache.rows(clients, "UC1", watchTime("2024-03-01"))).equals("2") : "The failure was cached!";
+    }
+}
@@ -0,0 +1,73 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.services.youtube.model.Channel;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+class ChannelCacheTests {
+
+    /**
+     * The dashboard fires several requests for the same user at once. Only one of them should reach YouTube,
+     * the others have to wait for and share its result.
+     */
+    @Test
+    void concurrentLookupsShareOneUpstreamCall() throws Exception {
+        String userKey = ChannelCache.hashToken("dashboard-user");
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Channel>> results = new ArrayList<>();
+
+        for (int i = 0; i < 4; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return ChannelCache.get(userKey, () -> {
+                    upstreamCalls.incrementAndGet();
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(200));
+                    return new Channel().setId("UC-dashboard");
+                });
+            }));
+        }
+        start.countDown();
+        for (Future<Channel> f : results) {
+            assert "UC-dashboard".equals(f.get(10, TimeUnit.SECONDS).getId()) : "Wrong channel returned!";
+        }
+        pool.shutdown();
+
+        assert upstreamCalls.get() == 1 : "Expected one upstream call but got " + upstreamCalls.get();
+    }
+
+    /**
+     * A failed query must reach the caller as the original IOException and must not be cached.
+     */
+    @Test
+    void failuresAreNotCached() throws Exception {
+        String userKey = ChannelCache.hashToken("unlucky-user");
+        try{
+            ChannelCache.get(userKey, () -> { throw new IOException("upstream down"); });
+            assert false : "The IOException was swallowed!";
+        }
+        catch(IOException ex){
+            assert "upstream down".equals(ex.getMessage());
+        }
+
+        Channel retried = ChannelCache.get(userKey, () -> new Channel().setId("UC-recovered"));
+        assert "UC-recovered".equals(retried.getId()) : "A failure was cached!";
+    }
+
+    /**
+     * The cache key has to be derived from the token, but must never be the token itself.
+     */
+    @Test
+    void keysNeverContainTheRawToken() {
+        String key = ChannelCache.hashToken("ya29.secret-token");
+        assert !key.contains("secret") : "The raw token leaked into the cache key!";
+        assert key.equals(ChannelCache.hashToken("ya29.secret-token")) : "Hashing is not stable!";
+    }
+}
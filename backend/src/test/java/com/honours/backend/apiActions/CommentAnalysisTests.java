@@ -0,0 +1,127 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.services.youtube.model.Comment;
+import com.google.api.services.youtube.model.CommentSnippet;
+import com.google.api.services.youtube.model.CommentThread;
+import com.google.api.services.youtube.model.CommentThreadSnippet;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.List;
+import java.util.Map;
+
+class CommentAnalysisTests {
+    private YouTubeStub stub;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(5);
+        stub.addChannel("comments", new YouTubeStub.Channel("UCcomments", 5, 3, 250));
+        Actions.setRootUrl(stub.rootUrl());
+    }
+
+    @AfterEach
+    void stopStub() {
+        Actions.setRootUrl(null);
+        CommentAnalysis.invalidateAll();
+        stub.close();
+    }
+
+    /**
+     * The HTML the API formats comments with is left out, entities are decoded and apostrophes are dropped.
+     */
+    @Test
+    void tokenisesTheDisplayedText() {
+        List<String> tokens = CommentAnalysis.tokenise("I don&#39;t <b>LOVE</b> it<br><a href=\"https://x.com\">link</a>");
+        assert tokens.equals(List.of("i", "dont", "love", "it", "link")) : "Got " + tokens;
+    }
+
+    /**
+     * Positive words score above 0, negative ones below, and a negation turns a word's sentiment around.
+     */
+    @Test
+    void scoresTheSentiment() {
+        double positive = CommentAnalysis.score(CommentAnalysis.tokenise("What an amazing video, thanks!"));
+        double negative = CommentAnalysis.score(CommentAnalysis.tokenise("This was boring and a waste of time"));
+        double negated = CommentAnalysis.score(CommentAnalysis.tokenise("This is not good"));
+        double neutral = CommentAnalysis.score(CommentAnalysis.tokenise("Uploaded on a Tuesday"));
+
+        assert positive > 0.5 && positive <= 1 : "A positive comment scored " + positive;
+        assert negative < -0.5 && negative >= -1 : "A negative comment scored " + negative;
+        assert negated < 0 : "A negated positive word scored " + negated;
+        assert neutral == 0 : "A comment without sentiment scored " + neutral;
+    }
+
+    /**
+     * A video's comments are read once, and viewing the analysis again returns the very same result without
+     * querying anything.
+     */
+    @Test
+    void analysesOnceAndServesFromTheCache() {
+        ResponseEntity<Object> first = VideoActions.getCommentAnalysis(token(), "vid1");
+        int queries = stub.queries("commentThreads.list");
+        ResponseEntity<Object> second = VideoActions.getCommentAnalysis(token(), "vid1");
+
+        assert first.getStatusCode() == HttpStatus.OK : "Got " + first.getStatusCode();
+        Map<?, ?> analysis = (Map<?, ?>) first.getBody();
+        assert (int) analysis.get("analysed_comments") == 250 : "Analysed " + analysis.get("analysed_comments");
+        assert (int) ((Map<?, ?>) analysis.get("sentiment")).get("positive") == 250 : "Not every comment is positive!";
+        Map<?, ?> top = (Map<?, ?>) ((List<?>) analysis.get("keywords")).get(0);
+        assert (int) top.get("count") == 250 : "The top keyword is " + top;
+        assert queries == 3 : "commentThreads.list was queried " + queries + " times!";
+        assert stub.queries("commentThreads.list") == queries : "The cached analysis was queried again!";
+        assert second.getBody() == first.getBody() : "The cached analysis was computed again!";
+    }
+
+    /**
+     * Comments read elsewhere are added when they reach down to a known comment, and left out when they do not
+     * (there could be unread comments between the two).
+     */
+    @Test
+    void addsNewerCommentsIncrementally() {
+        VideoActions.getCommentAnalysis(token(), "vid2");
+
+        CommentAnalysis.record("UCcomments", "vid2", List.of(comment("new-1", "Terrible, worst video ever"),
+                comment("vid2-comment0", "Benchmark comment 0, great video!")));
+        Map<?, ?> added = (Map<?, ?>) VideoActions.getCommentAnalysis(token(), "vid2").getBody();
+        CommentAnalysis.record("UCcomments", "vid2", List.of(comment("new-3", "Awful"), comment("new-2", "Awful")));
+        Map<?, ?> gap = (Map<?, ?>) VideoActions.getCommentAnalysis(token(), "vid2").getBody();
+
+        assert (int) added.get("analysed_comments") == 251 : "Analysed " + added.get("analysed_comments");
+        assert (int) ((Map<?, ?>) added.get("sentiment")).get("negative") == 1 : "The new comment was not scored!";
+        assert gap == added : "Comments with a gap before the known ones were added!";
+        assert stub.queries("commentThreads.list") == 3 : "The recorded comments were queried!";
+    }
+
+    /**
+     * Another user asking for an analysed video gets no cached analysis, but has the comments read with their own
+     * token, so a private video's analysis is refused to them like its comments are.
+     */
+    @Test
+    void analysesAreNotSharedBetweenChannels() {
+        stub.addChannel("other-user", new YouTubeStub.Channel("UCother", 5, 3, 10));
+        assert VideoActions.getCommentAnalysis(token(), "vid1").getStatusCode() == HttpStatus.OK;
+        int queries = stub.queries("commentThreads.list");
+
+        stub.forbidNext("commentThreads.list", 1);
+        ResponseEntity<Object> refused = VideoActions.getCommentAnalysis(new TokenResponse().setAccessToken("other-user"), "vid1");
+        assert refused.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR : "Got " + refused.getStatusCode();
+        assert refused.getBody() == null : "Got the owner's analysis: " + refused.getBody();
+        assert stub.queries("commentThreads.list") == queries + 1 : "The other user's comments were not read!";
+    }
+
+    private static TokenResponse token() {
+        return new TokenResponse().setAccessToken("comments");
+    }
+
+    private static CommentThread comment(String id, String text) {
+        CommentSnippet snippet = new CommentSnippet().setTextDisplay(text).setAuthorDisplayName("Viewer");
+        return new CommentThread().setId(id)
+                .setSnippet(new CommentThreadSnippet().setTopLevelComment(new Comment().setSnippet(snippet)));
+    }
+}
@@ -0,0 +1,75 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+class CommentStreamTests {
+    private static final int TOTAL_COMMENTS = 350;
+
+    private YouTubeStub stub;
+
+    /**
+     * The stub's channel for the token has TOTAL_COMMENTS comments on every video.
+     */
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(5);
+        stub.addChannel("stub-token", new YouTubeStub.Channel("UCcomments", 5, 0, TOTAL_COMMENTS));
+        Actions.setRootUrl(stub.rootUrl());
+    }
+
+    @AfterEach
+    void stopStub() {
+        Actions.setRootUrl(null);
+        stub.close();
+    }
+
+    /**
+     * Asking for more comments than the video has streams all of them, in order, one JSON object per line.
+     */
+    @Test
+    void streamsEveryPageInOrder() throws Exception {
+        List<String> lines = stream(1000);
+
+        assert lines.size() == TOTAL_COMMENTS : "Expected " + TOTAL_COMMENTS + " comments but got " + lines.size();
+        for (int i = 0; i < lines.size(); i++) {
+            assert lines.get(i).contains("\"comment_body\":\"Benchmark comment " + i + ", great video!\"") : "Out of order: " + lines.get(i);
+        }
+        assert pages() == 4 : "Expected 4 pages but " + pages() + " were requested.";
+    }
+
+    /**
+     * The requested number of comments is respected exactly, and no page beyond it is requested.
+     */
+    @Test
+    void stopsAtTheRequestedNumberOfComments() throws Exception {
+        List<String> lines = stream(150);
+
+        assert lines.size() == 150 : "Expected 150 comments but got " + lines.size();
+        assert pages() == 2 : "Expected 2 pages but " + pages() + " were requested.";
+    }
+
+    private List<String> stream(int maxComments) throws Exception {
+        ResponseEntity<StreamingResponseBody> response = VideoActions.streamComments(
+                new TokenResponse().setAccessToken("stub-token"), "video-1", maxComments);
+        assert response.getStatusCode() == HttpStatus.OK : "Unexpected status " + response.getStatusCode();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+        return out.toString(StandardCharsets.UTF_8).lines().toList();
+    }
+
+    private int pages() {
+        return stub.queries("commentThreads.list");
+    }
+}
@@ -0,0 +1,94 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+
+class EarningEstimationsTests {
+    private static final String TOKEN = "earnings";
+
+    private YouTubeStub stub;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(5);
+        Actions.setRootUrl(stub.rootUrl());
+        // Failed queries are sent again straight away.
+        UpstreamResilience.configure(50, 50, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(1), Duration.ofMillis(5), 20, 0.5, Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void stopStub() {
+        Actions.setRootUrl(null);
+        ChannelCache.invalidate(ChannelCache.hashToken(TOKEN));
+        AnalyticsCache.invalidateAll();
+        UpstreamResilience.configure(50, 50, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(200), Duration.ofSeconds(2), 20, 0.5, Duration.ofSeconds(30));
+        QuotaScheduler.configure(10_000, 2_000, 0.2);
+        QuotaScheduler.reset();
+        stub.close();
+    }
+
+    private static ResponseEntity<Object> earnings() {
+        return ChannelActions.getEarningEstimations(new TokenResponse().setAccessToken(TOKEN));
+    }
+
+    /**
+     * A monetized channel gets its revenue, and one whose revenue YouTube refuses to give is not monetized.
+     */
+    @Test
+    void onlyARefusedRevenueIsNotMonetized() {
+        ResponseEntity<Object> monetized = earnings();
+        assert monetized.getStatusCode() == HttpStatus.OK : "Got " + monetized.getStatusCode();
+        assert monetized.getBody().equals("123456") : "Got " + monetized.getBody();
+
+        AnalyticsCache.invalidateAll();
+        stub.forbidNext("reports.query", 1);
+        ResponseEntity<Object> notMonetized = earnings();
+        assert notMonetized.getStatusCode() == HttpStatus.FORBIDDEN : "Got " + notMonetized.getStatusCode();
+        assert "NOT_MONETIZED".equals(notMonetized.getBody()) : "Got " + notMonetized.getBody();
+    }
+
+    /**
+     * Running out of quota, on YouTube's side or on ours, is a 429 and not a channel that is not monetized.
+     */
+    @Test
+    void quotaErrorsAreTooManyRequests() {
+        stub.failNext("reports.query", 1, 403);
+        ResponseEntity<Object> quotaExceeded = earnings();
+        assert quotaExceeded.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS : "Got " + quotaExceeded.getStatusCode();
+
+        QuotaScheduler.configure(10_000, 0, 0.2);
+        ChannelCache.invalidate(ChannelCache.hashToken(TOKEN));
+        ResponseEntity<Object> refused = earnings();
+        assert refused.getStatusCode() == HttpStatus.TOO_MANY_REQUESTS : "Got " + refused.getStatusCode();
+    }
+
+    /**
+     * A query the rate limit rejects is a 503, and a query YouTube keeps failing is a 500.
+     */
+    @Test
+    void upstreamFailuresAreServerErrors() {
+        // One query per API, which the first request uses up.
+        UpstreamResilience.configure(0.001, 1, Duration.ZERO, 3,
+                Duration.ofMillis(1), Duration.ofMillis(5), 20, 0.5, Duration.ofSeconds(30));
+        assert earnings().getStatusCode() == HttpStatus.OK;
+        AnalyticsCache.invalidateAll();
+        ResponseEntity<Object> rejected = earnings();
+        assert rejected.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE : "Got " + rejected.getStatusCode();
+
+        UpstreamResilience.configure(50, 50, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(1), Duration.ofMillis(5), 20, 0.5, Duration.ofSeconds(30));
+        stub.failNext("reports.query", 3, 500);
+        ResponseEntity<Object> failed = earnings();
+        assert failed.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR : "Got " + failed.getStatusCode();
+        assert stub.queries("reports.query") == 4 : "reports.query was queried " + stub.queries("reports.query") + " times!";
+    }
+}
@@ -0,0 +1,138 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+class FailFastTests {
+
+    @AfterEach
+    void resetTimeout() {
+        Actions.setCallTimeout(Duration.ofSeconds(20));
+    }
+
+    /**
+     * When one of two concurrent queries fails, the other one must be cancelled instead of being waited for.
+     */
+    @Test
+    void failureCancelsTheOtherQuery() {
+        CompletableFuture<String> slow = UpstreamPool.submit(() -> sleepAndReturn(5_000, "slow"));
+        CompletableFuture<String> failing = UpstreamPool.submit(() -> { throw new IOException("quota exceeded"); });
+        Actions.failFast(slow, failing);
+
+        long started = System.nanoTime();
+        try{
+            Actions.await(slow);
+            assert false : "The slow query should have been cancelled!";
+        }
+        catch(IOException ex){
+            long waited = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+            assert waited < 2_000 : "Waited " + waited + " ms for a query whose result was not needed!";
+        }
+
+        try{
+            Actions.await(failing);
+            assert false : "The failure was swallowed!";
+        }
+        catch(IOException ex){
+            assert "quota exceeded".equals(ex.getMessage()) : "The original IOException was not rethrown!";
+        }
+    }
+
+    /**
+     * A query that takes longer than the per-call timeout fails with an IOException.
+     */
+    @Test
+    void slowQueryTimesOut() {
+        Actions.setCallTimeout(Duration.ofMillis(200));
+        CompletableFuture<String> slow = UpstreamPool.submit(() -> sleepAndReturn(5_000, "slow"));
+        Actions.failFast(slow);
+
+        try{
+            Actions.await(slow);
+            assert false : "The slow query did not time out!";
+        }
+        catch(IOException ex){
+            assert ex.getMessage().contains("timed out") : "Unexpected failure: " + ex.getMessage();
+        }
+    }
+
+    /**
+     * The cancelled query is stopped too, rather than only left to finish with nobody waiting for it.
+     */
+    @Test
+    void cancelledQueryIsInterrupted() throws Exception {
+        CountDownLatch stopped = new CountDownLatch(1);
+        CompletableFuture<String> slow = UpstreamPool.submit(() -> {
+            try{
+                Thread.sleep(5_000);
+                return "slow";
+            }
+            catch(InterruptedException ex){
+                stopped.countDown();
+                throw ex;
+            }
+        });
+        CompletableFuture<String> failing = UpstreamPool.submit(() -> { throw new IOException("quota exceeded"); });
+        Actions.failFast(slow, failing);
+
+        assert stopped.await(2, TimeUnit.SECONDS) : "The cancelled query kept running!";
+    }
+
+    /**
+     * A query cancelled while waiting for YouTube has its HTTP request aborted, so its thread and connection are
+     * free straight away instead of after the read timeout, and it is not sent again.
+     */
+    @Test
+    void cancelledQueryAbortsItsRequest() throws Exception {
+        for (UpstreamTransport transport : List.of(
+                UpstreamTransport.pooled(10, 4, Duration.ofSeconds(5), Duration.ofSeconds(20), Duration.ofSeconds(30)),
+                UpstreamTransport.simple(Duration.ofSeconds(5), Duration.ofSeconds(20)))) {
+            UpstreamTransport previous = Actions.getTransport();
+            try (YouTubeStub stub = new YouTubeStub(5)) {
+                stub.setProfile("videos.list", YouTubeStub.Profile.latency(Duration.ofSeconds(10)));
+                Actions.setRootUrl(stub.rootUrl());
+                Actions.setTransport(transport);
+                YtClients clients = Actions.makeYtObjects(new TokenResponse().setAccessToken("fail-fast"));
+
+                CountDownLatch finished = new CountDownLatch(1);
+                CompletableFuture<Object> slow = UpstreamPool.submit(() -> {
+                    try{
+                        return Actions.execute("videos.list", clients.userKey(), clients.yt().videos().list(List.of("id")).setId(List.of("vid0")));
+                    }
+                    finally{
+                        finished.countDown();
+                    }
+                });
+                // Only fail once the slow query is waiting for its response.
+                while (stub.queries("videos.list") == 0) Thread.sleep(10);
+                CompletableFuture<String> failing = UpstreamPool.submit(() -> { throw new IOException("quota exceeded"); });
+                Actions.failFast(slow, failing);
+
+                assert finished.await(2, TimeUnit.SECONDS) : "The cancelled query still waits for its response ("
+                        + (transport.isPooled() ? "pooled" : "simple") + ")!";
+                assert transport.poolStats().getLeased() == 0 : "The cancelled query still holds its connection!";
+                assert stub.queries("videos.list") == 1 : "The cancelled query was sent again!";
+            }
+            finally{
+                Actions.setTransport(previous);
+                Actions.setRootUrl(null);
+                transport.shutdown();
+            }
+        }
+    }
+
+    private static String sleepAndReturn(long millis, String value) {
+        LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+        return value;
+    }
+}
@@ -0,0 +1,155 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Stream;
+
+class MetricsStoreTests {
+    private YouTubeStub stub;
+    private final List<String> queried = new CopyOnWriteArrayList<>();
+    private YtClients clients;
+
+    @TempDir
+    Path store;
+
+    /**
+     * reports.query gives the rows of the "day" dimension: every day has 1 view and 2 minutes watched, except
+     * the 15th of each month, which has no row at all (like a day without views).
+     */
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(5);
+        stub.answer("reports.query", (channel, params) -> {
+            LocalDate from = LocalDate.parse(params.get("startDate"));
+            LocalDate to = LocalDate.parse(params.get("endDate"));
+            queried.add(from + ".." + to);
+
+            StringBuilder json = new StringBuilder("{\"rows\":[");
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                if (day.getDayOfMonth() == 15) continue;
+                if (json.charAt(json.length() - 1) != '[') json.append(',');
+                json.append("[\"").append(day).append("\",1,2]");
+            }
+            return json.append("]}").toString();
+        });
+        Actions.setRootUrl(stub.rootUrl());
+
+        MetricsStore.configure(store, 3, 100);
+        today("2024-03-10");
+        clients = Actions.makeYtObjects(new TokenResponse().setAccessToken("store-token"));
+    }
+
+    @AfterEach
+    void stopStub() {
+        MetricsStore.setClock(null);
+        MetricsStore.configure(null, 3, 1000);
+        AnalyticsCache.invalidateAll();
+        Actions.setRootUrl(null);
+        stub.close();
+    }
+
+    private static void today(String day) {
+        MetricsStore.setClock(Clock.fixed(LocalDate.parse(day).atStartOfDay().toInstant(ZoneOffset.UTC), ZoneOffset.UTC));
+    }
+
+    private MetricsStore.Daily since(String start, String channelID) throws Exception {
+        return MetricsStore.daily(clients, channelID, "views,estimatedMinutesWatched", "video==abc",
+                LocalDate.parse(start), MetricsStore.today());
+    }
+
+    /**
+     * The first query fetches the whole period, but after a restart (and a few days) only the days after the
+     * stored ones are queried, and the totals still cover every day.
+     */
+    @Test
+    void onlyTheMissingTailDaysAreQueried() throws Exception {
+        MetricsStore.Daily first = since("2024-01-01", "UC1");
+        assert first.days() == 70 : "Expected 70 days but got " + first.days();
+        assert first.total(0) == 68 : "Expected 68 views (no rows on the 15th) but got " + first.total(0);
+        assert queried.equals(List.of("2024-01-01..2024-03-06", "2024-03-07..2024-03-10"))
+                : "Unexpected queries: " + queried;
+
+        // A restart only keeps the files, and two days pass.
+        MetricsStore.unloadAll();
+        AnalyticsCache.invalidateAll();
+        queried.clear();
+        today("2024-03-12");
+
+        MetricsStore.Daily later = since("2024-01-01", "UC1");
+        assert later.total(0) == 70 : "Expected 70 views but got " + later.total(0);
+        assert later.total(1) == 140 : "Expected 140 minutes but got " + later.total(1);
+        assert queried.equals(List.of("2024-03-07..2024-03-08", "2024-03-09..2024-03-12"))
+                : "Stored days were queried again: " + queried;
+    }
+
+    /**
+     * A period starting before the stored days only queries the days before them.
+     */
+    @Test
+    void anEarlierStartOnlyQueriesTheEarlierDays() throws Exception {
+        since("2024-01-01", "UC1");
+        AnalyticsCache.invalidateAll();
+        queried.clear();
+
+        MetricsStore.Daily longer = since("2023-12-01", "UC1");
+        assert longer.total(0) == 98 : "Expected 98 views but got " + longer.total(0);
+        assert queried.equals(List.of("2023-12-01..2023-12-31", "2024-03-07..2024-03-10"))
+                : "Unexpected queries: " + queried;
+    }
+
+    /**
+     * Channel IDs that are not plain IDs are never used as folder names, their days are simply not stored.
+     */
+    @Test
+    void unsafeChannelIDsAreNotStored() throws Exception {
+        MetricsStore.Daily daily = since("2024-01-01", "../UC1");
+        assert daily.total(0) == 68 : "Expected 68 views but got " + daily.total(0);
+        assert queried.equals(List.of("2024-01-01..2024-03-10")) : "Unexpected queries: " + queried;
+        try (var files = Files.list(store)) {
+            assert files.findAny().isEmpty() : "Something was written to the store!";
+        }
+    }
+
+    /**
+     * Series are evicted while they are being filled (only one is kept in memory here), yet a file never has two
+     * writers: queries of the same period running at the same time never store the same days twice.
+     */
+    @Test
+    void concurrentFillsNeverStoreTheSameDaysTwice() throws Exception {
+        MetricsStore.configure(store, 3, 1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<MetricsStore.Daily>> results = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String channelID = "UC" + i % 2;
+            results.add(pool.submit(() -> since("2024-01-01", channelID)));
+        }
+        for (Future<MetricsStore.Daily> result : results) {
+            assert result.get(30, TimeUnit.SECONDS).total(0) == 68 : "A query got the wrong days!";
+        }
+        pool.shutdown();
+        long settledQueries = queried.stream().filter("2024-01-01..2024-03-06"::equals).count();
+        assert settledQueries == 2 : "The stored days were queried " + settledQueries + " times for 2 channels!";
+
+        for (String channelID : List.of("UC0", "UC1")) {
+            try (Stream<Path> files = Files.list(store.resolve(channelID))) {
+                List<String> lines = Files.readAllLines(files.findFirst().orElseThrow());
+                long days = lines.stream().filter(line -> Character.isDigit(line.charAt(0))).count();
+                long distinct = lines.stream().filter(line -> Character.isDigit(line.charAt(0))).distinct().count();
+                assert days == 64 && distinct == 64 : channelID + " stored " + days + " days, " + distinct + " of them distinct!";
+            }
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.honours.backend.apiActions;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+class QuotaSchedulerTests {
+    private static final ZoneId PACIFIC = ZoneId.of("America/Los_Angeles");
+
+    @BeforeEach
+    void smallQuota() {
+        QuotaScheduler.configure(100, 60, 0.2);
+        at("2024-03-01T10:00");
+        QuotaScheduler.reset();
+    }
+
+    @AfterEach
+    void defaultQuota() {
+        QuotaScheduler.configure(10_000, 2_000, 0.2);
+        QuotaScheduler.setClock(null);
+        QuotaScheduler.reset();
+    }
+
+    private static void at(String pacificTime) {
+        QuotaScheduler.setClock(Clock.fixed(LocalDateTime.parse(pacificTime).atZone(PACIFIC).toInstant(), PACIFIC));
+    }
+
+    private static boolean send(String call, String user) {
+        try{
+            QuotaScheduler.acquire(call, user);
+            return true;
+        }
+        catch(QuotaScheduler.QuotaExceededException ex){
+            return false;
+        }
+    }
+
+    private static boolean sendInBackground(String call, String user) throws Exception {
+        return QuotaScheduler.withPriority(QuotaScheduler.Priority.BACKGROUND, () -> send(call, user));
+    }
+
+    /**
+     * Background queries stop once only the reserve is left, while interactive queries may still use it.
+     */
+    @Test
+    void backgroundQueriesLeaveTheReserveToInteractiveOnes() throws Exception {
+        for (int i = 0; i < 80; i++) {
+            assert sendInBackground("videos.list", "user" + (i % 4)) : "Background query " + i + " was refused!";
+        }
+        double refusedBefore = QuotaScheduler.refused(QuotaScheduler.Priority.BACKGROUND);
+        assert !sendInBackground("videos.list", "user0") : "A background query used the reserve!";
+        assert QuotaScheduler.refused(QuotaScheduler.Priority.BACKGROUND) == refusedBefore + 1 : "The refusal was not counted!";
+
+        assert send("videos.list", "user1") : "An interactive query was refused while the reserve was left!";
+        assert QuotaScheduler.remaining() == 19 : "Expected 19 units left but there are " + QuotaScheduler.remaining();
+
+        // The reserve only goes so far, search costs 100 units.
+        assert !send("search.list", "user2") : "A query costing more than what is left was sent!";
+        assert QuotaScheduler.remaining() == 19 : "A refused query used units!";
+    }
+
+    /**
+     * A single user can not use up the quota of everybody else, and analytics queries do not use Data API units.
+     */
+    @Test
+    void oneUserCanNotUseEveryonesQuota() {
+        for (int i = 0; i < 60; i++) send("commentThreads.list", "heavy");
+        assert !send("commentThreads.list", "heavy") : "The user went over their daily units!";
+        assert send("reports.query", "heavy") : "An analytics query was charged Data API units!";
+        assert send("channels.list", "light") : "Another user was refused because of the heavy one!";
+        assert QuotaScheduler.remaining("heavy") == 0 && QuotaScheduler.remaining("light") == 59;
+    }
+
+    /**
+     * The quota comes back at midnight Pacific Time.
+     */
+    @Test
+    void theQuotaIsResetAtMidnightPacificTime() {
+        for (int i = 0; i < 60; i++) send("playlistItems.list", "user" + i);
+        assert QuotaScheduler.remaining() == 40;
+
+        // The server's clock is in UTC, where it has been the 2nd of March for a while.
+        QuotaScheduler.setClock(Clock.fixed(LocalDateTime.parse("2024-03-01T23:59").atZone(PACIFIC).toInstant(), ZoneId.of("UTC")));
+        assert QuotaScheduler.remaining() == 40 : "The quota was reset at midnight UTC!";
+
+        QuotaScheduler.setClock(Clock.fixed(LocalDateTime.parse("2024-03-02T00:00").atZone(PACIFIC).toInstant(), ZoneId.of("UTC")));
+        assert QuotaScheduler.remaining() == 100 : "The quota was not reset at midnight Pacific Time!";
+    }
+}
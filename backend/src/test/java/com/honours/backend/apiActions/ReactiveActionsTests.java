@@ -0,0 +1,113 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+class ReactiveActionsTests {
+    private static final int TOTAL_COMMENTS = 350;
+
+    private YouTubeStub stub;
+
+    /**
+     * The stub's channel for the token has TOTAL_COMMENTS comments on every video.
+     */
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(5);
+        stub.addChannel("stub-token", new YouTubeStub.Channel("UCstub", 5, 0, TOTAL_COMMENTS));
+        ReactiveYouTube.configure(stub.rootUrl(), Duration.ofSeconds(5), Duration.ofSeconds(5), 50);
+        UpstreamResilience.configure(1_000, 1_000, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(1), Duration.ofMillis(5), 20, 0.5, Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    void stopStub() {
+        ReactiveYouTube.configure(null, Duration.ofSeconds(20), Duration.ofSeconds(20), 50);
+        UpstreamResilience.configure(50, 50, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(200), Duration.ofSeconds(2), 20, 0.5, Duration.ofSeconds(30));
+        UpstreamResilience.reset();
+        stub.close();
+    }
+
+    /**
+     * The comments are streamed in order across pages, the requested number is respected exactly, and no page
+     * beyond it is requested.
+     */
+    @Test
+    void streamsCommentsAcrossPages() {
+        List<Object> comments = stream(150);
+
+        assert comments.size() == 150 : "Expected 150 comments but got " + comments.size();
+        for (int i = 0; i < comments.size(); i++) {
+            Object body = ((VideoActions.CommentItem) comments.get(i)).comment_body();
+            assert body.equals("Benchmark comment " + i + ", great video!") : "Out of order: " + body;
+        }
+        assert pages() == 2 : "Expected 2 pages but " + pages() + " were requested.";
+    }
+
+    /**
+     * A page failing with a temporary error is queried again. A later page failing for good ends the stream with
+     * an error line, but a first page failing for good is an HTTP error.
+     */
+    @Test
+    void failuresAreRetriedOrReported() {
+        stub.failNext("commentThreads.list", 1, 503);
+        assert stream(1000).size() == TOTAL_COMMENTS : "The failed page was not queried again!";
+
+        // Once the first page is served, the next ones fail for good.
+        stub.answer("commentThreads.list", (channel, params) -> {
+            if (!params.containsKey("pageToken")) stub.failNext("commentThreads.list", 100, 404);
+            return null;
+        });
+        List<Object> comments = stream(1000);
+        assert comments.size() == 101 : "Expected 100 comments and an error but got " + comments.size();
+        assert ((Map<?, ?>) comments.get(100)).containsKey("error") : "The stream did not end with the error!";
+
+        stub.reset();
+        stub.failNext("commentThreads.list", 100, 404);
+        ResponseEntity<Object> response = ReactiveActions.get200Comments(token("stub-token"), "video-1").block();
+        assert response.getStatusCode() == HttpStatus.INTERNAL_SERVER_ERROR : "Got " + response.getStatusCode();
+    }
+
+    /**
+     * Concurrent requests of the same user share a single channels.list query, and the channel is cached for the
+     * next ones.
+     */
+    @Test
+    void theChannelIsQueriedOnce() {
+        String accessToken = "reactive-channel-" + System.nanoTime();
+        List<ResponseEntity<Object>> responses = Flux.range(0, 20)
+                .flatMap(i -> ReactiveActions.getChannelBasics(token(accessToken)))
+                .collectList()
+                .block();
+
+        for (ResponseEntity<Object> response : responses) {
+            assert response.getStatusCode() == HttpStatus.OK : "Got " + response.getStatusCode();
+            assert ((Map<?, ?>) response.getBody()).get("channelID").equals("UCbench");
+        }
+        ReactiveActions.getChannelBasics(token(accessToken)).block();
+        assert stub.queries("channels.list") == 1 : "The channel was queried " + stub.queries("channels.list") + " times!";
+    }
+
+    private List<Object> stream(int maxComments) {
+        return ReactiveActions.streamComments(token("stub-token"), "video-1", maxComments).collectList().block();
+    }
+
+    private static TokenResponse token(String accessToken) {
+        return new TokenResponse().setAccessToken(accessToken);
+    }
+
+    private int pages() {
+        return stub.queries("commentThreads.list");
+    }
+}
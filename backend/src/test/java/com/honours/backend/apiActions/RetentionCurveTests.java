@@ -0,0 +1,81 @@
+package com.honours.backend.apiActions;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class RetentionCurveTests {
+
+    /**
+     * Builds the rows of a retention query the way the API returns them, from the audienceWatchRatio values.
+     */
+    private static List<List<Object>> rows(double... watchRatio) {
+        List<List<Object>> rows = new ArrayList<>();
+        for (int i = 0; i < watchRatio.length; i++) {
+            rows.add(List.of(new BigDecimal((i + 1) / 100.0), BigDecimal.valueOf(watchRatio[i]), new BigDecimal("0.5")));
+        }
+        return rows;
+    }
+
+    private static double[] steadyCurve() {
+        double[] curve = new double[100];
+        for (int i = 0; i < 100; i++) curve[i] = 0.95 - i * 0.005;
+        return curve;
+    }
+
+    /**
+     * A drop of exactly 30% in the intro counts as a decline, even though 0.94 - 0.64 is just under 0.3 in doubles.
+     */
+    @Test
+    void introDeclineOfExactlyTheThreshold() {
+        double[] curve = steadyCurve();
+        curve[0] = 0.94;
+        curve[9] = 0.64;
+        RetentionCurve retention = RetentionCurve.fromRows(rows(curve));
+
+        assert retention.size() == 100 : "Expected 100 points but got " + retention.size();
+        assert retention.hasIntroDecline(0.3) : "The intro decline of exactly 30% was missed!";
+        assert !retention.hasSegmentDecline(0.2) : "A steady curve has no big decline!";
+    }
+
+    /**
+     * A big drop in any later segment is found, including the last one.
+     */
+    @Test
+    void segmentDeclineInTheLastSegment() {
+        double[] curve = steadyCurve();
+        curve[99] = curve[90] - 0.25;
+        RetentionCurve retention = RetentionCurve.fromRows(rows(curve));
+
+        assert retention.hasSegmentDecline(0.2) : "The decline in the last segment was missed!";
+        assert !retention.hasIntroDecline(0.3) : "There is no intro decline in this curve!";
+    }
+
+    /**
+     * Videos without enough data have no curve and no declines, and short curves do not fail.
+     */
+    @Test
+    void emptyAndShortCurves() {
+        assert RetentionCurve.fromRows(null).isEmpty() : "A response without rows must give an empty curve!";
+        assert RetentionCurve.fromRows(List.of()).isEmpty() : "A response without rows must give an empty curve!";
+
+        RetentionCurve shortCurve = RetentionCurve.fromRows(rows(1.0, 0.5, 0.4));
+        assert !shortCurve.hasIntroDecline(0.3) && !shortCurve.hasSegmentDecline(0.2)
+                : "A curve shorter than a segment has no declines!";
+    }
+
+    /**
+     * The arrays are serialised as plain JSON arrays of numbers, like the list of values was before.
+     */
+    @Test
+    void serialisesAsNumberArrays() throws Exception {
+        RetentionCurve retention = RetentionCurve.fromRows(rows(1.0, 0.75, 0.5));
+        String json = new ObjectMapper().writeValueAsString(Map.of("averageWatchRatio", retention.watchRatio()));
+
+        assert json.equals("{\"averageWatchRatio\":[1.0,0.75,0.5]}") : "Unexpected JSON " + json;
+    }
+}
@@ -0,0 +1,79 @@
+package com.honours.backend.apiActions;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class SingleFlightTests {
+    private final AsyncCache<String, String> cache = Caffeine.newBuilder().buildAsync();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    /**
+     * Requests missing the same key while it is being loaded wait for that load instead of sending their own.
+     */
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(8);
+        try{
+            List<Future<String>> results = new ArrayList<>();
+            results.add(threads.submit(() -> SingleFlight.get(cache, "key", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                try{
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                catch(InterruptedException ex){
+                    throw new IOException(ex);
+                }
+                return "value";
+            })));
+            assert loading.await(5, TimeUnit.SECONDS) : "The first load never started!";
+            for (int i = 0; i < 7; i++) {
+                results.add(threads.submit(() -> SingleFlight.get(cache, "key", () -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assert result.get(5, TimeUnit.SECONDS).equals("value") : "A request did not get the shared value!";
+            }
+            assert loads.get() == 1 : "Expected a single load but there were " + loads.get();
+        }
+        finally{
+            threads.shutdownNow();
+        }
+    }
+
+    /**
+     * A failed load is thrown as it was and is not cached, so the next request loads again.
+     */
+    @Test
+    void failuresAreNotCached() throws Exception {
+        try{
+            SingleFlight.get(cache, "key", () -> {
+                throw new IOException("upstream down");
+            });
+            assert false : "The failure was swallowed!";
+        }
+        catch(IOException ex){
+            assert ex.getMessage().equals("upstream down") : "The failure was wrapped: " + ex;
+        }
+
+        assert SingleFlight.get(cache, "key", () -> "value").equals("value") : "The failure was cached!";
+        assert SingleFlight.get(cache, "key", () -> "again").equals("value") : "The value was not cached!";
+    }
+}
@@ -0,0 +1,126 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.http.HttpHeaders;
+import com.google.api.client.http.HttpResponseException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class UpstreamResilienceTests {
+    private final AtomicInteger sent = new AtomicInteger();
+
+    @BeforeEach
+    void quickRetries() {
+        UpstreamResilience.configure(1_000, 1_000, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(1), Duration.ofMillis(5), 20, 0.5, Duration.ofMillis(100));
+    }
+
+    @AfterEach
+    void defaultSettings() {
+        UpstreamResilience.configure(50, 50, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(200), Duration.ofSeconds(2), 20, 0.5, Duration.ofSeconds(30));
+    }
+
+    private static HttpResponseException status(int code) {
+        return new HttpResponseException.Builder(code, "status " + code, new HttpHeaders()).build();
+    }
+
+    // A query that fails with the given status the first "failures" times.
+    private String failing(int failures, int code) throws IOException {
+        if(sent.incrementAndGet() <= failures) throw status(code);
+        return "ok";
+    }
+
+    /**
+     * A read failing with a temporary error is sent again, a read failing for good is not.
+     */
+    @Test
+    void onlyTemporaryFailuresAreRetried() throws Exception {
+        double retriesBefore = UpstreamResilience.retries();
+        assert UpstreamResilience.call("videos.list", () -> failing(2, 503)).equals("ok");
+        assert sent.get() == 3 : "Expected 3 attempts but there were " + sent.get();
+        assert UpstreamResilience.retries() == retriesBefore + 2 : "The retries were not counted!";
+
+        sent.set(0);
+        try{
+            UpstreamResilience.call("videos.list", () -> failing(5, 404));
+            assert false : "The 404 was swallowed!";
+        }
+        catch(HttpResponseException ex){
+            assert ex.getStatusCode() == 404;
+        }
+        assert sent.get() == 1 : "A 404 was sent again!";
+
+        sent.set(0);
+        try{
+            UpstreamResilience.call("videos.list", () -> failing(5, 500));
+            assert false : "The 500 was swallowed!";
+        }
+        catch(HttpResponseException ex){
+            assert sent.get() == 3 : "Expected 3 attempts at most but there were " + sent.get();
+        }
+    }
+
+    /**
+     * After too many failures the breaker of the API opens and queries are rejected without being sent, but the
+     * other API is not affected. Once the API is back, the breaker closes again.
+     */
+    @Test
+    void theBreakerOpensAndClosesPerApi() throws Exception {
+        // The breaker opens once half of the last 4 queries (and at least 2) failed.
+        UpstreamResilience.configure(1_000, 1_000, Duration.ofSeconds(1), 1,
+                Duration.ofMillis(1), Duration.ofMillis(5), 4, 0.5, Duration.ofMillis(100));
+        for (int i = 0; i < 2; i++) {
+            try{
+                UpstreamResilience.call("reports.query", () -> failing(100, 503));
+            }
+            catch(HttpResponseException expected){
+                // The API is down.
+            }
+        }
+        assert UpstreamResilience.state("analytics").equals("open") : "The breaker did not open!";
+
+        int sentBefore = sent.get();
+        try{
+            UpstreamResilience.call("reports.query", () -> failing(100, 503));
+            assert false : "A query was let through an open breaker!";
+        }
+        catch(UpstreamResilience.UpstreamUnavailableException expected){
+            assert sent.get() == sentBefore : "The rejected query was sent!";
+        }
+        assert UpstreamResilience.call("videos.list", () -> "data").equals("data") : "The Data API was rejected too!";
+
+        TimeUnit.MILLISECONDS.sleep(150);
+        assert UpstreamResilience.call("reports.query", () -> "back").equals("back");
+        assert UpstreamResilience.state("analytics").equals("closed") : "The breaker did not close again!";
+    }
+
+    /**
+     * Queries over the rate wait for their token, or are rejected if they would wait too long.
+     */
+    @Test
+    void theRateLimitSpacesOutQueries() throws Exception {
+        UpstreamResilience.configure(20, 1, Duration.ofSeconds(1), 1,
+                Duration.ofMillis(1), Duration.ofMillis(5), 4, 0.5, Duration.ofMillis(100));
+        long started = System.nanoTime();
+        for (int i = 0; i < 5; i++) UpstreamResilience.call("channels.list", () -> "ok");
+        long took = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        assert took >= 180 : "5 queries at 20 per second took only " + took + " ms!";
+
+        UpstreamResilience.configure(1, 1, Duration.ZERO, 1,
+                Duration.ofMillis(1), Duration.ofMillis(5), 4, 0.5, Duration.ofMillis(100));
+        UpstreamResilience.call("channels.list", () -> "ok");
+        try{
+            UpstreamResilience.call("channels.list", () -> "ok");
+            assert false : "A query over the rate limit was sent!";
+        }
+        catch(UpstreamResilience.UpstreamUnavailableException expected){
+            // The second query would have had to wait a second.
+        }
+    }
+}
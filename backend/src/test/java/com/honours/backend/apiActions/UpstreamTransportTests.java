@@ -0,0 +1,112 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+class UpstreamTransportTests {
+    private static final int ACTIONS = 100;
+    private static final String TOKEN = "transport";
+
+    private YouTubeStub stub;
+    private UpstreamTransport previous;
+
+    @BeforeEach
+    void startStub() throws Exception {
+        // A short round trip, so the actions run at the same time really overlap on the wire.
+        stub = new YouTubeStub(30, Duration.ofMillis(5));
+        previous = Actions.getTransport();
+        Actions.setRootUrl(stub.rootUrl());
+        // Otherwise the actions would mostly wait for the rate limit.
+        UpstreamResilience.configure(10_000, 10_000, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(200), Duration.ofSeconds(2), 20, 0.5, Duration.ofSeconds(30));
+    }
+
+    @AfterEach
+    void stopStub() {
+        UpstreamTransport used = Actions.getTransport();
+        Actions.setTransport(previous);
+        if (used != previous) used.shutdown();
+        Actions.setRootUrl(null);
+        ChannelCache.invalidate(ChannelCache.hashToken(TOKEN));
+        UpstreamResilience.configure(50, 50, Duration.ofSeconds(1), 3,
+                Duration.ofMillis(200), Duration.ofSeconds(2), 20, 0.5, Duration.ofSeconds(30));
+        stub.close();
+    }
+
+    /**
+     * Sequential actions through the pooled transport should all go over the same kept-alive connection.
+     */
+    @Test
+    void pooledTransportReusesOneConnectionForSequentialActions() throws Exception {
+        UpstreamTransport pooled = pooled();
+        runActions(pooled, 1);
+
+        assert stub.connections() == 1 : "Expected 1 connection but " + stub.connections() + " were opened!";
+        assert pooled.poolStats().getAvailable() == 1 : "The connection was not returned to the pool!";
+    }
+
+    /**
+     * Concurrent actions can never open more connections than the per-route limit of the pool.
+     */
+    @Test
+    void pooledTransportStaysWithinTheRouteLimitUnderLoad() throws Exception {
+        UpstreamTransport pooled = pooled();
+        runActions(pooled, 16);
+
+        assert stub.connections() <= 4 : stub.connections() + " connections were opened, the limit is 4!";
+        assert pooled.poolStats().getLeased() == 0 : "A connection was leaked!";
+    }
+
+    /**
+     * Under the same load, the simple transport keeps opening new connections (only a few idle ones are kept by
+     * the JDK), while the pooled one keeps reusing its own.
+     */
+    @Test
+    void pooledTransportOpensFarFewerConnectionsThanTheSimpleOne() throws Exception {
+        runActions(UpstreamTransport.simple(Duration.ofSeconds(5), Duration.ofSeconds(5)), 16);
+        int simple = stub.connections();
+        stub.reset();
+        runActions(pooled(), 16);
+        int pooled = stub.connections();
+
+        assert pooled <= 4 && simple >= 2 * pooled : "The pooled transport opened " + pooled
+                + " connections and the simple one " + simple + "!";
+    }
+
+    private static UpstreamTransport pooled() {
+        return UpstreamTransport.pooled(10, 4, Duration.ofSeconds(5), Duration.ofSeconds(5), Duration.ofSeconds(30));
+    }
+
+    /**
+     * Runs ACTIONS actions against the stub through the given transport, split over the given number of threads.
+     * Every other action is a ChannelActions one (the top 20 subscribers) and a VideoActions one (a page of videos),
+     * each of them building its own API objects like a real request does.
+     */
+    private void runActions(UpstreamTransport transport, int threads) throws Exception {
+        Actions.setTransport(transport);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        TokenResponse token = new TokenResponse().setAccessToken(TOKEN);
+        List<Future<ResponseEntity<Object>>> results = new ArrayList<>();
+
+        for (int i = 0; i < ACTIONS; i++) {
+            boolean subscribers = i % 2 == 0;
+            results.add(pool.submit(() -> subscribers ? ChannelActions.getTop20Subs(token)
+                    : VideoActions.getAllVideos(token, null)));
+        }
+        for (Future<ResponseEntity<Object>> f : results) {
+            ResponseEntity<Object> response = f.get(30, TimeUnit.SECONDS);
+            assert response.getStatusCode() == HttpStatus.OK : "An action failed with " + response.getStatusCode();
+        }
+        pool.shutdown();
+    }
+}
@@ -0,0 +1,80 @@
+package com.honours.backend.apiActions;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+class VideoIndexTests {
+
+    private static List<VideoIndex.IndexedVideo> videos(int from, int to) {
+        List<VideoIndex.IndexedVideo> list = new ArrayList<>();
+        for (int i = to - 1; i >= from; i--) {
+            list.add(new VideoIndex.IndexedVideo("v" + i, "Video number " + i, "thumb" + i,
+                    i % 3 == 0 ? "private" : "public"));
+        }
+        return list;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<VideoIndex.IndexedVideo> videosOn(Map<String,Object> page) {
+        return (List<VideoIndex.IndexedVideo>) page.get("videos");
+    }
+
+    /**
+     * Walking forward through every page and back again has to list each video exactly once, in order.
+     */
+    @Test
+    void pagesForwardAndBack() {
+        List<VideoIndex.IndexedVideo> all = videos(0, 25);
+
+        Map<String,Object> first = VideoIndex.page(all, null, 10, null, null);
+        Map<String,Object> second = VideoIndex.page(all, (String) first.get("nextPageToken"), 10, null, null);
+        Map<String,Object> third = VideoIndex.page(all, (String) second.get("nextPageToken"), 10, null, null);
+
+        assert first.get("prevPageToken") == null : "The first page has no previous page!";
+        assert videosOn(first).get(0).videoID().equals("v24");
+        assert videosOn(second).get(0).videoID().equals("v14");
+        assert videosOn(third).size() == 5 && third.get("nextPageToken") == null : "The last page is wrong!";
+        assert (int) third.get("total") == 25;
+
+        Map<String,Object> back = VideoIndex.page(all, (String) third.get("prevPageToken"), 10, null, null);
+        assert videosOn(back).equals(videosOn(second)) : "Going back did not return the previous page!";
+    }
+
+    /**
+     * A page token handed out before new videos were uploaded must still lead to the same next page.
+     */
+    @Test
+    void tokensSurviveNewUploads() {
+        Map<String,Object> first = VideoIndex.page(videos(0, 25), null, 10, null, null);
+        String next = (String) first.get("nextPageToken");
+
+        Map<String,Object> afterUpload = VideoIndex.page(videos(0, 28), next, 10, null, null);
+        assert videosOn(afterUpload).get(0).videoID().equals("v14") : "The page shifted after new uploads!";
+    }
+
+    /**
+     * Searching by title and filtering by privacy are both applied before paging.
+     */
+    @Test
+    void searchesAndFilters() {
+        Map<String,Object> page = VideoIndex.page(videos(0, 25), null, 10, "NUMBER 1", "public");
+
+        // v1, v10, v11, v13, v14, v16, v17, v19 are public and contain "number 1" (v12, v15, v18 are private).
+        assert (int) page.get("total") == 8 : "Wrong number of matches: " + page.get("total");
+        for (VideoIndex.IndexedVideo video : videosOn(page)) {
+            assert video.privacy().equals("public") && video.title().contains("number 1");
+        }
+    }
+
+    /**
+     * A token that can not be decoded starts from the first page instead of failing the request.
+     */
+    @Test
+    void malformedTokenStartsFromTheFirstPage() {
+        Map<String,Object> page = VideoIndex.page(videos(0, 25), "not a token!", 10, null, null);
+        assert videosOn(page).get(0).videoID().equals("v24");
+    }
+}
@@ -0,0 +1,71 @@
+package com.honours.backend.apiActions;
+
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+class VideoMetricsTableTests {
+
+    /**
+     * Builds an analytics row in the same shape the "video" dimension query returns.
+     * Only the views differ between videos, so more views always means a higher score.
+     */
+    private static List<Object> row(String id, long views) {
+        return List.of(id, new BigDecimal(10), new BigDecimal(50), new BigDecimal(2), new BigDecimal(5),
+                new BigDecimal(3), new BigDecimal("45.5"), new BigDecimal(views), new BigDecimal(1000));
+    }
+
+    /**
+     * Out of a whole catalogue split into batches, the best k videos have to come back best first.
+     */
+    @Test
+    void topKAcrossBatchesIsOrderedBestFirst() {
+        VideoMetricsTable table = new VideoMetricsTable(0);
+        for (int batch = 0; batch < 3; batch++) {
+            List<List<Object>> rows = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                int n = batch * 200 + i;
+                // Spreading the best videos over different batches and positions.
+                rows.add(row("vid" + n, 1_000 + (n * 7919L) % 600));
+            }
+            VideoMetricsTable batchTable = new VideoMetricsTable(rows.size());
+            batchTable.addRows(rows);
+            table.addAll(batchTable);
+        }
+
+        assert table.size() == 600 : "Expected 600 rows but got " + table.size();
+
+        int[] top = table.topK(5);
+        assert top.length == 5 : "Expected 5 videos but got " + top.length;
+        for (int i = 1; i < top.length; i++) {
+            assert table.score(top[i - 1]) >= table.score(top[i]) : "The top videos are not ordered best first!";
+        }
+
+        // Every other video has to score at most as high as the worst of the top 5.
+        double fifth = table.score(top[4]);
+        int better = 0;
+        for (int row = 0; row < table.size(); row++) {
+            if(table.score(row) > fifth) better++;
+        }
+        assert better == 4 : "The top 5 is missing a better video!";
+    }
+
+    /**
+     * A channel with fewer videos than asked for gets all of them instead of an error.
+     */
+    @Test
+    void fewerVideosThanAskedFor() {
+        VideoMetricsTable table = new VideoMetricsTable(0);
+        table.addRows(List.of(row("a", 100), row("b", 10_000), row("c", 1_000)));
+
+        int[] top = table.topK(5);
+        assert top.length == 3 : "Expected all 3 videos but got " + top.length;
+        assert table.id(top[0]).equals("b") && table.id(top[1]).equals("c") && table.id(top[2]).equals("a")
+                : "The videos are not ordered best first!";
+
+        table.addRows(null);
+        assert table.size() == 3 : "A response without rows must not add any videos!";
+    }
+}
@@ -0,0 +1,118 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+class VideoPerformanceBatchTests {
+    private static final String MISSING = "missing";
+
+    private YouTubeStub stub;
+    private final AtomicInteger overallQueries = new AtomicInteger();
+    private final AtomicInteger retentionQueries = new AtomicInteger();
+    private final AtomicInteger retentionRunning = new AtomicInteger();
+    private final AtomicInteger mostRetentionRunning = new AtomicInteger();
+
+    /**
+     * The stub's channel has 60 videos, "vid0" to "vid59" (so MISSING does not exist). The analytics queries are
+     * counted by kind, and each retention query takes 20 ms, so the ones running at the same time can be counted.
+     */
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(60);
+        stub.answer("reports.query", (channel, params) -> {
+            String dimensions = params.getOrDefault("dimensions", "");
+            if (dimensions.equals("video")) overallQueries.incrementAndGet();
+            if (!dimensions.equals("elapsedVideoTimeRatio")) return null;
+
+            retentionQueries.incrementAndGet();
+            mostRetentionRunning.accumulateAndGet(retentionRunning.incrementAndGet(), Math::max);
+            try {
+                TimeUnit.MILLISECONDS.sleep(20);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            retentionRunning.decrementAndGet();
+            return null;
+        });
+        Actions.setRootUrl(stub.rootUrl());
+    }
+
+    @AfterEach
+    void stopStub() {
+        Actions.setRootUrl(null);
+        AnalyticsCache.invalidateAll();
+        stub.close();
+    }
+
+    /**
+     * 60 videos are analysed with 2 videos.list queries, a single overall metrics query and one retention query
+     * each, with no more than 4 retention queries at a time. Missing videos and duplicates are left out.
+     */
+    @Test
+    void analysesManyVideosWithFewQueries() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 60; i++) ids.add("vid" + i);
+        ids.add(MISSING);
+        ids.add("vid0");
+
+        ResponseEntity<Object> response = VideoActions.getVideoPerformanceBatch(token(), ids);
+
+        assert response.getStatusCode() == HttpStatus.OK : "Got " + response.getStatusCode();
+        Map<?, ?> analyses = (Map<?, ?>) response.getBody();
+        assert analyses.size() == 60 : "Expected 60 analyses but got " + analyses.size();
+        assert new ArrayList<>(analyses.keySet()).equals(ids.subList(0, 60)) : "The requested order was not kept!";
+        assert stub.queries("videos.list") == 2 : "videos.list was queried " + stub.queries("videos.list") + " times!";
+        assert overallQueries.get() == 1 : "The overall metrics were queried " + overallQueries.get() + " times!";
+        assert retentionQueries.get() == 60 : "The retention was queried " + retentionQueries.get() + " times!";
+        assert mostRetentionRunning.get() <= 4 : mostRetentionRunning.get() + " retention queries ran at once!";
+    }
+
+    /**
+     * Each video gets the same analysis the single video endpoint gives.
+     */
+    @Test
+    void givesTheSameAnalysisAsASingleVideo() {
+        Map<?, ?> single = (Map<?, ?>) VideoActions.getVideoPerformance(token(), "vid7").getBody();
+        Map<?, ?> batch = (Map<?, ?>) ((Map<?, ?>) VideoActions.getVideoPerformanceBatch(token(), List.of("vid3", "vid7"))
+                .getBody()).get("vid7");
+
+        assert batch.keySet().equals(single.keySet()) : "Different keys: " + batch.keySet() + " " + single.keySet();
+        for (Object key : single.keySet()) {
+            Object expected = single.get(key);
+            Object actual = batch.get(key);
+            // The tips are picked at random, so only how many there are is compared.
+            boolean same = key.equals("advice") ? ((List<?>) expected).size() == ((List<?>) actual).size()
+                    : expected instanceof double[] e ? Arrays.equals(e, (double[]) actual)
+                    : String.valueOf(expected).equals(String.valueOf(actual));
+            assert same : key + " differs: " + actual + " instead of " + expected;
+        }
+    }
+
+    /**
+     * No IDs, or more than fit in a single analytics query, are rejected without querying anything.
+     */
+    @Test
+    void rejectsEmptyAndOversizedBatches() {
+        assert VideoActions.getVideoPerformanceBatch(token(), List.of()).getStatusCode() == HttpStatus.BAD_REQUEST;
+        List<String> tooMany = new ArrayList<>();
+        for (int i = 0; i < 201; i++) tooMany.add("vid" + i);
+        assert VideoActions.getVideoPerformanceBatch(token(), tooMany).getStatusCode() == HttpStatus.BAD_REQUEST;
+        assert stub.queries("videos.list") == 0 : "A rejected batch was queried!";
+    }
+
+    private static TokenResponse token() {
+        return new TokenResponse().setAccessToken("batch-" + System.nanoTime());
+    }
+}
@@ -0,0 +1,112 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.honours.backend.YouTubeStub;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+class WarmUpTests {
+    private YouTubeStub stub;
+
+    /**
+     * The stub's channel has a single video ("vid0").
+     */
+    @BeforeEach
+    void startStub() throws Exception {
+        stub = new YouTubeStub(1);
+        Actions.setRootUrl(stub.rootUrl());
+        WarmUp.configure(true, 2, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    void stopStub() {
+        WarmUp.configure(false, 2, Duration.ofMinutes(5));
+        Actions.setRootUrl(null);
+        AnalyticsCache.invalidateAll();
+        stub.close();
+    }
+
+    /**
+     * The first request of a user warms up the subscribers and the latest video's analysis once, and the next
+     * requests for them are answered without querying YouTube.
+     */
+    @Test
+    void theFirstRequestWarmsUpTheNextPages() throws Exception {
+        TokenResponse token = token("warm-" + System.nanoTime());
+        assert ChannelActions.getChannelBasics(token).getStatusCode() == HttpStatus.OK;
+        String userKey = ChannelCache.hashToken(token.getAccessToken());
+        awaitPrefetched(userKey, "vidAnalysis:vid0");
+
+        int videoQueries = stub.queries("videos.list");
+        int subscriberQueries = stub.queries("subscriptions.list");
+        ResponseEntity<Object> analysis = VideoActions.getVideoPerformance(token, "vid0");
+        ResponseEntity<Object> subscribers = ChannelActions.getTop20Subs(token);
+
+        assert analysis.getStatusCode() == HttpStatus.OK && subscribers.getStatusCode() == HttpStatus.OK;
+        assert ((Map<?, ?>) analysis.getBody()).get("title").equals("Benchmark video 0");
+        assert stub.queries("videos.list") == videoQueries : "The warmed-up analysis was queried again!";
+        assert stub.queries("subscriptions.list") == subscriberQueries : "The warmed-up subscribers were queried again!";
+        assert subscriberQueries == 1 : "The session was warmed up " + subscriberQueries + " times!";
+    }
+
+    /**
+     * Signing out drops the results of the warm-up, so the pages are queried again, and the same token is not
+     * warmed up a second time.
+     */
+    @Test
+    void signingOutEndsTheSession() throws Exception {
+        TokenResponse token = token("warm-" + System.nanoTime());
+        ChannelActions.getChannelBasics(token);
+        String userKey = ChannelCache.hashToken(token.getAccessToken());
+        // The whole warm-up is awaited, so none of its queries are left running after the test.
+        awaitPrefetched(userKey, "vidAnalysis:vid0");
+
+        assert ChannelActions.signOut(token).getStatusCode() == HttpStatus.OK;
+        assert WarmUp.prefetched(userKey, "top20Subs") == null : "The results outlived the session!";
+
+        int subscriberQueries = stub.queries("subscriptions.list");
+        assert ChannelActions.getTop20Subs(token).getStatusCode() == HttpStatus.OK;
+        TimeUnit.MILLISECONDS.sleep(200);
+        assert stub.queries("subscriptions.list") == subscriberQueries + 1 : "The session was warmed up again!";
+    }
+
+    /**
+     * A session that ends while its warm-up is still waiting for a thread is never warmed up.
+     */
+    @Test
+    void aSessionEndedBeforeItsWarmUpRunsIsNotWarmedUp() throws Exception {
+        // A single thread, kept busy by the first user's slow warm-up.
+        WarmUp.configure(true, 1, Duration.ofMinutes(5));
+        stub.setProfile("channels.list", YouTubeStub.Profile.latency(Duration.ofMillis(300)));
+        TokenResponse busy = token("warm-" + System.nanoTime());
+        ChannelActions.getChannelBasics(busy);
+
+        TokenResponse waiting = token("warm-" + System.nanoTime());
+        String userKey = ChannelCache.hashToken(waiting.getAccessToken());
+        WarmUp.start(waiting, userKey);
+        WarmUp.end(userKey);
+
+        awaitPrefetched(ChannelCache.hashToken(busy.getAccessToken()), "vidAnalysis:vid0");
+        TimeUnit.MILLISECONDS.sleep(500);
+        assert stub.queries("subscriptions.list") == 1 : "The ended session was warmed up!";
+    }
+
+    private static TokenResponse token(String accessToken) {
+        return new TokenResponse().setAccessToken(accessToken).setExpiresInSeconds(3599L);
+    }
+
+    private static void awaitPrefetched(String userKey, String section) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (WarmUp.prefetched(userKey, section) == null) {
+            assert System.nanoTime() < deadline : section + " was not warmed up!";
+            TimeUnit.MILLISECONDS.sleep(20);
+        }
+    }
+}
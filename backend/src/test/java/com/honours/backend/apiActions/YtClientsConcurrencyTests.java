@@ -0,0 +1,64 @@
+package com.honours.backend.apiActions;
+
+import com.google.api.client.auth.oauth2.Credential;
+import com.google.api.client.auth.oauth2.TokenResponse;
+import com.google.api.client.http.HttpRequest;
+import com.google.api.services.youtube.YouTube;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.*;
+
+class YtClientsConcurrencyTests {
+    private static final int USERS = 32;
+    private static final int REQUESTS_PER_USER = 200;
+
+    /**
+     * Many users build their API objects at the same time. Every request must end up with its own Data v3 and
+     * Analytics v2 connection, both carrying that request's own access token, and with its own user's key.
+     */
+    @Test
+    void concurrentRequestsKeepTheirOwnCredential() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(USERS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<String>>> mismatches = new ArrayList<>();
+        Set<YouTube> built = ConcurrentHashMap.newKeySet();
+
+        for (int u = 0; u < USERS; u++) {
+            String token = "token-of-user-" + u;
+            String userKey = ChannelCache.hashToken(token);
+            mismatches.add(pool.submit(() -> {
+                start.await();
+                List<String> wrong = new ArrayList<>();
+                for (int i = 0; i < REQUESTS_PER_USER; i++) {
+                    YtClients clients = Actions.makeYtObjects(new TokenResponse().setAccessToken(token));
+                    String dataToken = tokenOf(clients.yt().channels().list(List.of("id")).buildHttpRequest());
+                    String analyticsToken = tokenOf(clients.ytAnalytics().reports().query().buildHttpRequest());
+                    if (!token.equals(dataToken) || !token.equals(analyticsToken) || !userKey.equals(clients.userKey())) {
+                        wrong.add(token + " was served as " + dataToken + "/" + analyticsToken + "/" + clients.userKey());
+                    }
+                    built.add(clients.yt());
+                }
+                return wrong;
+            }));
+        }
+
+        start.countDown();
+        List<String> wrong = new ArrayList<>();
+        for (Future<List<String>> f : mismatches) {
+            wrong.addAll(f.get(60, TimeUnit.SECONDS));
+        }
+        pool.shutdown();
+
+        assert wrong.isEmpty() : wrong.size() + " requests were served with another user's credential, e.g. " + wrong.get(0);
+        assert built.size() == USERS * REQUESTS_PER_USER : "Only " + built.size() + " connections were built for "
+                + USERS * REQUESTS_PER_USER + " requests, some of them were shared!";
+    }
+
+    private static String tokenOf(HttpRequest request) {
+        // The credential authorises each request by intercepting it right before it is sent.
+        return ((Credential) request.getInterceptor()).getAccessToken();
+    }
+}
@@ -15,8 +15,16 @@ export default function SignOutButton(props){
 
     /* The signOut function handles the button's onclick by calling the googleLogout function from the
     * OAuth library, as well as clearing all session storage that may have been saved by the application.
-    * This way, no tokens, or video data is stored on the browser.*/
+    * This way, no tokens, or video data is stored on the browser.
+    * The back-end is told as well, so it drops what it keeps for the session (e.g. the warmed-up pages).*/
     const signOut = () => {
+        fetch(process.env.REACT_APP_BACKEND_ROOT + "/signOut", {
+            method: "POST",
+            headers: {
+                "Content-Type": "application/json"
+            },
+            body: sessionStorage.getItem("token")
+        }).catch(() => {});
         googleLogout();
         sessionStorage.clear();
         navigate("/signin");
@@ -21,16 +21,20 @@ export default function DashboardPage(){
     const [watchTime, setWatchTime] = useState(sessionStorage.getItem("watchTime"));
     const [lastVideo, setLastVideo] = useState(JSON.parse(sessionStorage.getItem("lastVideo")));
     const [latestVids, setLatestVids] = useState(JSON.parse(sessionStorage.getItem("latestVids")));
+    // The sections the back-end could not load (null until the dashboard has been fetched).
+    const [sectionErrors, setSectionErrors] = useState(null);
 
     useEffect(() => { // Only do upon component render.
         if(sessionStorage.getItem("isAuthenticated") === "true"){
             setLoading(false);
-            // If at least one of the sessionStorage items is not present, we need to make the query to get the info.
-            if(!subCount || !watchTime || !lastVideo || !latestVids){
+            /* If at least one of the sessionStorage items is not present, we need to make the query to get the info.
+            * It is only made once, so a section that failed is not queried again and again. */
+            if(sectionErrors === null && (!subCount || !watchTime || !lastVideo || !latestVids)){
                 setLoading(true);
                 /*
-                * This executes all the fetches needed upon fresh load of the page. Instead of fetching one by one,
-                * we fetch altogether which gives an even more pleasant experience because all the data appears at once.
+                * This executes a single fetch for everything the dashboard needs. The back-end queries all the
+                * sections at the same time, so all the data appears at once and the page only waits for the
+                * slowest section.
                 * */
                 const fetchDetails = {
                     method: "POST",
@@ -42,35 +46,34 @@ export default function DashboardPage(){
                 * upon back-end deployment location change and is also secure by not giving attackers sufficient
                 * location information for the back-end.
                  */
-                Promise.all([
-                    fetch(process.env.REACT_APP_BACKEND_ROOT+"/channelSubscribers", fetchDetails)
-                        .then(resp1 =>{ if (resp1.ok) return resp1.json() }),
-
-                    fetch(process.env.REACT_APP_BACKEND_ROOT+"/365watchtime", fetchDetails)
-                        .then(resp2 =>{ if (resp2.ok) return resp2.json() }),
-
-                    fetch(process.env.REACT_APP_BACKEND_ROOT+"/lastVidAnalysis", fetchDetails)
-                        .then(resp3 => { if (resp3.ok) return resp3.json() }),
-
-                    fetch(process.env.REACT_APP_BACKEND_ROOT+"/top5LatestVideos", fetchDetails)
-                        .then(resp4 => { if (resp4.ok) return resp4.json() }),
-                ])
-                    .then(([subsData,watchTimeData, lastVideo,
-                               top5LatestVideosData]) => {
-                        /* The results received in the responses are stored both in the session storage, and
-                        * the state hooks corresponding to that value.*/
-                        sessionStorage.setItem("subCount", subsData.subscriberCount);
-                        setSubCount(subsData.subscriberCount);
-
-                        sessionStorage.setItem("watchTime", watchTimeData.minutesWatched);
-                        setWatchTime(watchTimeData.minutesWatched);
-
-                        sessionStorage.setItem("lastVideo", JSON.stringify(lastVideo));
-                        setLastVideo(lastVideo);
-
-                        sessionStorage.setItem("latestVids", JSON.stringify(top5LatestVideosData));
-                        setLatestVids(top5LatestVideosData);
-
+                fetch(process.env.REACT_APP_BACKEND_ROOT+"/dashboard", fetchDetails)
+                    .then(resp =>{ if (resp.ok) return resp.json() })
+                    .then((dashboard) => {
+                        // The back-end only fails the whole request if every section failed.
+                        if (!dashboard) throw new Error("Dashboard request failed");
+
+                        /* The results received in the response are stored both in the session storage, and
+                        * the state hooks corresponding to that value. A section that failed on the back-end is
+                        * missing from the response (and listed in its errors), so it is not stored, and a
+                        * placeholder is shown in its place instead.*/
+                        if (dashboard.subscriberCount !== undefined){
+                            sessionStorage.setItem("subCount", dashboard.subscriberCount);
+                            setSubCount(dashboard.subscriberCount);
+                        }
+                        if (dashboard.minutesWatched !== undefined){
+                            sessionStorage.setItem("watchTime", dashboard.minutesWatched);
+                            setWatchTime(dashboard.minutesWatched);
+                        }
+                        if (dashboard.lastVideo !== undefined){
+                            sessionStorage.setItem("lastVideo", JSON.stringify(dashboard.lastVideo));
+                            setLastVideo(dashboard.lastVideo);
+                        }
+                        if (dashboard.latestVids !== undefined){
+                            sessionStorage.setItem("latestVids", JSON.stringify(dashboard.latestVids));
+                            setLatestVids(dashboard.latestVids);
+                        }
+
+                        setSectionErrors(dashboard.errors || {});
                         setLoading(false);
                     })
                     .catch((err) => {
@@ -88,7 +91,7 @@ export default function DashboardPage(){
         }
 
         // upon change of the dependencies mentioned, the DashboardPage component is re-rendered.
-    }, [subCount, watchTime, lastVideo, navigate, latestVids]);
+    }, [subCount, watchTime, lastVideo, navigate, latestVids, sectionErrors]);
 
     return(
         <>
@@ -101,13 +104,15 @@ export default function DashboardPage(){
                 {/* The first part of the dashboard page contains information about the latest video. */}
                 <div className={"nestedDiv"} id={"latestVid"}>
                     <h2>Latest Video Performance</h2>
-                    <img src= {lastVideo.thumbnail_URL} alt={"Video Thumbnail"} />
-                    <h3 id={"lastestVidTitle"}>{lastVideo.title}</h3>
-                    <p className={"metric"}>View count: {lastVideo.views}</p>
-                    {/* Since the back-end provides average view duration in seconds, it needs to be converted
-                     to the proper format - in this case mm:ss (example: 11:02)*/}
-                    <p className={"metric"}>Average View Duration: {Math.floor(lastVideo.AVD/60)}:{(lastVideo.AVD%60)
-                        .toLocaleString('en-UK', {minimumIntegerDigits: 2})}</p>
+                    {!lastVideo ? <SectionError /> : <>
+                        <img src= {lastVideo.thumbnail_URL} alt={"Video Thumbnail"} />
+                        <h3 id={"lastestVidTitle"}>{lastVideo.title}</h3>
+                        <p className={"metric"}>View count: {lastVideo.views}</p>
+                        {/* Since the back-end provides average view duration in seconds, it needs to be converted
+                         to the proper format - in this case mm:ss (example: 11:02)*/}
+                        <p className={"metric"}>Average View Duration: {Math.floor(lastVideo.AVD/60)}:{(lastVideo.AVD%60)
+                            .toLocaleString('en-UK', {minimumIntegerDigits: 2})}</p>
+                    </>}
                 </div>
 
                 {/* The second part of the dashboard page contains monetization goals for the currently
@@ -116,20 +121,25 @@ export default function DashboardPage(){
                     <h2>Monetization Goals</h2>
                     {/* A custom component is created with a specific progress attribute passed. Based on
                      the percentage of the progress, that much of that bar is filled up. */}
-                    <ProgressBar progress={((subCount/1000)*100)+"%"}/>
-                    <p>{subCount} / 1000 Subscribers</p>
+                    {!subCount ? <SectionError /> : <>
+                        <ProgressBar progress={((subCount/1000)*100)+"%"}/>
+                        <p>{subCount} / 1000 Subscribers</p>
+                    </>}
                     <br />
-                    <ProgressBar progress={(((watchTime/60)/4000) * 100)+"%"}/>
                     {/* YouTube requires a minimum of 1000 subscribers, and 4000 watch time hours for a channel
                      to be monetizeable. We need to transform the watch time (in minutes) returned by the back-end
                       to watch tme in hours. */}
-                    <p>{Math.floor(watchTime/60)} / 4000 Watch Time Hours</p>
+                    {!watchTime ? <SectionError /> : <>
+                        <ProgressBar progress={(((watchTime/60)/4000) * 100)+"%"}/>
+                        <p>{Math.floor(watchTime/60)} / 4000 Watch Time Hours</p>
+                    </>}
 
                     {/* Based on whether the aforementioned criteria are met, the app presents different messages.
-                     Either an encouraging message, or a "congratulations" message.*/}
-                    <h3>{(subCount >= 1000 && (watchTime /60) >= 4000)
+                     Either an encouraging message, or a "congratulations" message. Without both of them, the
+                     criteria can not be checked.*/}
+                    {subCount && watchTime && <h3>{(subCount >= 1000 && (watchTime /60) >= 4000)
                         ? "Congratulations! Your channel is monetizable!"
-                        : "Keep going, you're doing great!"}</h3>
+                        : "Keep going, you're doing great!"}</h3>}
                 </div>
 
                 {/* The third part of the dashboard page contains the 5 best performing videos out of the authenticated
@@ -139,7 +149,7 @@ export default function DashboardPage(){
                     {/*If the back-end returns an empty list of the top 5 latest videos, the user is presented a
                     meaningful message explaining why this may be happening. Otherwise, the videos are returned
                     in a proper manner.*/}
-                    {latestVids.length == 0 ? <p className={"noTop5Warning"}>There seem to be no videos returned by YouTube.
+                    {!latestVids ? <SectionError /> : latestVids.length == 0 ? <p className={"noTop5Warning"}>There seem to be no videos returned by YouTube.
                     Are you sure you have any videos uploaded? If yes, that may be because all your videos were
                     recently uploaded, so there is not enough data for a meaningful report!</p> :
                         latestVids.map(video => {
@@ -161,4 +171,13 @@ export default function DashboardPage(){
         </>
     );
 
+}
+
+/**
+ * This is shown in place of a dashboard section that the back-end could not load, so the sections that did load are
+ * still presented.
+ * @returns {JSX.Element} - A short message telling the user the section is not available right now.
+ */
+function SectionError(){
+    return <p className={"sectionError"}>This could not be loaded right now. Please try again later.</p>;
 }
\ No newline at end of file
@@ -37,8 +37,9 @@ export default function VideosPage(){
                 setLoading(true);
                 /* The URL for the fetch call is specified by the environment values which could be easily changed
                 * upon back-end deployment location change, and is also secure by not giving attackers sufficient
-                * location information for the back-end. */
-                fetch(process.env.REACT_APP_BACKEND_ROOT + "/allVideos", {
+                * location information for the back-end.
+                * The back-end serves the pages from its own index of the channel's videos, so turning pages is fast. */
+                fetch(process.env.REACT_APP_BACKEND_ROOT + "/videos", {
                     method: "POST",
                     headers: {"Content-Type": "application/json"},
                     body: JSON.stringify({